@@ -24,16 +24,32 @@
 
 package net.hydex11.cameracaptureexample;
 
+import android.annotation.TargetApi;
 import android.app.Activity;
+import android.content.Context;
 import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 import android.util.Pair;
+import android.util.Size;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 
+import net.hydex11.rsprofiler.FrameQueue;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -45,6 +61,9 @@ public class CameraHandler {
 
     static final String TAG = "CameraHandler";
 
+    // How often, in processed frames, the compute thread logs the frame counters
+    static final int FRAME_STATS_INTERVAL = 100;
+
     Activity mActivity;
     Camera mCamera;
     Camera.CameraInfo mBackCameraInfo;
@@ -52,6 +71,17 @@ public class CameraHandler {
     int expectedCameraBytes;
     Camera.Size mCameraSize;
 
+    // Threaded frame processing, used when CameraSetup has a FrameCallback
+    FrameQueue<byte[]> mFrameQueue;
+    Thread mComputeThread;
+
+    // Camera2 capture, used when CameraSetup has an InputSurfaceFactory
+    Point mFrameSize;
+    HandlerThread mCamera2Thread;
+    CameraDevice mCameraDevice;
+    CameraCaptureSession mCaptureSession;
+    boolean mCamera2Closed = false;
+
     // Init
     public CameraHandler(Activity activity) {
         mActivity = activity;
@@ -64,6 +94,13 @@ public class CameraHandler {
         return mCameraSize;
     }
 
+    // Size of the camera frames, available with both camera APIs
+    public Point getFrameSize() {
+        if (mFrameSize == null)
+            throw new RuntimeException("getFrameSize must be called after openCamera");
+        return mFrameSize;
+    }
+
     // Funcs
 
     public void openCamera(CameraSetup cameraSetup) throws Exception {
@@ -71,6 +108,11 @@ public class CameraHandler {
         // Check camera setup
         cameraSetup.checkSetup();
 
+        if (cameraSetup.inputSurfaceFactory != null) {
+            openCamera2(cameraSetup);
+            return;
+        }
+
         // Gets back camera
         Pair<Camera.CameraInfo, Integer> backCamera = getBackCamera();
         final int backCameraId = backCamera.second;
@@ -86,8 +128,15 @@ public class CameraHandler {
         // Sets up preview surface
         mCamera.setPreviewDisplay(cameraSetup.holder);
 
-        // Sets up callback for camera, that will get input YUV NV21 bytes
-        mCamera.setPreviewCallbackWithBuffer(cameraSetup.previewCallback);
+        // Sets up callback for camera, that will get input YUV NV21 bytes.
+        // With a FrameCallback, frames are handed to a dedicated compute thread, so that
+        // the camera keeps filling the other buffers while a frame is being processed.
+        if (cameraSetup.frameCallback != null) {
+            startComputeThread(cameraSetup);
+            mCamera.setPreviewCallbackWithBuffer(mFrameQueueCallback);
+        } else {
+            mCamera.setPreviewCallbackWithBuffer(cameraSetup.previewCallback);
+        }
 
         mCameraParameters = mCamera.getParameters();
 
@@ -109,6 +158,8 @@ public class CameraHandler {
             mCamera.addCallbackBuffer(cameraBuffer);
         }
 
+        mFrameSize = new Point(mCameraSize.width, mCameraSize.height);
+
         // Forces camera preview size, as got earlier.
         mCameraParameters.setPreviewSize(mCameraSize.width, mCameraSize.height);
 
@@ -120,13 +171,198 @@ public class CameraHandler {
 
     }
 
+    // Camera2 path: the camera writes each frame both to the preview surface and to the surface
+    // given by the InputSurfaceFactory (e.g. a RenderScript USAGE_IO_INPUT Allocation), so frames
+    // never go through the Java heap.
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void openCamera2(CameraSetup cameraSetup) throws CameraAccessException {
+        CameraManager cameraManager = (CameraManager) mActivity.getSystemService(Context.CAMERA_SERVICE);
+
+        // Gets back camera
+        String backCameraId = null;
+        CameraCharacteristics backCameraCharacteristics = null;
+        for (String cameraId : cameraManager.getCameraIdList()) {
+            CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(cameraId);
+            Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+            if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                backCameraId = cameraId;
+                backCameraCharacteristics = characteristics;
+                break;
+            }
+        }
+        if (backCameraId == null)
+            throw new RuntimeException("Couldn't find back camera");
+
+        // Chooses frame size among the YUV ones, with the same rules used for preview sizes
+        StreamConfigurationMap configurationMap = backCameraCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        Size frameSize = chooseOptimalSize(configurationMap.getOutputSizes(ImageFormat.YUV_420_888),
+                cameraSetup.maxPreviewSize.x, cameraSetup.maxPreviewSize.y);
+        mFrameSize = new Point(frameSize.getWidth(), frameSize.getHeight());
+
+        // Both outputs must have a size the camera supports
+        cameraSetup.holder.setFixedSize(mFrameSize.x, mFrameSize.y);
+        final Surface previewSurface = cameraSetup.holder.getSurface();
+        final Surface inputSurface = cameraSetup.inputSurfaceFactory.createInputSurface(mFrameSize.x, mFrameSize.y);
+
+        // Camera callbacks are received on a dedicated thread
+        mCamera2Thread = new HandlerThread("Camera2");
+        mCamera2Thread.start();
+        final Handler cameraHandler = new Handler(mCamera2Thread.getLooper());
+
+        cameraManager.openCamera(backCameraId, new CameraDevice.StateCallback() {
+            @Override
+            public void onOpened(CameraDevice camera) {
+                synchronized (CameraHandler.this) {
+                    if (mCamera2Closed) {
+                        camera.close();
+                        return;
+                    }
+                    mCameraDevice = camera;
+                }
+
+                try {
+                    camera.createCaptureSession(Arrays.asList(previewSurface, inputSurface),
+                            new CameraCaptureSession.StateCallback() {
+                                @Override
+                                public void onConfigured(CameraCaptureSession session) {
+                                    synchronized (CameraHandler.this) {
+                                        if (mCamera2Closed)
+                                            return;
+                                        mCaptureSession = session;
+                                    }
+
+                                    try {
+                                        // Every frame goes to both surfaces
+                                        CaptureRequest.Builder requestBuilder = session.getDevice().createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                                        requestBuilder.addTarget(previewSurface);
+                                        requestBuilder.addTarget(inputSurface);
+                                        session.setRepeatingRequest(requestBuilder.build(), null, cameraHandler);
+                                    } catch (CameraAccessException e) {
+                                        Log.e(TAG, "Could not start capture", e);
+                                    }
+                                }
+
+                                @Override
+                                public void onConfigureFailed(CameraCaptureSession session) {
+                                    Log.e(TAG, "Could not configure capture session");
+                                }
+                            }, cameraHandler);
+                } catch (CameraAccessException e) {
+                    Log.e(TAG, "Could not create capture session", e);
+                }
+            }
+
+            @Override
+            public void onDisconnected(CameraDevice camera) {
+                camera.close();
+            }
+
+            @Override
+            public void onError(CameraDevice camera, int error) {
+                Log.e(TAG, "Camera error " + error);
+                camera.close();
+            }
+        }, cameraHandler);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void destroyCamera2() {
+        synchronized (this) {
+            mCamera2Closed = true;
+            if (mCaptureSession != null) {
+                mCaptureSession.close();
+                mCaptureSession = null;
+            }
+            if (mCameraDevice != null) {
+                mCameraDevice.close();
+                mCameraDevice = null;
+            }
+        }
+
+        mCamera2Thread.quitSafely();
+        mCamera2Thread = null;
+    }
+
     public void destroy() {
+        if (mCamera2Thread != null) {
+            destroyCamera2();
+        }
+
         if (mCamera != null) {
             mCamera.stopPreview();
-            mCamera.release();
+        }
+
+        // Stops the compute thread before releasing the camera, as it still gives buffers back to it
+        if (mFrameQueue != null) {
+            mFrameQueue.close();
+            try {
+                mComputeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Log.d(TAG, mFrameQueue.toString());
+        }
+
+        synchronized (this) {
+            if (mCamera != null) {
+                mCamera.release();
+                mCamera = null;
+            }
         }
     }
 
+    // Returns the queue between camera and compute thread, to read its counters. Null when
+    // frames are processed directly in the preview callback.
+    public FrameQueue<byte[]> getFrameQueue() {
+        return mFrameQueue;
+    }
+
+    private void startComputeThread(final CameraSetup cameraSetup) {
+        mFrameQueue = new FrameQueue<byte[]>(cameraSetup.frameDropPolicy, cameraSetup.frameQueueCapacity,
+                new FrameQueue.Recycler<byte[]>() {
+                    @Override
+                    public void recycle(byte[] frame) {
+                        // Adds camera buffer back so that can be used on next acquired frame
+                        synchronized (CameraHandler.this) {
+                            if (mCamera != null)
+                                mCamera.addCallbackBuffer(frame);
+                        }
+                    }
+                });
+
+        final FrameQueue<byte[]> frameQueue = mFrameQueue;
+        mComputeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] frame;
+                    while ((frame = frameQueue.take()) != null) {
+                        try {
+                            cameraSetup.frameCallback.onFrame(frame);
+                        } finally {
+                            frameQueue.done(frame);
+                        }
+
+                        // Periodically logs frame counters, to evaluate the chosen drop policy
+                        if (frameQueue.getProcessedCount() % FRAME_STATS_INTERVAL == 0)
+                            Log.d(TAG, frameQueue.toString());
+                    }
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "Compute thread interrupted");
+                }
+            }
+        }, "CameraCompute");
+        mComputeThread.start();
+    }
+
+    // Camera thread side: only queues the frame, dropping older ones if the compute thread is busy
+    private final Camera.PreviewCallback mFrameQueueCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] data, Camera camera) {
+            mFrameQueue.offer(data);
+        }
+    };
+
     public Camera.Parameters getCameraParameters() {
         return mCameraParameters;
     }
@@ -155,6 +391,35 @@ public class CameraHandler {
         }
     }
 
+    // Camera2 version of chooseOptimalPreviewSize
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private Size chooseOptimalSize(Size[] choices, int width, int height) {
+        List<Size> bigEnough = new ArrayList<>();
+
+        float ratio = (float) height / (float) width;
+
+        for (Size option : choices) {
+            if (option.getHeight() == option.getWidth() * ratio &&
+                    option.getWidth() >= width && option.getHeight() >= height) {
+                bigEnough.add(option);
+            }
+        }
+
+        if (bigEnough.size() > 0) {
+            Size chosenSize = Collections.min(bigEnough, new Comparator<Size>() {
+                @Override
+                public int compare(Size lhs, Size rhs) {
+                    return Long.signum((long) lhs.getWidth() * lhs.getHeight() -
+                            (long) rhs.getWidth() * rhs.getHeight());
+                }
+            });
+            Log.d(TAG, "Chose maximum frame size to " + chosenSize);
+            return chosenSize;
+        } else {
+            throw new RuntimeException("Couldn't find any suitable frame size");
+        }
+    }
+
     // Taken from https://github.com/pinguo-yuyidong/Camera2/blob/master/camera2/src/main/java/us/yydcdut/camera2/CompareSizesByArea.java
     static class CompareSizesByArea implements Comparator<Camera.Size> {
 
@@ -207,9 +472,29 @@ public class CameraHandler {
         mCamera.setDisplayOrientation(displayOrientation);
     }
 
+    // Gets called on the compute thread for every frame that was not dropped. The buffer
+    // is given back to the camera when the function returns.
+    public interface FrameCallback {
+        void onFrame(byte[] data);
+    }
+
+    // Gets called, once the frame size is known, to create the surface that receives the frames
+    // in the Camera2 path, e.g. Allocation.getSurface() of a USAGE_IO_INPUT Allocation
+    public interface InputSurfaceFactory {
+        Surface createInputSurface(int width, int height);
+    }
+
     static class CameraSetup {
+        // Minimum buffers for threaded processing: one being filled by the camera, one
+        // being processed and at least one pending
+        static final int MIN_THREADED_BUFFERS_COUNT = 3;
+
         private SurfaceHolder holder;
         private Camera.PreviewCallback previewCallback;
+        private FrameCallback frameCallback;
+        private InputSurfaceFactory inputSurfaceFactory;
+        private FrameQueue.Policy frameDropPolicy = FrameQueue.Policy.LATEST_WINS;
+        private int frameQueueCapacity = 1;
         private Point maxPreviewSize;
         private int cameraBuffersCount = 1;
 
@@ -221,6 +506,25 @@ public class CameraHandler {
             previewCallback = _previewCallback;
         }
 
+        // Processes frames on a dedicated thread instead of the camera one. Requires at least
+        // MIN_THREADED_BUFFERS_COUNT camera buffers.
+        public void setFrameCallback(FrameCallback _frameCallback) {
+            frameCallback = _frameCallback;
+        }
+
+        // Which frames get dropped when the compute thread is slower than the camera, and how
+        // many of them can wait for it. Higher capacity favours throughput over latency.
+        public void setFrameDropPolicy(FrameQueue.Policy policy, int capacity) {
+            frameDropPolicy = policy;
+            frameQueueCapacity = capacity;
+        }
+
+        // Uses the Camera2 API (Android 5.0+) and sends frames straight to the surface created by
+        // the factory, instead of byte arrays. Replaces preview and frame callbacks.
+        public void setInputSurfaceFactory(InputSurfaceFactory _inputSurfaceFactory) {
+            inputSurfaceFactory = _inputSurfaceFactory;
+        }
+
         public void setMaxPreviewSize(Point _maxPreviewSize) {
             maxPreviewSize = _maxPreviewSize;
         }
@@ -236,8 +540,24 @@ public class CameraHandler {
                 throw new RuntimeException("Must select preview holder");
             if (cameraBuffersCount <= 0)
                 throw new RuntimeException("Camera buffers min count is 1");
-            if (previewCallback == null)
-                throw new RuntimeException("Must select preview callback function");
+            int frameConsumers = (previewCallback != null ? 1 : 0) + (frameCallback != null ? 1 : 0) +
+                    (inputSurfaceFactory != null ? 1 : 0);
+            if (frameConsumers == 0)
+                throw new RuntimeException("Must select preview callback, frame callback or input surface factory");
+            if (frameConsumers > 1)
+                throw new RuntimeException("Only one of preview callback, frame callback and input surface factory can be used");
+            if (inputSurfaceFactory != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+                throw new RuntimeException("Input surface factory requires Camera2 API (Android 5.0)");
+            if (frameCallback != null) {
+                if (frameDropPolicy == null)
+                    throw new RuntimeException("Must select frame drop policy");
+                if (frameQueueCapacity <= 0)
+                    throw new RuntimeException("Frame queue min capacity is 1");
+                // Every pending frame holds a buffer, plus the camera and the compute thread ones
+                if (cameraBuffersCount < Math.max(MIN_THREADED_BUFFERS_COUNT, frameQueueCapacity + 2))
+                    throw new RuntimeException("Frame callback requires at least " +
+                            Math.max(MIN_THREADED_BUFFERS_COUNT, frameQueueCapacity + 2) + " camera buffers");
+            }
 
             Log.d(TAG, "CameraSetup is ok");
         }
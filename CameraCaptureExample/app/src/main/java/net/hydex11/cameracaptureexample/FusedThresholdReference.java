@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.cameracaptureexample;
+
+/**
+ * Java version of the fusedThreshold kernel of main.fs, used to verify it bit by bit. For each
+ * output pixel, only the Y sample it maps to (nearest, rounding down) is read: pixels whose luma
+ * is above the threshold become opaque red, the others transparent.
+ */
+public class FusedThresholdReference {
+
+    // Converts a threshold on gray values (0-255, as computed from RGBA) to the equivalent one on
+    // camera luma values, which use the 16-235 video range: gray = (Y - 16) * 255 / 219
+    public static int lumaThreshold(int grayThreshold) {
+        if (grayThreshold < 0)
+            grayThreshold = 0;
+        if (grayThreshold > 255)
+            grayThreshold = 255;
+        return 16 + grayThreshold * 219 / 255;
+    }
+
+    // Input coordinate sampled for the given output coordinate
+    public static int sourceCoordinate(int outCoordinate, int inSize, int outSize) {
+        return Math.min(outCoordinate * inSize / outSize, inSize - 1);
+    }
+
+    // nv21 holds a full NV21 frame (or at least its Y plane), outRGBA receives 4 bytes per
+    // output pixel, as Allocation.copyTo does with RGBA_8888 elements
+    public static void run(byte[] nv21, int inWidth, int inHeight, int outWidth, int outHeight,
+                           int lumaThreshold, byte[] outRGBA) {
+        if (nv21.length < inWidth * inHeight)
+            throw new IllegalArgumentException("Input is smaller than its Y plane");
+        if (outRGBA.length < outWidth * outHeight * 4)
+            throw new IllegalArgumentException("Output is smaller than " + outWidth + "x" + outHeight + " RGBA");
+
+        int o = 0;
+        for (int y = 0; y < outHeight; y++) {
+            int rowOffset = sourceCoordinate(y, inHeight, outHeight) * inWidth;
+
+            for (int x = 0; x < outWidth; x++) {
+                int luma = nv21[rowOffset + sourceCoordinate(x, inWidth, outWidth)] & 0xFF;
+
+                if (luma > lumaThreshold) {
+                    outRGBA[o] = (byte) 255;
+                    outRGBA[o + 1] = 0;
+                    outRGBA[o + 2] = 0;
+                    outRGBA[o + 3] = (byte) 255;
+                } else {
+                    outRGBA[o] = 0;
+                    outRGBA[o + 1] = 0;
+                    outRGBA[o + 2] = 0;
+                    outRGBA[o + 3] = 0;
+                }
+                o += 4;
+            }
+        }
+    }
+
+    // Index of the first differing byte between two outputs, or -1 if they match
+    public static int firstDifference(byte[] expected, byte[] actual, int length) {
+        for (int i = 0; i < length; i++) {
+            if (expected[i] != actual[i])
+                return i;
+        }
+        return -1;
+    }
+}
@@ -27,15 +27,22 @@ package net.hydex11.cameracaptureexample;
 import android.app.Activity;
 import android.renderscript.*;
 import android.graphics.Point;
-import android.hardware.Camera;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.TextureView;
 import android.view.View;
 import android.view.WindowManager;
 
+import net.hydex11.rsprofiler.FrameCaptureWriter;
+import net.hydex11.rsprofiler.FrameQueue;
+
+import java.io.File;
+import java.io.IOException;
+
 /*
 * This example application shows how it is possible to use camera preview image to perform
 * calculations.
@@ -72,8 +79,24 @@ public class MainActivity extends Activity {
         example();
     }
 
+    // Number of frames that RenderScript can be working on at the same time. Set it to 1 to
+    // wait for each frame to end before copying the next one, and compare the logged statistics.
+    static final int RS_PIPELINE_DEPTH = 2;
+
+    // Set it to a positive count to record that many camera frames to RSFrameCapture.bin, inside
+    // the app external files folder. Frames can then be replayed with FrameReplayer, e.g. on a JVM.
+    static final int RECORD_FRAMES_COUNT = 0;
+
+    // On Android 5.0+, camera frames are written by the Camera2 API directly into a RenderScript
+    // USAGE_IO_INPUT Allocation, without going through a Java byte array. Set it to false to
+    // compare with the legacy camera preview callback.
+    // Frames can only be recorded (RECORD_FRAMES_COUNT) with the legacy one.
+    static final boolean USE_CAMERA2_IO_INPUT = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP &&
+            RECORD_FRAMES_COUNT == 0;
+
     RenderScript mRS;
-    RSCompute rsCompute;
+    // Used by the camera compute thread too
+    volatile RSCompute rsCompute;
 
     private void example() {
         // Prevent window dimming
@@ -125,12 +148,15 @@ public class MainActivity extends Activity {
         public void surfaceDestroyed(SurfaceHolder holder) {
             if (cameraHandler != null)
                 cameraHandler.destroy();
+            if (rsCompute != null)
+                rsCompute.destroy();
             rsCompute = null;
         }
 
         void resetCamera(SurfaceHolder holder) {
             // Resets custom camera handler if was set before
             // Useful if there is any surface size change (usually should be prevented!)
+            // The Camera2 path fixes the surface size to the frame size, so it gets here twice.
             if (cameraHandler != null) {
                 cameraHandler.destroy();
             }
@@ -139,27 +165,40 @@ public class MainActivity extends Activity {
             cameraHandler = new CameraHandler(MainActivity.this);
 
             // Here we set camera properties that we want to force:
-            // * We want to use 1 buffer, so that we can have only 1 processing function active
+            // * We want to use 3 buffers, so that the camera can fill one while another is being processed
             //      For reference, http://developer.android.com/reference/android/hardware/Camera.html#setPreviewCallbackWithBuffer(android.hardware.Camera.PreviewCallback)
+            // * We want only the latest frame to be processed, dropping the older ones if computation is slower than the camera
             // * We want to use our previously defined surface to preview our camera image. If all buffers are busy, preview will still be real time
             // * Sets maximum camera preview size at an acceptable resolution
-            // * Sets camera preview callback, where in to execute RenderScript computations
+            // * Sets frame callback, where in to execute RenderScript computations on a dedicated thread
 
             CameraHandler.CameraSetup cameraSetup = new CameraHandler.CameraSetup();
-            cameraSetup.setCameraBuffersCount(1);
+            cameraSetup.setCameraBuffersCount(3);
+            cameraSetup.setFrameDropPolicy(FrameQueue.Policy.LATEST_WINS, 1);
             cameraSetup.setPreviewSurfaceHolder(holder);
             cameraSetup.setMaxPreviewSize(new Point(1280, 720));
 
-            // This callback will be called on every camera frame. Computation happens in it
-            cameraSetup.setPreviewCallback(previewCallback);
+            if (USE_CAMERA2_IO_INPUT) {
+                // RenderScript input Allocation is created as soon as the frame size is known,
+                // and the camera writes into it
+                cameraSetup.setInputSurfaceFactory(new CameraHandler.InputSurfaceFactory() {
+                    @Override
+                    public Surface createInputSurface(int width, int height) {
+                        resetRenderHolder(new Point(width, height));
+                        return rsCompute.createIOInputSurface();
+                    }
+                });
+            } else {
+                // This callback will be called on every camera frame that was not dropped. Computation happens in it
+                cameraSetup.setFrameCallback(frameCallback);
+            }
 
             try {
                 cameraHandler.openCamera(cameraSetup);
 
-                Camera.Size size = cameraHandler.getCameraSize();
-
                 // Resets custom RenderScript compute class, passing it calculated maximum preview size
-                resetRenderHolder(new Point(size.width, size.height));
+                if (!USE_CAMERA2_IO_INPUT)
+                    resetRenderHolder(cameraHandler.getFrameSize());
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -176,29 +215,64 @@ public class MainActivity extends Activity {
             // Scales down preview size by 2 times, for performance reasons.
             Point renderOutSize = new Point(Math.round(renderInSize.x * 0.5f), Math.round(renderInSize.y * 0.5f));
 
+            // Releases the rendering surface, so that the new compute class can use it
+            if (rsCompute != null)
+                rsCompute.destroy();
+
             // Instantiates a new custom compute class, passing information about input image size (camera preview)
             // and output size (render holder surface scaled size)
-            rsCompute = new RSCompute(mRS, renderInSize, renderOutSize);
+            rsCompute = new RSCompute(mRS, renderInSize, renderOutSize, RS_PIPELINE_DEPTH);
 
             // Sets TextureView to display output
             rsCompute.setRenderTextureView(textureView);
         }
     };
 
-    Camera.PreviewCallback previewCallback = new Camera.PreviewCallback() {
+    // Frame recording, enabled by RECORD_FRAMES_COUNT
+    FrameCaptureWriter frameCaptureWriter;
+    boolean frameRecordingDone = false;
+
+    private void recordFrame(byte[] data, int width, int height) {
+        if (frameRecordingDone)
+            return;
+
+        try {
+            if (frameCaptureWriter == null) {
+                File captureFile = new File(getExternalFilesDir(null), "RSFrameCapture.bin");
+                frameCaptureWriter = new FrameCaptureWriter(captureFile, width, height);
+                Log.d(TAG, "Recording frames to " + captureFile.getAbsolutePath());
+            }
+
+            frameCaptureWriter.write(data, System.nanoTime());
+
+            if (frameCaptureWriter.getFrameCount() == RECORD_FRAMES_COUNT) {
+                frameRecordingDone = true;
+                frameCaptureWriter.close();
+                Log.d(TAG, "Recorded " + RECORD_FRAMES_COUNT + " frames");
+            }
+        } catch (IOException e) {
+            frameRecordingDone = true;
+            Log.e(TAG, "Could not record frames", e);
+        }
+    }
+
+    CameraHandler.FrameCallback frameCallback = new CameraHandler.FrameCallback() {
         @Override
-        public void onPreviewFrame(byte[] data, Camera camera) {
+        public void onFrame(byte[] data) {
 
             // On every camera frame, checks if current RenderScript output surface is valid,
             // instantiated and checks that current RenderScript custom class is instantiated too
-            if (rsCompute != null && rsCompute.isValidHolder()) {
+            RSCompute compute = rsCompute;
+            if (compute != null && compute.isValidHolder()) {
+
+                if (RECORD_FRAMES_COUNT > 0)
+                    recordFrame(data, compute.mInputImageSize.x, compute.mInputImageSize.y);
 
                 // Execute computation
-                rsCompute.compute(data);
+                compute.compute(data);
             }
 
-            // Adds camera buffer back so that can be used on next acquired frame
-            camera.addCallbackBuffer(data);
+            // Camera buffer is given back by CameraHandler when this function returns
         }
     };
 
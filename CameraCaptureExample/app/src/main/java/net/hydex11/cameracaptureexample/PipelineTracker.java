@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.cameracaptureexample;
+
+import net.hydex11.rsprofiler.TimingHistogram;
+
+/**
+ * Keeps track of the frames that have been submitted to RenderScript but not completed yet.
+ * Each frame uses one of depth slots (sets of allocations), in round robin order, and the
+ * submitting thread waits only when the next slot is still in flight. Completion, signalled
+ * asynchronously by the script, gives the latency of each frame, while the distance between
+ * completions gives the throughput.
+ */
+public class PipelineTracker {
+
+    private final int depth;
+    private final boolean[] busy;
+    private final long[] submitTimes;
+    private int nextSlot = 0;
+    private int inFlightCount = 0;
+
+    // Statistics, since the last reset
+    private final TimingHistogram latencyHistogram = new TimingHistogram();
+    private long waitTime = 0;
+    private long firstCompletionTime = -1;
+    private long lastCompletionTime = -1;
+
+    public PipelineTracker(int depth) {
+        if (depth < 1)
+            throw new IllegalArgumentException("Depth must be at least 1");
+        this.depth = depth;
+        busy = new boolean[depth];
+        submitTimes = new long[depth];
+    }
+
+    // Waits for the next slot to be free, marks it as in flight and returns its index.
+    // Times are in nanoseconds, and now is the submission time of the frame.
+    public synchronized int acquire(long now) throws InterruptedException {
+        int slot = nextSlot;
+        if (busy[slot]) {
+            long waitStart = System.nanoTime();
+            while (busy[slot])
+                wait();
+            long waited = System.nanoTime() - waitStart;
+            waitTime += waited;
+            now += waited;
+        }
+
+        busy[slot] = true;
+        submitTimes[slot] = now;
+        inFlightCount++;
+        nextSlot = (slot + 1) % depth;
+        return slot;
+    }
+
+    // Marks the slot as completed. Completions of slots not in flight (e.g. from a previous
+    // pipeline sharing the same RenderScript context) are ignored.
+    public synchronized boolean complete(int slot, long now) {
+        if (slot < 0 || slot >= depth || !busy[slot])
+            return false;
+
+        busy[slot] = false;
+        inFlightCount--;
+
+        latencyHistogram.recordValue(Math.max(0, now - submitTimes[slot]));
+        if (firstCompletionTime < 0)
+            firstCompletionTime = now;
+        lastCompletionTime = now;
+
+        notifyAll();
+        return true;
+    }
+
+    // Waits for every submitted frame to complete
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (inFlightCount > 0)
+            wait();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    public synchronized long getCompletedCount() {
+        return latencyHistogram.getTotalCount();
+    }
+
+    // Completed frames per second, measured between the first and last completion
+    public synchronized double getThroughput() {
+        long completed = latencyHistogram.getTotalCount();
+        if (completed < 2 || lastCompletionTime == firstCompletionTime)
+            return 0;
+        return (completed - 1) * 1e9 / (lastCompletionTime - firstCompletionTime);
+    }
+
+    // Mean time from submission to completion, in nanoseconds
+    public synchronized double getMeanLatency() {
+        return latencyHistogram.getMean();
+    }
+
+    public synchronized long getLatencyAtPercentile(double percentile) {
+        return latencyHistogram.getValueAtPercentile(percentile);
+    }
+
+    // Time the submitting thread spent waiting for a free slot, in nanoseconds
+    public synchronized long getWaitTime() {
+        return waitTime;
+    }
+
+    // Clears the statistics, keeping track of the frames still in flight
+    public synchronized void resetStats() {
+        latencyHistogram.reset();
+        waitTime = 0;
+        firstCompletionTime = -1;
+        lastCompletionTime = -1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Depth %d: %d frames, %.1f fps, latency mean %.2f ms, p50 %.2f ms, p99 %.2f ms, waited %.2f ms",
+                depth, latencyHistogram.getTotalCount(), getThroughput(),
+                latencyHistogram.getMean() / 1e6,
+                latencyHistogram.getValueAtPercentile(50) / 1e6,
+                latencyHistogram.getValueAtPercentile(99) / 1e6,
+                waitTime / 1e6);
+    }
+}
@@ -23,7 +23,11 @@
  */
 
 package net.hydex11.cameracaptureexample;
+import android.annotation.TargetApi;
 import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.renderscript.*;
 import android.graphics.ImageFormat;
 import android.graphics.Point;
@@ -48,47 +52,293 @@ public class RSCompute {
     boolean useCustomYUVToRGBConversion = false;
     // Boolean to use the simple YUV type declaration.
     boolean useYUVType = true;
+    // Boolean to run the single pass fusedThreshold kernel, which reads only the needed Y samples
+    // and writes the output directly, instead of converting the whole frame to RGBA first.
+    // Requires the YUV type.
+    boolean useFusedKernel = true;
+    // Boolean to check, on the first frame, that fusedThreshold gives exactly the same output
+    // as FusedThresholdReference
+    boolean verifyFusedKernel = false;
+    boolean fusedKernelVerified = false;
+
+    // Gray threshold (0-255): pixels brighter than it will be turned to red
+    static final int GRAY_THRESHOLD = 180;
 
     // Surface that gets generated from TextureView
     Surface mSurface = null;
 
-    // Allocations
-    Allocation inputAllocation; // Camera preview YUV allocation
+    // Allocations. There is a set of input and intermediate allocations for each frame that
+    // can be in flight, so that the copy of a frame does not have to wait for the kernels of the
+    // previous one. The output allocation is shared, as a surface accepts only one producer:
+    // RenderScript executes kernels and ioSend calls in submission order anyway.
+    Allocation[] inputAllocations; // Camera preview YUV allocations
     Allocation outputAllocation; // Output allocation
 
-    // Temporary intermediate allocation, used to store YUV to RGBA conversion output and
+    // Temporary intermediate allocations, used to store YUV to RGBA conversion output and
     // used as our custom script input
-    Allocation midAllocation;
+    Allocation[] midAllocations;
 
     Point mInputImageSize, mOutputAllocationSize;
 
+    // Frames in flight, with their latency and throughput
+    PipelineTracker pipelineTracker;
+
+    // How often, in frames, pipeline statistics get logged
+    static final int PIPELINE_STATS_INTERVAL = 100;
+
     // Funcs
-    public void compute(byte[] dataIn) {
+    // Runs on the camera compute thread, so it is synchronized with the output surface changes
+    public synchronized void compute(byte[] dataIn) {
+        if (outputAllocation == null)
+            return;
+
+        // Waits only if the allocations of this slot are still used by an older frame
+        int slot;
+        try {
+            slot = pipelineTracker.acquire(System.nanoTime());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        Allocation inputAllocation = inputAllocations[slot];
 
         // Copies data from camera preview buffer
         inputAllocation.copyFrom(dataIn);
 
+        if (useFusedKernel) {
+            scriptCMain.set_yuvIn(inputAllocation);
+
+            if (verifyFusedKernel && !fusedKernelVerified)
+                verifyFusedKernel(dataIn);
+
+            submitFusedFrame(slot);
+            return;
+        }
+
+        Allocation midAllocation = midAllocations[slot];
+
         // Converts input image to RGBA
-        if (useCustomYUVToRGBConversion)
+        if (useCustomYUVToRGBConversion) {
+            customYUVToRGBAConverter.set_inputAllocation(inputAllocation);
             customYUVToRGBAConverter.forEach_convert(midAllocation);
-        else
+        } else {
+            sYUV.setInput(inputAllocation);
             sYUV.forEach(midAllocation);
+        }
+
+        submitFrame(slot, midAllocation);
+    }
 
+    // Runs our custom script on the RGBA frame and sends the result to the rendering surface
+    private void submitFrame(int slot, Allocation midAllocation) {
         // Executes our custom script calculations
+        scriptCMain.set_aIn(midAllocation);
         scriptCMain.forEach_root(outputAllocation);
 
-        // Waits for all kernels to end
-        mRS.finish();
-
         // Sends custom script output to rendering surface
         outputAllocation.ioSend();
+
+        // Instead of waiting for all kernels to end with mRS.finish(), asks the script to tell us
+        // when this frame is done. Meanwhile, the next frame can be copied in.
+        scriptCMain.invoke_frameDone(slot);
+
+        logPipelineStats();
+    }
+
+    private void logPipelineStats() {
+        if (pipelineTracker.getCompletedCount() >= PIPELINE_STATS_INTERVAL) {
+            Log.d(TAG, pipelineTracker.toString() + (ioInputAllocation != null ?
+                    String.format(", %d camera frames skipped", ioInputSkippedFrames) : ""));
+            pipelineTracker.resetStats();
+        }
+    }
+
+    // Thresholds and downscales the frame in yuvIn with a single kernel
+    private void submitFusedFrame(int slot) {
+        scriptCMain.forEach_fusedThreshold(outputAllocation);
+        outputAllocation.ioSend();
+        scriptCMain.invoke_frameDone(slot);
+        logPipelineStats();
+    }
+
+    // Runs fusedThreshold on the frame in yuvIn and compares its output with the Java version.
+    // Blocks until the kernel ends, so it is meant to be used only once.
+    private void verifyFusedKernel(byte[] dataIn) {
+        fusedKernelVerified = true;
+
+        Type.Builder tb = new Type.Builder(mRS, Element.RGBA_8888(mRS)).setX(mOutputAllocationSize.x).setY(mOutputAllocationSize.y);
+        Allocation verifyAllocation = Allocation.createTyped(mRS, tb.create(), Allocation.USAGE_SCRIPT);
+        scriptCMain.forEach_fusedThreshold(verifyAllocation);
+
+        int length = mOutputAllocationSize.x * mOutputAllocationSize.y * 4;
+        byte[] actual = new byte[length];
+        verifyAllocation.copyTo(actual);
+        verifyAllocation.destroy();
+
+        byte[] expected = new byte[length];
+        FusedThresholdReference.run(dataIn, mInputImageSize.x, mInputImageSize.y,
+                mOutputAllocationSize.x, mOutputAllocationSize.y,
+                FusedThresholdReference.lumaThreshold(GRAY_THRESHOLD), expected);
+
+        int difference = FusedThresholdReference.firstDifference(expected, actual, length);
+        if (difference < 0)
+            Log.d(TAG, "fusedThreshold matches FusedThresholdReference");
+        else
+            Log.e(TAG, String.format("fusedThreshold differs from FusedThresholdReference at pixel %d, %d",
+                    (difference / 4) % mOutputAllocationSize.x, (difference / 4) / mOutputAllocationSize.x));
+    }
+
+    // Camera2 path: the camera writes frames directly into a USAGE_IO_INPUT Allocation, so
+    // there is no byte array and no copyFrom. ioReceive latches the newest camera buffer.
+    Allocation ioInputAllocation;
+    HandlerThread ioInputThread;
+    Handler ioInputHandler;
+    int ioInputPendingFrames = 0;
+    long ioInputSkippedFrames = 0;
+
+    // Creates the input Allocation and returns the surface the camera has to write to.
+    // Frames are then processed on a dedicated thread, as soon as they arrive.
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public Surface createIOInputSurface() {
+        Type.Builder yuvTypeBuilder = new Type.Builder(mRS, Element.YUV(mRS));
+        yuvTypeBuilder.setX(mInputImageSize.x);
+        yuvTypeBuilder.setY(mInputImageSize.y);
+        yuvTypeBuilder.setYuvFormat(ImageFormat.YUV_420_888);
+        ioInputAllocation = Allocation.createTyped(mRS, yuvTypeBuilder.create(),
+                Allocation.USAGE_IO_INPUT | Allocation.USAGE_SCRIPT);
+
+        // Flexible YUV layouts are read through rsGetElementAtYuv_* in our script
+        scriptCMain.set_yuvIn(ioInputAllocation);
+
+        ioInputThread = new HandlerThread("RSIOInput");
+        ioInputThread.start();
+        ioInputHandler = new Handler(ioInputThread.getLooper());
+
+        ioInputAllocation.setOnBufferAvailableListener(new Allocation.OnBufferAvailableListener() {
+            @Override
+            public void onBufferAvailable(Allocation a) {
+                synchronized (ioInputProcessor) {
+                    ioInputPendingFrames++;
+                    ioInputHandler.post(ioInputProcessor);
+                }
+            }
+        });
+
+        return ioInputAllocation.getSurface();
+    }
+
+    private final Runnable ioInputProcessor = new Runnable() {
+        @Override
+        public void run() {
+            int pendingFrames;
+            synchronized (this) {
+                pendingFrames = ioInputPendingFrames;
+                ioInputPendingFrames = 0;
+
+                // All pending buffers get received below, so later posts of this runnable are useless
+                ioInputHandler.removeCallbacks(this);
+            }
+            if (pendingFrames == 0)
+                return;
+
+            // Only the newest frame gets processed, older ones are skipped
+            for (int i = 0; i < pendingFrames; i++)
+                ioInputAllocation.ioReceive();
+            ioInputSkippedFrames += pendingFrames - 1;
+
+            computeIOInput();
+        }
+    };
+
+    private synchronized void computeIOInput() {
+        if (outputAllocation == null)
+            return;
+
+        int slot;
+        try {
+            slot = pipelineTracker.acquire(System.nanoTime());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (useFusedKernel) {
+            submitFusedFrame(slot);
+            return;
+        }
+
+        // Converts input image to RGBA
+        Allocation midAllocation = midAllocations[slot];
+        scriptCMain.forEach_yuvToRGBA(midAllocation);
+
+        submitFrame(slot, midAllocation);
+    }
+
+    // Stops receiving camera frames and releases the input and rendering surfaces. Waits for
+    // the frames in flight, as the next RSCompute takes over the RenderScript message handler.
+    public void destroy() {
+        if (ioInputAllocation != null)
+            stopIOInput();
+
+        try {
+            pipelineTracker.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // No kernel reads the input anymore
+        if (ioInputAllocation != null) {
+            ioInputAllocation.destroy();
+            ioInputAllocation = null;
+        }
+
+        destroyHolder();
     }
 
-    public RSCompute(RenderScript rsContext, Point inputImageSize, Point outputAllocationSize) {
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void stopIOInput() {
+        // No more frames get posted to the input thread, which then processes the ones already
+        // received and ends
+        ioInputAllocation.setOnBufferAvailableListener(null);
+        ioInputThread.quitSafely();
+        try {
+            ioInputThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioInputThread = null;
+    }
+
+    // Receives frame completions from our script
+    private final RenderScript.RSMessageHandler mMessageHandler = new RenderScript.RSMessageHandler() {
+        @Override
+        public void run() {
+            switch (mID) {
+                case ScriptC_main.const_MESSAGE_FRAME_DONE:
+                    pipelineTracker.complete(mData[0], System.nanoTime());
+                    break;
+                default:
+                    super.run();
+                    break;
+            }
+        }
+    };
+
+    // pipelineDepth is the number of frames that can be in flight. 1 behaves like waiting for
+    // each frame to end, and is useful to compare statistics.
+    public RSCompute(RenderScript rsContext, Point inputImageSize, Point outputAllocationSize, int pipelineDepth) {
         mRS = rsContext;
         mInputImageSize = inputImageSize;
         mOutputAllocationSize = outputAllocationSize;
 
+        pipelineTracker = new PipelineTracker(pipelineDepth);
+        mRS.setMessageHandler(mMessageHandler);
+
+        // The fused kernel reads Y samples through the YUV type
+        if (!useYUVType)
+            useFusedKernel = false;
+
         // Initalizes Scripts
         if (useCustomYUVToRGBConversion)
             customYUVToRGBAConverter = new ScriptC_customYUVToRGBAConverter(mRS);
@@ -98,7 +348,39 @@ public class RSCompute {
         scriptCMain = new ScriptC_main(mRS);
 
         // Init Allocations
+        inputAllocations = new Allocation[pipelineDepth];
+        midAllocations = new Allocation[pipelineDepth];
+
+        for (int i = 0; i < pipelineDepth; i++) {
+            inputAllocations[i] = createInputAllocation(inputImageSize);
+
+            // Creates temporary allocation that will match camera preview size.
+            // Not needed by the fused kernel.
+            if (!useFusedKernel) {
+                Type.Builder rgbaType = new Type.Builder(mRS, Element.RGBA_8888(mRS)).setX(mInputImageSize.x).setY(mInputImageSize.y);
+                midAllocations[i] = Allocation.createTyped(mRS, rgbaType.create(), Allocation.USAGE_SCRIPT);
+            }
+        }
+
+        // Init compute
+        if (useCustomYUVToRGBConversion)
+            customYUVToRGBAConverter.invoke_setInputImageSize(mInputImageSize.x, mInputImageSize.y);
 
+        scriptCMain.set_sizeIn(new Int2(mInputImageSize.x, mInputImageSize.y)); // Tells the script camera preview size
+
+        // Tells the script the resize ratio from input to output
+        scriptCMain.set_scaleInv(1.0f / ((float) mOutputAllocationSize.x / (float) mInputImageSize.x));
+
+        // Sets brightness threshold (0-255), so that gray values brighter than it will be turned to red.
+        scriptCMain.set_threshold(GRAY_THRESHOLD);
+
+        // Fused kernel uses the same threshold, on luma values
+        scriptCMain.set_sizeOut(new Int2(mOutputAllocationSize.x, mOutputAllocationSize.y));
+        scriptCMain.set_lumaThreshold(FusedThresholdReference.lumaThreshold(GRAY_THRESHOLD));
+
+    }
+
+    private Allocation createInputAllocation(Point inputImageSize) {
         if(useYUVType){
             // When used together with
             Type.Builder yuvTypeBuilder = new Type.Builder(mRS, Element.createPixel(mRS, Element.DataType.UNSIGNED_8, Element.DataKind.PIXEL_YUV));
@@ -106,7 +388,7 @@ public class RSCompute {
             yuvTypeBuilder.setY(inputImageSize.y);
             yuvTypeBuilder.setYuvFormat(android.graphics.ImageFormat.NV21);
             Type yuvType = yuvTypeBuilder.create();
-            inputAllocation = Allocation.createTyped(mRS, yuvType, Allocation.USAGE_SCRIPT);
+            return Allocation.createTyped(mRS, yuvType, Allocation.USAGE_SCRIPT);
         }
         else {
             // Calculates expected YUV bytes count as YUV is not a human friendly way of storing data:
@@ -116,29 +398,8 @@ public class RSCompute {
 
             Type.Builder yuvTypeBuilder = new Type.Builder(mRS, Element.U8(mRS)).setX(expectedBytes);
             Type yuvType = yuvTypeBuilder.create();
-            inputAllocation = Allocation.createTyped(mRS, yuvType, Allocation.USAGE_SCRIPT);
+            return Allocation.createTyped(mRS, yuvType, Allocation.USAGE_SCRIPT);
         }
-
-        // Creates temporary allocation that will match camera preview size
-        Type.Builder rgbaType = new Type.Builder(mRS, Element.RGBA_8888(mRS)).setX(mInputImageSize.x).setY(mInputImageSize.y);
-        midAllocation = Allocation.createTyped(mRS, rgbaType.create(), Allocation.USAGE_SCRIPT);
-
-        // Init compute
-        if (useCustomYUVToRGBConversion) {
-            customYUVToRGBAConverter.invoke_setInputImageSize(mInputImageSize.x, mInputImageSize.y);
-            customYUVToRGBAConverter.set_inputAllocation(inputAllocation);
-        } else
-            sYUV.setInput(inputAllocation);
-
-        scriptCMain.set_aIn(midAllocation);
-        scriptCMain.set_sizeIn(new Int2(mInputImageSize.x, mInputImageSize.y)); // Tells the script camera preview size
-
-        // Tells the script the resize ratio from input to output
-        scriptCMain.set_scaleInv(1.0f / ((float) mOutputAllocationSize.x / (float) mInputImageSize.x));
-
-        // Sets brightness threshold (0-255), so that gray values brighter than it will be turned to red.
-        scriptCMain.set_threshold(180);
-
     }
 
     // Sets output TextureView, to be used as RenderScript rendering surface.
@@ -151,6 +412,10 @@ public class RSCompute {
         }
 
         textureView.setSurfaceTextureListener(mSurfaceTextureListener);
+
+        // The listener is not called if the TextureView was already available
+        if (textureView.isAvailable())
+            resetAllocation(new Surface(textureView.getSurfaceTexture()));
     }
 
     // Main functions
@@ -13,6 +13,60 @@ int threshold = 200;
 
 const static float3 grayMultipliers = {0.299f, 0.587f, 0.114f};
 
+// Message sent to Java side when all the work queued before it has been completed
+const int MESSAGE_FRAME_DONE = 1;
+
+// Invoked after the kernels of a frame, so that the frame can be tracked without mRS.finish().
+// Blocking send, as a lost message would leave its slot in flight forever.
+void frameDone(int slot) {
+    rsSendToClientBlocking(MESSAGE_FRAME_DONE, (void*)&slot, sizeof(slot));
+}
+
+// Camera2 input frame, with a flexible YUV_420_888 layout
+rs_allocation yuvIn;
+
+// Converts the camera frame to RGBA. Reading through rsGetElementAtYuv_* works whatever the
+// planes layout and strides chosen by the camera are.
+uchar4 __attribute__((kernel)) yuvToRGBA(uint32_t x, uint32_t y) {
+    uchar yValue = rsGetElementAtYuv_uchar_Y(yuvIn, x, y);
+    uchar uValue = rsGetElementAtYuv_uchar_U(yuvIn, x, y);
+    uchar vValue = rsGetElementAtYuv_uchar_V(yuvIn, x, y);
+
+    return rsYuvToRGBA_uchar4(yValue, uValue, vValue);
+}
+
+// Fused kernel output size and threshold on luma values (see FusedThresholdReference.java)
+int2 sizeOut;
+int lumaThreshold = 170;
+
+// Single pass version of YUV to RGBA conversion + root kernel: for each output pixel, reads
+// only the Y sample it maps to and thresholds it, without any full size RGBA image. Only
+// integer math is used, so that FusedThresholdReference.java gives the very same output.
+uchar4 __attribute__((kernel)) fusedThreshold(uint32_t x, uint32_t y) {
+    uint32_t fX = min(x * (uint32_t) sizeIn.x / (uint32_t) sizeOut.x, (uint32_t) sizeIn.x - 1);
+    uint32_t fY = min(y * (uint32_t) sizeIn.y / (uint32_t) sizeOut.y, (uint32_t) sizeIn.y - 1);
+
+    uchar luma = rsGetElementAtYuv_uchar_Y(yuvIn, fX, fY);
+
+    uchar4 out;
+
+    if(luma > lumaThreshold){
+        out.r = 255;
+        out.g = 0;
+        out.b = 0;
+        out.a = 255;
+    }
+    else
+    {
+        out.r = 0;
+        out.g = 0;
+        out.b = 0;
+        out.a = 0;
+    }
+
+    return out;
+}
+
 uchar4 __attribute__((kernel)) root(uint32_t x, uint32_t y) {
 
     /*
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.cameracaptureexample;
+
+import net.hydex11.rsprofiler.FrameCaptureReader;
+import net.hydex11.rsprofiler.FrameCaptureWriter;
+import net.hydex11.rsprofiler.FrameReplayer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the fused threshold pipeline, through its Java reference, on recorded frames.
+ * A capture recorded on a device (RECORD_FRAMES_COUNT in MainActivity) can be replayed with
+ * gradlew :app:testDebugUnitTest -PframeCapture=/path/to/RSFrameCapture.bin
+ */
+public class FrameReplayTest {
+
+    static class ThresholdPipeline implements FrameReplayer.FrameConsumer {
+        final int inWidth, inHeight, outWidth, outHeight;
+        final byte[] output;
+        long checksum = 0;
+
+        ThresholdPipeline(int inWidth, int inHeight) {
+            this.inWidth = inWidth;
+            this.inHeight = inHeight;
+            // Same downscale as MainActivity
+            outWidth = Math.round(inWidth * 0.5f);
+            outHeight = Math.round(inHeight * 0.5f);
+            output = new byte[outWidth * outHeight * 4];
+        }
+
+        @Override
+        public void onFrame(byte[] frame, int index, long timestampNanos) {
+            FusedThresholdReference.run(frame, inWidth, inHeight, outWidth, outHeight,
+                    FusedThresholdReference.lumaThreshold(RSCompute.GRAY_THRESHOLD), output);
+            checksum = checksum * 31 + Arrays.hashCode(output);
+        }
+    }
+
+    static long replay(File file, double rate) throws Exception {
+        FrameCaptureReader reader = new FrameCaptureReader(file);
+        ThresholdPipeline pipeline = new ThresholdPipeline(reader.getWidth(), reader.getHeight());
+        FrameReplayer replayer = new FrameReplayer(reader);
+        replayer.replay(pipeline, rate, 1);
+
+        // Every frame is processed and timed once, even when late at a fixed rate
+        assertEquals(reader.getFrameCount(), replayer.getProcessedCount());
+        assertEquals(reader.getFrameCount(), replayer.getProcessingTimes().getTotalCount());
+        return pipeline.checksum;
+    }
+
+    @Test
+    public void replayIsDeterministic() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        try {
+            FrameCaptureWriter writer = new FrameCaptureWriter(file, 320, 240);
+            byte[] frame = new byte[writer.getFrameSize()];
+            Random random = new Random(42);
+            for (int i = 0; i < 10; i++) {
+                random.nextBytes(frame);
+                writer.write(frame, i * 33333333L);
+            }
+            writer.close();
+
+            // Same frames, same output, whatever the rate
+            assertEquals(replay(file, FrameReplayer.MAX_RATE), replay(file, 200));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void replaysRecordedCapture() throws Exception {
+        String capture = System.getProperty("frameCapture");
+        assumeTrue(capture != null && !capture.isEmpty());
+
+        File file = new File(capture);
+        assertEquals(replay(file, FrameReplayer.MAX_RATE), replay(file, FrameReplayer.MAX_RATE));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.cameracaptureexample;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FusedThresholdReferenceTest {
+
+    static byte[] randomFrame(int width, int height, long seed) {
+        byte[] frame = new byte[width * height * 3 / 2];
+        new Random(seed).nextBytes(frame);
+        return frame;
+    }
+
+    @Test
+    public void lumaThresholdMatchesGrayThreshold() {
+        assertEquals(16, FusedThresholdReference.lumaThreshold(0));
+        assertEquals(235, FusedThresholdReference.lumaThreshold(255));
+        assertEquals(16, FusedThresholdReference.lumaThreshold(-5));
+
+        // A luma is above the converted threshold exactly when its gray value is above the original one
+        for (int threshold = 0; threshold < 256; threshold++) {
+            int lumaThreshold = FusedThresholdReference.lumaThreshold(threshold);
+            for (int luma = 16; luma <= 235; luma++) {
+                boolean grayAbove = (luma - 16) * 255 > threshold * 219;
+                assertEquals(grayAbove, luma > lumaThreshold);
+            }
+        }
+    }
+
+    @Test
+    public void halfSizeSamplesEvenPixels() {
+        int width = 8, height = 4;
+        byte[] frame = new byte[width * height * 3 / 2];
+        // Only the even pixels of even rows are bright
+        for (int y = 0; y < height; y += 2)
+            for (int x = 0; x < width; x += 2)
+                frame[y * width + x] = (byte) 200;
+
+        byte[] out = new byte[(width / 2) * (height / 2) * 4];
+        FusedThresholdReference.run(frame, width, height, width / 2, height / 2, 170, out);
+
+        for (int i = 0; i < out.length; i += 4) {
+            assertEquals((byte) 255, out[i]);
+            assertEquals(0, out[i + 1]);
+            assertEquals(0, out[i + 2]);
+            assertEquals((byte) 255, out[i + 3]);
+        }
+    }
+
+    @Test
+    public void sourceCoordinatesStayInside() {
+        int[][] sizes = {{1280, 640}, {1280, 427}, {720, 360}, {7, 5}, {5, 7}};
+        for (int[] size : sizes) {
+            int last = -1;
+            for (int o = 0; o < size[1]; o++) {
+                int s = FusedThresholdReference.sourceCoordinate(o, size[0], size[1]);
+                assertTrue(s >= 0 && s < size[0]);
+                assertTrue(s >= last);
+                last = s;
+            }
+        }
+    }
+
+    @Test
+    public void chromaIsIgnored() {
+        int width = 64, height = 48;
+        byte[] frame = randomFrame(width, height, 1);
+        byte[] expected = new byte[32 * 24 * 4];
+        FusedThresholdReference.run(frame, width, height, 32, 24, 170, expected);
+
+        // Changing the VU plane does not change the result
+        Arrays.fill(frame, width * height, frame.length, (byte) 7);
+        byte[] actual = new byte[expected.length];
+        FusedThresholdReference.run(frame, width, height, 32, 24, 170, actual);
+
+        assertEquals(-1, FusedThresholdReference.firstDifference(expected, actual, expected.length));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.cameracaptureexample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineTrackerTest {
+
+    static final long MS = 1000000L;
+
+    @Test
+    public void slotsAreUsedInRoundRobin() throws Exception {
+        PipelineTracker tracker = new PipelineTracker(3);
+
+        assertEquals(0, tracker.acquire(0));
+        assertEquals(1, tracker.acquire(0));
+        assertEquals(2, tracker.acquire(0));
+        assertEquals(3, tracker.getInFlightCount());
+
+        assertTrue(tracker.complete(0, 10 * MS));
+        assertEquals(0, tracker.acquire(10 * MS));
+    }
+
+    @Test
+    public void reportsLatencyAndThroughput() throws Exception {
+        PipelineTracker tracker = new PipelineTracker(2);
+
+        // A frame every 10 ms, each one taking 15 ms to complete
+        for (int i = 0; i < 10; i++) {
+            int slot = tracker.acquire(i * 10 * MS);
+            tracker.complete(slot, i * 10 * MS + 15 * MS);
+        }
+
+        assertEquals(10, tracker.getCompletedCount());
+        assertEquals(0, tracker.getInFlightCount());
+        assertEquals(15 * MS, tracker.getMeanLatency(), 0.01 * 15 * MS);
+        assertEquals(100.0, tracker.getThroughput(), 1e-6);
+
+        tracker.resetStats();
+        assertEquals(0, tracker.getCompletedCount());
+        assertEquals(0, tracker.getThroughput(), 0);
+    }
+
+    @Test
+    public void staleCompletionsAreIgnored() throws Exception {
+        PipelineTracker tracker = new PipelineTracker(2);
+
+        assertFalse(tracker.complete(1, 0));
+        assertFalse(tracker.complete(5, 0));
+
+        int slot = tracker.acquire(0);
+        assertTrue(tracker.complete(slot, MS));
+        assertFalse(tracker.complete(slot, 2 * MS));
+        assertEquals(1, tracker.getCompletedCount());
+    }
+
+    @Test
+    public void acquireWaitsForFreeSlot() throws Exception {
+        final PipelineTracker tracker = new PipelineTracker(1);
+        tracker.acquire(0);
+
+        final int[] acquired = new int[]{-1};
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquired[0] = tracker.acquire(System.nanoTime());
+                } catch (InterruptedException e) {
+                    // Leaves -1
+                }
+            }
+        });
+        submitter.start();
+
+        Thread.sleep(50);
+        assertTrue(submitter.isAlive());
+
+        tracker.complete(0, System.nanoTime());
+        submitter.join(5000);
+
+        assertFalse(submitter.isAlive());
+        assertEquals(0, acquired[0]);
+        assertTrue(tracker.getWaitTime() > 0);
+    }
+}
@@ -29,6 +29,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
+import net.hydex11.rsprofiler.LogView;
 
 public class MainActivity extends AppCompatActivity {
 
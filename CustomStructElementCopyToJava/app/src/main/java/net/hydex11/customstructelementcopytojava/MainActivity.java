@@ -9,6 +9,7 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
+import net.hydex11.rsprofiler.LogView;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -33,6 +33,8 @@ import android.util.Pair;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 
+import net.hydex11.rsprofiler.FrameQueue;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -45,6 +47,9 @@ public class CameraHandler {
 
     static final String TAG = "CameraHandler";
 
+    // How often, in processed frames, the compute thread logs the frame counters
+    static final int FRAME_STATS_INTERVAL = 100;
+
     Activity mActivity;
     Camera mCamera;
     Camera.CameraInfo mBackCameraInfo;
@@ -52,6 +57,10 @@ public class CameraHandler {
     int expectedCameraBytes;
     Camera.Size mCameraSize;
 
+    // Threaded frame processing, used when CameraSetup has a FrameCallback
+    FrameQueue<byte[]> mFrameQueue;
+    Thread mComputeThread;
+
     // Init
     public CameraHandler(Activity activity) {
         mActivity = activity;
@@ -86,8 +95,15 @@ public class CameraHandler {
         // Sets up preview surface
         mCamera.setPreviewDisplay(cameraSetup.holder);
 
-        // Sets up callback for camera, that will get input YUV NV21 bytes
-        mCamera.setPreviewCallbackWithBuffer(cameraSetup.previewCallback);
+        // Sets up callback for camera, that will get input YUV NV21 bytes.
+        // With a FrameCallback, frames are handed to a dedicated compute thread, so that
+        // the camera keeps filling the other buffers while a frame is being processed.
+        if (cameraSetup.frameCallback != null) {
+            startComputeThread(cameraSetup);
+            mCamera.setPreviewCallbackWithBuffer(mFrameQueueCallback);
+        } else {
+            mCamera.setPreviewCallbackWithBuffer(cameraSetup.previewCallback);
+        }
 
         mCameraParameters = mCamera.getParameters();
 
@@ -123,10 +139,79 @@ public class CameraHandler {
     public void destroy() {
         if (mCamera != null) {
             mCamera.stopPreview();
-            mCamera.release();
+        }
+
+        // Stops the compute thread before releasing the camera, as it still gives buffers back to it
+        if (mFrameQueue != null) {
+            mFrameQueue.close();
+            try {
+                mComputeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Log.d(TAG, mFrameQueue.toString());
+        }
+
+        synchronized (this) {
+            if (mCamera != null) {
+                mCamera.release();
+                mCamera = null;
+            }
         }
     }
 
+    // Returns the queue between camera and compute thread, to read its counters. Null when
+    // frames are processed directly in the preview callback.
+    public FrameQueue<byte[]> getFrameQueue() {
+        return mFrameQueue;
+    }
+
+    private void startComputeThread(final CameraSetup cameraSetup) {
+        mFrameQueue = new FrameQueue<byte[]>(cameraSetup.frameDropPolicy, cameraSetup.frameQueueCapacity,
+                new FrameQueue.Recycler<byte[]>() {
+                    @Override
+                    public void recycle(byte[] frame) {
+                        // Adds camera buffer back so that can be used on next acquired frame
+                        synchronized (CameraHandler.this) {
+                            if (mCamera != null)
+                                mCamera.addCallbackBuffer(frame);
+                        }
+                    }
+                });
+
+        final FrameQueue<byte[]> frameQueue = mFrameQueue;
+        mComputeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] frame;
+                    while ((frame = frameQueue.take()) != null) {
+                        try {
+                            cameraSetup.frameCallback.onFrame(frame);
+                        } finally {
+                            frameQueue.done(frame);
+                        }
+
+                        // Periodically logs frame counters, to evaluate the chosen drop policy
+                        if (frameQueue.getProcessedCount() % FRAME_STATS_INTERVAL == 0)
+                            Log.d(TAG, frameQueue.toString());
+                    }
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "Compute thread interrupted");
+                }
+            }
+        }, "CameraCompute");
+        mComputeThread.start();
+    }
+
+    // Camera thread side: only queues the frame, dropping older ones if the compute thread is busy
+    private final Camera.PreviewCallback mFrameQueueCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] data, Camera camera) {
+            mFrameQueue.offer(data);
+        }
+    };
+
     public Camera.Parameters getCameraParameters() {
         return mCameraParameters;
     }
@@ -207,9 +292,22 @@ public class CameraHandler {
         mCamera.setDisplayOrientation(displayOrientation);
     }
 
+    // Gets called on the compute thread for every frame that was not dropped. The buffer
+    // is given back to the camera when the function returns.
+    public interface FrameCallback {
+        void onFrame(byte[] data);
+    }
+
     static class CameraSetup {
+        // Minimum buffers for threaded processing: one being filled by the camera, one
+        // being processed and at least one pending
+        static final int MIN_THREADED_BUFFERS_COUNT = 3;
+
         private SurfaceHolder holder;
         private Camera.PreviewCallback previewCallback;
+        private FrameCallback frameCallback;
+        private FrameQueue.Policy frameDropPolicy = FrameQueue.Policy.LATEST_WINS;
+        private int frameQueueCapacity = 1;
         private Point maxPreviewSize;
         private int cameraBuffersCount = 1;
 
@@ -221,6 +319,19 @@ public class CameraHandler {
             previewCallback = _previewCallback;
         }
 
+        // Processes frames on a dedicated thread instead of the camera one. Requires at least
+        // MIN_THREADED_BUFFERS_COUNT camera buffers.
+        public void setFrameCallback(FrameCallback _frameCallback) {
+            frameCallback = _frameCallback;
+        }
+
+        // Which frames get dropped when the compute thread is slower than the camera, and how
+        // many of them can wait for it. Higher capacity favours throughput over latency.
+        public void setFrameDropPolicy(FrameQueue.Policy policy, int capacity) {
+            frameDropPolicy = policy;
+            frameQueueCapacity = capacity;
+        }
+
         public void setMaxPreviewSize(Point _maxPreviewSize) {
             maxPreviewSize = _maxPreviewSize;
         }
@@ -236,8 +347,20 @@ public class CameraHandler {
                 throw new RuntimeException("Must select preview holder");
             if (cameraBuffersCount <= 0)
                 throw new RuntimeException("Camera buffers min count is 1");
-            if (previewCallback == null)
-                throw new RuntimeException("Must select preview callback function");
+            if (previewCallback == null && frameCallback == null)
+                throw new RuntimeException("Must select preview callback or frame callback function");
+            if (previewCallback != null && frameCallback != null)
+                throw new RuntimeException("Preview callback and frame callback cannot be used together");
+            if (frameCallback != null) {
+                if (frameDropPolicy == null)
+                    throw new RuntimeException("Must select frame drop policy");
+                if (frameQueueCapacity <= 0)
+                    throw new RuntimeException("Frame queue min capacity is 1");
+                // Every pending frame holds a buffer, plus the camera and the compute thread ones
+                if (cameraBuffersCount < Math.max(MIN_THREADED_BUFFERS_COUNT, frameQueueCapacity + 2))
+                    throw new RuntimeException("Frame callback requires at least " +
+                            Math.max(MIN_THREADED_BUFFERS_COUNT, frameQueueCapacity + 2) + " camera buffers");
+            }
 
             Log.d(TAG, "CameraSetup is ok");
         }
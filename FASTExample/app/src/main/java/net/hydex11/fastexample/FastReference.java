@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java FAST-9 with corner scores and 3x3 non maximum suppression, used to check the
+ * fast_score.fs kernels and the NDK fast9_score/nonmax_suppression functions.
+ */
+public class FastReference {
+
+    // Corner score of a pixel, as defined by the FAST library: the highest threshold at which
+    // the pixel is still a corner. That is the best, over all 9 pixels arcs, of the arc minimum
+    // difference from the center, minus 1 as comparisons are strict. Returns 0 if the pixel is
+    // not a corner at the given threshold, which has then to be at least 1.
+    public static int cornerScore(byte[] gray, int width, int x, int y, int threshold) {
+        int center = gray[x + y * width] & 0xFF;
+
+        int[] diffs = new int[16];
+        for (int i = 0; i < 16; i++) {
+            diffs[i] = (gray[x + ParallelFast9.CIRCLE_X[i] + (y + ParallelFast9.CIRCLE_Y[i]) * width] & 0xFF) - center;
+        }
+
+        int best = 0;
+        for (int start = 0; start < 16; start++) {
+            int minBrighter = 255;
+            int minDarker = 255;
+            for (int k = 0; k < 9; k++) {
+                int diff = diffs[(start + k) & 15];
+                minBrighter = Math.min(minBrighter, diff);
+                minDarker = Math.min(minDarker, -diff);
+            }
+            best = Math.max(best, Math.max(minBrighter, minDarker));
+        }
+
+        return best > threshold ? best - 1 : 0;
+    }
+
+    // Writes the corner score of every pixel to scores (unsigned), 0 for non corners
+    public static void score(byte[] gray, int width, int height, int threshold, byte[] scores) {
+        Arrays.fill(scores, 0, width * height, (byte) 0);
+
+        for (int y = ParallelFast9.BORDER; y < height - ParallelFast9.BORDER; y++) {
+            for (int x = ParallelFast9.BORDER; x < width - ParallelFast9.BORDER; x++) {
+                scores[x + y * width] = (byte) cornerScore(gray, width, x, y, threshold);
+            }
+        }
+    }
+
+    // Keeps only corners whose score is strictly greater than the ones of their 8 neighbours,
+    // as the FAST library nonmax_suppression does. Keypoints are stored in row major order,
+    // packed as x, y, score, level (see KeypointList), until keypoints is full. Returns how
+    // many keypoints have been found.
+    public static int nonmaxSuppression(byte[] scores, int width, int height, int level, int[] keypoints) {
+        int count = 0;
+
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int score = scores[x + y * width] & 0xFF;
+                if (score == 0 || !isLocalMaximum(scores, width, x, y, score))
+                    continue;
+
+                int offset = count * KeypointList.KEYPOINT_SIZE;
+                if (offset + KeypointList.KEYPOINT_SIZE <= keypoints.length) {
+                    keypoints[offset] = x;
+                    keypoints[offset + 1] = y;
+                    keypoints[offset + 2] = score;
+                    keypoints[offset + 3] = level;
+                }
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean isLocalMaximum(byte[] scores, int width, int x, int y, int score) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dy != 0) && (scores[x + dx + (y + dy) * width] & 0xFF) >= score)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // Index of the first keypoint that differs between two packed lists, or -1 if they are equal
+    public static int firstDifference(int[] a, int aCount, int[] b, int bCount) {
+        int count = Math.min(aCount, bCount);
+        for (int i = 0; i < count * KeypointList.KEYPOINT_SIZE; i++) {
+            if (a[i] != b[i])
+                return i / KeypointList.KEYPOINT_SIZE;
+        }
+        return aCount == bCount ? -1 : count;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+/**
+ * Keeps, for every cell of a grid laid over the frame, only the best scored keypoints. This
+ * bounds the keypoints handed to later stages to columns * rows * keypointsPerCell, and
+ * spreads them over the whole frame. Keypoints are grouped by cell with a counting sort and
+ * the best ones of each cell are found with a quickselect, so no full sort is needed.
+ * Input and output are packed keypoints (see KeypointList).
+ */
+public class GridKeypointSelector {
+
+    private final int frameWidth;
+    private final int frameHeight;
+    private final int columns;
+    private final int rows;
+    private final int keypointsPerCell;
+
+    // Keypoint indices grouped by cell: cell i ones go from cellStarts[i] to cellStarts[i + 1]
+    private final int[] cellStarts;
+    private final int[] cellFill;
+    private int[] keypointCells = new int[0];
+    private int[] order = new int[0];
+
+    // Scores of the keypoints being selected, aligned with order
+    private int[] scores = new int[0];
+
+    public GridKeypointSelector(int frameWidth, int frameHeight, int columns, int rows, int keypointsPerCell) {
+        if (columns <= 0 || rows <= 0 || keypointsPerCell <= 0)
+            throw new IllegalArgumentException("Grid size and keypoints per cell must be positive");
+
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.keypointsPerCell = keypointsPerCell;
+
+        cellStarts = new int[columns * rows + 1];
+        cellFill = new int[columns * rows];
+    }
+
+    // Highest number of keypoints select() can return
+    public int getMaxSelectedCount() {
+        return columns * rows * keypointsPerCell;
+    }
+
+    // Copies the selected keypoints to selected, grouped by cell, and returns how many they
+    // are. Keypoints of pyramid levels above 0 are assigned to cells using their base level
+    // coordinates. selected has to fit getMaxSelectedCount() keypoints, or count ones if less.
+    public int select(int[] keypoints, int count, int[] selected) {
+        ensureCapacity(count);
+
+        int cellsCount = columns * rows;
+        for (int i = 0; i <= cellsCount; i++)
+            cellStarts[i] = 0;
+
+        // Counting sort of the keypoints by cell
+        for (int i = 0; i < count; i++) {
+            int cell = getCell(keypoints, i);
+            keypointCells[i] = cell;
+            cellStarts[cell + 1]++;
+        }
+        for (int cell = 0; cell < cellsCount; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+            cellFill[cell] = cellStarts[cell];
+        }
+        for (int i = 0; i < count; i++) {
+            int position = cellFill[keypointCells[i]]++;
+            order[position] = i;
+            scores[position] = keypoints[i * KeypointList.KEYPOINT_SIZE + 2];
+        }
+
+        int selectedCount = 0;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            int from = cellStarts[cell];
+            int cellCount = cellStarts[cell + 1] - from;
+            int keptCount = Math.min(cellCount, keypointsPerCell);
+
+            if (cellCount > keypointsPerCell)
+                selectBest(from, from + cellCount - 1, from + keypointsPerCell - 1);
+
+            for (int i = from; i < from + keptCount; i++) {
+                System.arraycopy(keypoints, order[i] * KeypointList.KEYPOINT_SIZE,
+                        selected, selectedCount * KeypointList.KEYPOINT_SIZE, KeypointList.KEYPOINT_SIZE);
+                selectedCount++;
+            }
+        }
+
+        return selectedCount;
+    }
+
+    private int getCell(int[] keypoints, int index) {
+        int offset = index * KeypointList.KEYPOINT_SIZE;
+        int level = keypoints[offset + 3];
+        int x = (int) ImagePyramid.toBaseCoordinate(keypoints[offset], level);
+        int y = (int) ImagePyramid.toBaseCoordinate(keypoints[offset + 1], level);
+
+        int column = Math.min(Math.max(x * columns / frameWidth, 0), columns - 1);
+        int row = Math.min(Math.max(y * rows / frameHeight, 0), rows - 1);
+        return column + row * columns;
+    }
+
+    // Quickselect (Hoare partitioning): reorders order/scores between left and right, both
+    // included, so that no position up to target has a lower score than any position after it
+    private void selectBest(int left, int right, int target) {
+        while (left < right) {
+            int pivot = scores[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+
+            while (i <= j) {
+                while (scores[i] > pivot)
+                    i++;
+                while (scores[j] < pivot)
+                    j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (target <= j)
+                right = j;
+            else if (target >= i)
+                left = i;
+            else
+                break;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private void ensureCapacity(int count) {
+        if (order.length < count) {
+            keypointCells = new int[count];
+            order = new int[count];
+            scores = new int[count];
+        }
+    }
+}
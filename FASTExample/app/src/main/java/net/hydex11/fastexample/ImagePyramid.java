@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RenderScript;
+import android.renderscript.Type;
+
+/**
+ * Grayscale image pyramid, where every level halves the previous one. Level allocations are
+ * created once and reused for every frame. The pyramid is built at most once per frame, so
+ * that every stage that needs it can just call build() with the current frame index.
+ */
+public class ImagePyramid {
+
+    // Levels smaller than this are not created, as FAST needs a border of 3 pixels
+    public static final int MIN_LEVEL_SIZE = 16;
+
+    private final ScriptC_pyramid scriptCPyramid;
+    private final Allocation[] levels;
+    private long builtFrame = -1;
+
+    // Level 0 is baseLevel itself, which has to be a U8 allocation
+    public ImagePyramid(RenderScript rs, Allocation baseLevel, int maxLevelsCount) {
+        int width = baseLevel.getType().getX();
+        int height = baseLevel.getType().getY();
+
+        levels = new Allocation[getLevelsCount(width, height, maxLevelsCount)];
+        levels[0] = baseLevel;
+        for (int level = 1; level < levels.length; level++) {
+            Type levelType = new Type.Builder(rs, Element.U8(rs))
+                    .setX(getLevelSize(width, level))
+                    .setY(getLevelSize(height, level))
+                    .create();
+            levels[level] = Allocation.createTyped(rs, levelType, Allocation.USAGE_SCRIPT);
+        }
+
+        scriptCPyramid = new ScriptC_pyramid(rs);
+    }
+
+    // Builds the pyramid from the current content of the base level, unless it has already
+    // been built for this frame
+    public synchronized void build(long frame) {
+        if (frame == builtFrame)
+            return;
+
+        for (int level = 1; level < levels.length; level++) {
+            scriptCPyramid.set_previousLevel(levels[level - 1]);
+            scriptCPyramid.forEach_downsample(levels[level]);
+        }
+        builtFrame = frame;
+    }
+
+    public int getLevelsCount() {
+        return levels.length;
+    }
+
+    public Allocation getLevel(int level) {
+        return levels[level];
+    }
+
+    public int getLevelWidth(int level) {
+        return levels[level].getType().getX();
+    }
+
+    public int getLevelHeight(int level) {
+        return levels[level].getType().getY();
+    }
+
+    public static int getLevelSize(int baseSize, int level) {
+        return baseSize >> level;
+    }
+
+    // How many levels, up to maxLevelsCount, are at least MIN_LEVEL_SIZE wide and high
+    public static int getLevelsCount(int width, int height, int maxLevelsCount) {
+        int levelsCount = 1;
+        while (levelsCount < maxLevelsCount &&
+                getLevelSize(Math.min(width, height), levelsCount) >= MIN_LEVEL_SIZE) {
+            levelsCount++;
+        }
+        return levelsCount;
+    }
+
+    // Converts a level pixel coordinate to the base level one, at the center of the pixels
+    // block it has been averaged from
+    public static float toBaseCoordinate(int coordinate, int level) {
+        int scale = 1 << level;
+        return (coordinate + 0.5f) * scale - 0.5f;
+    }
+
+    // Java version of the downsample kernel (pyramid.fs)
+    public static void downsample(byte[] source, int sourceWidth, int sourceHeight, byte[] destination) {
+        int width = getLevelSize(sourceWidth, 1);
+        int height = getLevelSize(sourceHeight, 1);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sourceIndex = x * 2 + y * 2 * sourceWidth;
+                int sum = (source[sourceIndex] & 0xFF) + (source[sourceIndex + 1] & 0xFF) +
+                        (source[sourceIndex + sourceWidth] & 0xFF) + (source[sourceIndex + sourceWidth + 1] & 0xFF);
+                destination[x + y * width] = (byte) ((sum + 2) >> 2);
+            }
+        }
+    }
+}
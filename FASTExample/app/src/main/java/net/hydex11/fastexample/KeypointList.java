@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import android.os.Build;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RenderScript;
+
+import java.util.Arrays;
+
+/**
+ * Packed keypoints list filled by the FAST *List kernels (see keypoint_list.rsh). Every keypoint
+ * takes 4 ints (x, y, score, pyramid level), so only count * 4 ints have to be copied back
+ * instead of a full frame mask. Coordinates are relative to the keypoint pyramid level (see
+ * ImagePyramid).
+ */
+public class KeypointList {
+
+    public static final int KEYPOINT_SIZE = 4;
+
+    private final int maxKeypoints;
+    private final Allocation keypointsAllocation;
+    private final Allocation countAllocation;
+
+    private final int[] countArray = new int[1];
+    private final int[] zeroCount = new int[1];
+    // Used only before API 23, where ranged copies are not available
+    private int[] fullCopy;
+
+    public KeypointList(RenderScript rs, int maxKeypoints) {
+        this.maxKeypoints = maxKeypoints;
+        keypointsAllocation = Allocation.createSized(rs, Element.I32(rs), maxKeypoints * KEYPOINT_SIZE, Allocation.USAGE_SCRIPT);
+        countAllocation = Allocation.createSized(rs, Element.I32(rs), 1, Allocation.USAGE_SCRIPT);
+    }
+
+    // Allocations to bind to the keypoints and keypointsCount script pointers
+    public Allocation getKeypointsAllocation() {
+        return keypointsAllocation;
+    }
+
+    public Allocation getCountAllocation() {
+        return countAllocation;
+    }
+
+    public int getMaxKeypoints() {
+        return maxKeypoints;
+    }
+
+    // Has to be called before every kernel launch that fills the list
+    public void reset() {
+        countAllocation.copyFrom(zeroCount);
+    }
+
+    // Number of keypoints found by the last launch. It can be more than getMaxKeypoints(),
+    // in which case only the first getMaxKeypoints() ones have been stored.
+    public int getFoundCount() {
+        countAllocation.copyTo(countArray);
+        return countArray[0];
+    }
+
+    // Copies the stored keypoints to dst, packed as x, y, score, level. foundCount is the
+    // getFoundCount() value of the same launch, so that the count is copied back only once.
+    // Returns how many keypoints have been copied, which is limited by both getMaxKeypoints()
+    // and dst length.
+    public int read(int[] dst, int foundCount) {
+        int count = storedCount(foundCount, maxKeypoints, dst.length);
+        if (count == 0)
+            return 0;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            keypointsAllocation.copy1DRangeTo(0, count * KEYPOINT_SIZE, dst);
+            return count;
+        }
+
+        if (fullCopy == null)
+            fullCopy = new int[maxKeypoints * KEYPOINT_SIZE];
+        keypointsAllocation.copyTo(fullCopy);
+        return copyStored(fullCopy, foundCount, maxKeypoints, dst);
+    }
+
+    // Number of keypoints that read copies: the kernels store at most maxKeypoints of them
+    static int storedCount(int foundCount, int maxKeypoints, int dstLength) {
+        return Math.max(0, Math.min(Math.min(foundCount, maxKeypoints), dstLength / KEYPOINT_SIZE));
+    }
+
+    // Copies the packed keypoints stored in a full copy of the keypoints Allocation to dst.
+    // Returns how many keypoints have been copied.
+    static int copyStored(int[] stored, int foundCount, int maxKeypoints, int[] dst) {
+        int count = storedCount(foundCount, maxKeypoints, dst.length);
+        System.arraycopy(stored, 0, dst, 0, count * KEYPOINT_SIZE);
+        return count;
+    }
+
+    // Sorts packed keypoints by level, row and then column, as kernels store them in no
+    // particular order
+    public static void sortByPosition(int[] keypoints, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * KEYPOINT_SIZE;
+            // Keys are level, y, x, original index: coordinates are below 2^13, index below 2^21
+            keys[i] = ((long) keypoints[offset + 3] << 47) | ((long) keypoints[offset + 1] << 34) |
+                    ((long) keypoints[offset] << 21) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] sorted = new int[count * KEYPOINT_SIZE];
+        for (int i = 0; i < count; i++) {
+            int source = (int) (keys[i] & 0x1FFFFF) * KEYPOINT_SIZE;
+            System.arraycopy(keypoints, source, sorted, i * KEYPOINT_SIZE, KEYPOINT_SIZE);
+        }
+        System.arraycopy(sorted, 0, keypoints, 0, sorted.length);
+    }
+}
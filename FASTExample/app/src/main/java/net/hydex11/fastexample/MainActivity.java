@@ -35,6 +35,7 @@ import android.renderscript.Script;
 import android.renderscript.ScriptIntrinsicYuvToRGB;
 import android.renderscript.Type;
 import android.support.v7.app.AppCompatActivity;
+import android.os.Build;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -46,6 +47,16 @@ import android.view.TextureView;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.Toast;
+import android.util.Log;
+import net.hydex11.rsprofiler.FrameCaptureWriter;
+import net.hydex11.rsprofiler.FrameQueue;
+import net.hydex11.rsprofiler.LogBus;
+import net.hydex11.rsprofiler.QualityGovernor;
+import net.hydex11.rsprofiler.Timings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
@@ -67,7 +78,7 @@ public class MainActivity extends AppCompatActivity {
     Surface rsResultSurface;
 
     // Utility function to enable saving current screen
-    boolean saveCurrentScreen = false;
+    volatile boolean saveCurrentScreen = false;
 
     private void example() {
         timings = new Timings(this);
@@ -76,6 +87,16 @@ public class MainActivity extends AppCompatActivity {
         // the following instruction
         timings.setTimingDebugInterval(50);
 
+        // Records every timing, nested inside frame stages, to be saved as a Chrome trace
+        // (RSProfilerTrace*.json) when exiting
+        timings.enableTracing(65536);
+        frameSpan = timings.registerSpan("Camera frame");
+        renderScriptSpan = timings.registerSpan("RenderScript");
+        ndkSpan = timings.registerSpan("NDK");
+        javaSpan = timings.registerSpan("Java");
+        yuvToGrayscaleSpan = timings.registerSpan("YUV to grayscale");
+        fastSpan = timings.registerSpan("FAST");
+
         // Prevent window dimming
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
@@ -109,6 +130,15 @@ public class MainActivity extends AppCompatActivity {
         rsResultTextureView.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                // Stops the camera compute thread, so that the trace is not being recorded while saved
+                if (cameraHandler != null)
+                    cameraHandler.destroy();
+
+                try {
+                    timings.saveTrace();
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not save trace", e);
+                }
                 System.exit(0);
             }
         });
@@ -120,11 +150,14 @@ public class MainActivity extends AppCompatActivity {
             // As surfaces are ready, we can instantiate the camera
             CameraHandler.CameraSetup cameraSetup = new CameraHandler.CameraSetup();
             cameraSetup.setMaxPreviewSize(new Point(1280, 720));
-            cameraSetup.setCameraBuffersCount(1);
+            // Three buffers let the camera keep capturing while a frame is being processed.
+            // Only the latest frame gets processed, older ones are dropped.
+            cameraSetup.setCameraBuffersCount(3);
+            cameraSetup.setFrameDropPolicy(FrameQueue.Policy.LATEST_WINS, 1);
             cameraSetup.setPreviewSurfaceHolder(cameraPreviewSurfaceHolder);
 
-            // Function that gets called every time there is a camera frame available.
-            cameraSetup.setPreviewCallback(previewCallback);
+            // Function that gets called, on a dedicated thread, every time there is a camera frame available.
+            cameraSetup.setFrameCallback(frameCallback);
 
             cameraHandler = new CameraHandler(this);
             try {
@@ -140,13 +173,14 @@ public class MainActivity extends AppCompatActivity {
 
     // RS variables
     RenderScript mRS;
-    boolean rsInstantiated = false;
+    volatile boolean rsInstantiated = false;
     Camera.Size inputImageSize;
 
     Allocation inputAllocation;
     Allocation rgbAllocation;
     Allocation grayAllocation;
     Allocation fastKpAllocation; // Allocation where to store the detected keypoints
+    Allocation scoresAllocation; // FAST corner scores, input of the non maximum suppression
     Allocation outputAllocation; // Allocation where to display detected keypoints
 
     // Scripts
@@ -168,9 +202,73 @@ public class MainActivity extends AppCompatActivity {
     // Script that contains conversion to gray image and a function to display the detected keypoints.
     ScriptC_util scriptCUtil;
 
+    // This script contains a FAST detector that outputs corner scores, and a 3x3 non maximum
+    // suppression pass. They match the FAST library fast9_score and nonmax_suppression.
+    ScriptC_fast_score scriptCFastScore;
+    static final int FAST_THRESHOLD = 20;
+
+    // Set it to true to check, on every frame, the scored FAST + NMS keypoints of RenderScript
+    // against FastReference (Java) and the NDK FAST library, on the same grayscale image
+    static final boolean VERIFY_FAST_SCORES = false;
+    byte[] verifyGrayImage;
+    byte[] verifyScores;
+    int[] verifyReferenceKeypoints;
+    int[] verifyNdkKeypoints;
+
     // LaunchOptions
     Script.LaunchOptions fastLaunchOptions;
 
+    // Packed keypoints output of the FAST *List kernels, read back without copying a full frame mask
+    static final int MAX_KEYPOINTS = 16384;
+    KeypointList keypointList;
+    int[] keypointsArray;
+
+    // Gray image pyramid, built once per frame (frameIndex) for all the stages that need it
+    static final int PYRAMID_LEVELS_COUNT = 4;
+    ImagePyramid imagePyramid;
+    MultiScaleFast multiScaleFast;
+    long frameIndex = 0;
+
+    // Keeps at most KEYPOINTS_PER_CELL keypoints, the best scored ones, in every cell of a
+    // GRID_COLUMNS x GRID_ROWS grid, so that later stages get a bounded number of keypoints
+    static final int GRID_COLUMNS = 8;
+    static final int GRID_ROWS = 6;
+    static final int KEYPOINTS_PER_CELL = 10;
+    GridKeypointSelector keypointSelector;
+    int[] selectedKeypointsArray;
+
+    // Pure Java FAST-9 (fast-java module), detecting in row bands on a ForkJoinPool, which is
+    // available from API 21. Runs on the camera frame luma plane.
+    ParallelFast9 javaFast;
+
+    // Set it to true to let a QualityGovernor lower the processing quality when frames take
+    // longer than the camera frame period, and raise it again when there is headroom. Levels:
+    // 0: all conversions and detectors (benchmark mode)
+    // 1: custom YUV to grayscale conversion and RS FAST lib only
+    // 2: as 1, on a centered region of 3/4 of the frame
+    // 3: as 1, on a centered region of 1/2 of the frame
+    static final boolean USE_QUALITY_GOVERNOR = false;
+    static final int QUALITY_LEVELS_COUNT = 4;
+    static final float[] QUALITY_LEVEL_REGION_SCALES = {1f, 1f, 0.75f, 0.5f};
+    static final int QUALITY_TARGET_FPS = 30;
+    static final long QUALITY_TARGET_P99 = 50000000L; // 50ms
+    static final int QUALITY_WINDOW_SIZE = 30;
+
+    QualityGovernor qualityGovernor;
+    Script.LaunchOptions[] qualityLaunchOptions;
+    int qualityLevel = 0;
+
+    // Builds FAST launch options on a centered region of the frame, keeping the 3 pixels border
+    private static Script.LaunchOptions createRegionLaunchOptions(int width, int height, float scale) {
+        int marginX = Math.max(3, (int) (width * (1f - scale) / 2));
+        int marginY = Math.max(3, (int) (height * (1f - scale) / 2));
+
+        Script.LaunchOptions launchOptions = new Script.LaunchOptions();
+        launchOptions.setX(marginX, width - marginX);
+        launchOptions.setY(marginY, height - marginY);
+        return launchOptions;
+    }
+
     private void instantiateRS() {
         mRS = RenderScript.create(this); //, RenderScript.ContextType.DEBUG);
 
@@ -193,6 +291,7 @@ public class MainActivity extends AppCompatActivity {
         scriptCFast = new ScriptC_fast(mRS);
         scriptCFastOpenCV = new ScriptC_fast_opencv(mRS);
         scriptCUtil = new ScriptC_util(mRS);
+        scriptCFastScore = new ScriptC_fast_score(mRS);
 
         // Build type for YUV input image
         Type.Builder tb;
@@ -218,6 +317,7 @@ public class MainActivity extends AppCompatActivity {
         rgbAllocation = Allocation.createTyped(mRS, rgbaType, Allocation.USAGE_SCRIPT);
         grayAllocation = Allocation.createTyped(mRS, grayType, Allocation.USAGE_SCRIPT);
         fastKpAllocation = Allocation.createTyped(mRS, grayType, Allocation.USAGE_SCRIPT);
+        scoresAllocation = Allocation.createTyped(mRS, grayType, Allocation.USAGE_SCRIPT);
         outputAllocation = Allocation.createTyped(mRS, rgbaType, Allocation.USAGE_SCRIPT | Allocation.USAGE_IO_OUTPUT);
 
         // Tells the output allocation which surface is its
@@ -229,72 +329,249 @@ public class MainActivity extends AppCompatActivity {
         scriptCFast.set_grayAllocation(grayAllocation);
         scriptCFastOpenCV.set_grayAllocation(grayAllocation);
 
-        // Defines limits for RS kernels execution, as FAST extraction requires
-        // a border of 3 pixels to operate and harris score requires 4 of them, so
-        // the maximum is chosen.
+        keypointList = new KeypointList(mRS, MAX_KEYPOINTS);
+        keypointsArray = new int[MAX_KEYPOINTS * KeypointList.KEYPOINT_SIZE];
+        scriptCFast.bind_keypoints(keypointList.getKeypointsAllocation());
+        scriptCFast.bind_keypointsCount(keypointList.getCountAllocation());
+        scriptCFast.set_maxKeypoints(MAX_KEYPOINTS);
+        scriptCFastOpenCV.bind_keypoints(keypointList.getKeypointsAllocation());
+        scriptCFastOpenCV.bind_keypointsCount(keypointList.getCountAllocation());
+        scriptCFastOpenCV.set_maxKeypoints(MAX_KEYPOINTS);
+
+        // Non maximum suppression reads scores around the launch area, which have to be 0
+        scriptCUtil.forEach_clearKeypoints(scoresAllocation);
+        scriptCFastScore.set_grayAllocation(grayAllocation);
+        scriptCFastScore.set_scoresAllocation(scoresAllocation);
+        scriptCFastScore.set_fastThreshold(FAST_THRESHOLD);
+        scriptCFastScore.bind_keypoints(keypointList.getKeypointsAllocation());
+        scriptCFastScore.bind_keypointsCount(keypointList.getCountAllocation());
+        scriptCFastScore.set_maxKeypoints(MAX_KEYPOINTS);
+
+        if (VERIFY_FAST_SCORES) {
+            int pixelsCount = inputImageSize.width * inputImageSize.height;
+            verifyGrayImage = new byte[pixelsCount];
+            verifyScores = new byte[pixelsCount];
+            verifyReferenceKeypoints = new int[MAX_KEYPOINTS * KeypointList.KEYPOINT_SIZE];
+            verifyNdkKeypoints = new int[MAX_KEYPOINTS * KeypointList.KEYPOINT_SIZE];
+        }
+
+        imagePyramid = new ImagePyramid(mRS, grayAllocation, PYRAMID_LEVELS_COUNT);
+        multiScaleFast = new MultiScaleFast(mRS, imagePyramid, keypointList, FAST_THRESHOLD);
+
+        keypointSelector = new GridKeypointSelector(inputImageSize.width, inputImageSize.height,
+                GRID_COLUMNS, GRID_ROWS, KEYPOINTS_PER_CELL);
+        selectedKeypointsArray = new int[keypointSelector.getMaxSelectedCount() * KeypointList.KEYPOINT_SIZE];
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            javaFast = new ParallelFast9(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+
+        // Defines limits for RS kernels execution: the FAST-9 score reads the radius 3 circle
+        // around each pixel, so a border of 3 pixels is skipped. Non maximum suppression reads
+        // the 8 neighbours, whose scores are 0 on the border, so it can run on the same area.
         fastLaunchOptions = new Script.LaunchOptions();
         fastLaunchOptions.setX(3, inputImageSize.width - 3);
         fastLaunchOptions.setY(3, inputImageSize.height - 3);
 
+        if (USE_QUALITY_GOVERNOR) {
+            qualityGovernor = new QualityGovernor(LogBus.getDefault(), QUALITY_LEVELS_COUNT,
+                    QualityGovernor.framePeriodFromFps(QUALITY_TARGET_FPS), QUALITY_TARGET_P99, QUALITY_WINDOW_SIZE);
+
+            qualityLaunchOptions = new Script.LaunchOptions[QUALITY_LEVELS_COUNT];
+            for (int i = 0; i < QUALITY_LEVELS_COUNT; i++) {
+                qualityLaunchOptions[i] = createRegionLaunchOptions(inputImageSize.width, inputImageSize.height,
+                        QUALITY_LEVEL_REGION_SCALES[i]);
+            }
+        }
+
         // Settings this to true tells the camera preview callback that the RS code
         // can be executed
         rsInstantiated = true;
     }
 
-    // Camera callback
-    Camera.PreviewCallback previewCallback = new Camera.PreviewCallback() {
+    // Trace spans, registered in example()
+    int frameSpan;
+    int renderScriptSpan;
+    int ndkSpan;
+    int javaSpan;
+    int yuvToGrayscaleSpan;
+    int fastSpan;
+
+    // Set it to a positive count to record that many camera frames to RSFrameCapture.bin, inside
+    // the app external files folder. Frames can then be replayed with FrameReplayer, e.g. on a JVM.
+    static final int RECORD_FRAMES_COUNT = 0;
+    FrameCaptureWriter frameCaptureWriter;
+    boolean frameRecordingDone = false;
+
+    private void recordFrame(byte[] data, int width, int height) {
+        if (frameRecordingDone)
+            return;
+
+        try {
+            if (frameCaptureWriter == null) {
+                File captureFile = new File(getExternalFilesDir(null), "RSFrameCapture.bin");
+                frameCaptureWriter = new FrameCaptureWriter(captureFile, width, height);
+                Log.d(TAG, "Recording frames to " + captureFile.getAbsolutePath());
+            }
+
+            frameCaptureWriter.write(data, System.nanoTime());
+
+            if (frameCaptureWriter.getFrameCount() == RECORD_FRAMES_COUNT) {
+                frameRecordingDone = true;
+                frameCaptureWriter.close();
+                Log.d(TAG, "Recorded " + RECORD_FRAMES_COUNT + " frames");
+            }
+        } catch (IOException e) {
+            frameRecordingDone = true;
+            Log.e(TAG, "Could not record frames", e);
+        }
+    }
+
+    // Camera callback, executed on CameraHandler compute thread
+    CameraHandler.FrameCallback frameCallback = new CameraHandler.FrameCallback() {
         @Override
-        public void onPreviewFrame(byte[] data, Camera camera) {
+        public void onFrame(byte[] data) {
 
             if (rsInstantiated) {
 
+                frameIndex++;
+
+                if (RECORD_FRAMES_COUNT > 0)
+                    recordFrame(data, inputImageSize.width, inputImageSize.height);
+
                 // Initialize profiling
+                int frame = timings.beginSpan(frameSpan);
                 timings.initTimings();
 
                 // Copy image from camera frame
                 inputAllocation.copyFrom(data);
                 timings.addTiming("Camera data copy");
 
-                // Converts image, YUV -> RGBA -> GRAY
-                scriptIntrinsicYuvToRGB.forEach(rgbAllocation);
-                scriptCUtil.forEach_rgbaToGray(rgbAllocation, grayAllocation);
-                timings.addTiming("YUV to grayscale (RenderScriptIntrinsic)");
+                // Quality level 0 runs every variant, higher ones only the cheapest path
+                boolean fullQuality = qualityLevel == 0;
+                Script.LaunchOptions launchOptions = USE_QUALITY_GOVERNOR ?
+                        qualityLaunchOptions[qualityLevel] : fastLaunchOptions;
+
+                int renderScript = timings.beginSpan(renderScriptSpan);
+                int yuvToGrayscale = timings.beginSpan(yuvToGrayscaleSpan);
+
+                // Converts image, YUV -> RGBA -> GRAY. The RGBA image is needed also to save screens.
+                if (fullQuality || saveCurrentScreen) {
+                    scriptIntrinsicYuvToRGB.forEach(rgbAllocation);
+                    scriptCUtil.forEach_rgbaToGray(rgbAllocation, grayAllocation);
+                    timings.addTiming("YUV to grayscale (RenderScriptIntrinsic)");
+                }
 
                 // Converts image, YUV -> GRAY
                 customYUVToGrayscaleConverter.forEach_convert(grayAllocation);
                 timings.addTiming("YUV to grayscale (RenderScript)");
 
+                timings.endSpan(yuvToGrayscale);
+                int fast = timings.beginSpan(fastSpan);
+
                 // RS FAST (not optimized)
                 // To be used only to understand how FAST extraction works. It has no
                 // optimizations at all. Do not use it for benchmark purposes because it
                 // is terribly slow. Turn to true to enable it.
                 if (false) {
-                    scriptCFastNoOptimization.forEach_fastNoOptimized(grayAllocation, fastKpAllocation, fastLaunchOptions);
+                    scriptCFastNoOptimization.forEach_fastNoOptimized(grayAllocation, fastKpAllocation, launchOptions);
                     timings.addTiming("RenderScript FAST (no optimization)");
                 }
 
                 // RS FAST (optimized)
-                scriptCFast.forEach_fastOptimized(grayAllocation, fastKpAllocation, fastLaunchOptions);
+                scriptCFast.forEach_fastOptimized(grayAllocation, fastKpAllocation, launchOptions);
                 timings.addTiming("RenderScript FAST lib");
 
                 // RS FAST (OpenCV porting)
-                scriptCFastOpenCV.forEach_fastOpenCV(grayAllocation, fastKpAllocation, fastLaunchOptions);
-                timings.addTiming("RenderScript FAST (OpenCV porting)");
+                if (fullQuality) {
+                    scriptCFastOpenCV.forEach_fastOpenCV(grayAllocation, fastKpAllocation, launchOptions);
+                    timings.addTiming("RenderScript FAST (OpenCV porting)");
+
+                    // Same detectors, writing the packed keypoints list instead of the mask. Timings
+                    // include reading the list back.
+                    keypointList.reset();
+                    scriptCFast.forEach_fastOptimizedList(grayAllocation, launchOptions);
+                    keypointList.read(keypointsArray, keypointList.getFoundCount());
+                    timings.addTiming("RenderScript FAST lib (keypoint list)");
+
+                    keypointList.reset();
+                    scriptCFastOpenCV.forEach_fastOpenCVList(grayAllocation, launchOptions);
+                    keypointList.read(keypointsArray, keypointList.getFoundCount());
+                    timings.addTiming("RenderScript FAST (OpenCV porting, keypoint list)");
+
+                    // RS FAST with corner scores, followed by non maximum suppression
+                    scriptCFastScore.forEach_fastScore(grayAllocation, scoresAllocation, launchOptions);
+                    keypointList.reset();
+                    scriptCFastScore.forEach_nonmaxSuppressionList(scoresAllocation, launchOptions);
+                    int foundCount = keypointList.getFoundCount();
+                    int keypointsCount = keypointList.read(keypointsArray, foundCount);
+                    timings.addTiming("RenderScript FAST score + NMS (keypoint list)");
+
+                    if (VERIFY_FAST_SCORES)
+                        verifyFastScores(foundCount, keypointsCount);
+
+                    // Multi-scale RS FAST score + NMS. The pyramid is built here, and multiScaleFast
+                    // (as any other stage) reuses it instead of building it again.
+                    imagePyramid.build(frameIndex);
+                    timings.addTiming("Image pyramid");
+
+                    multiScaleFast.detect(frameIndex);
+                    keypointsCount = keypointList.read(keypointsArray, keypointList.getFoundCount());
+                    timings.addTiming("RenderScript multi-scale FAST score + NMS (keypoint list)");
+
+                    keypointSelector.select(keypointsArray, keypointsCount, selectedKeypointsArray);
+                    timings.addTiming("Grid top keypoints selection");
+                }
+
+                timings.endSpan(fast);
+                timings.endSpan(renderScript);
 
                 // FAST library extraction
-                yuvToGray(data);
-                timings.addTiming("YUV to grayscale (NDK)");
+                if (fullQuality) {
+                    int ndk = timings.beginSpan(ndkSpan);
+
+                    yuvToGrayscale = timings.beginSpan(yuvToGrayscaleSpan);
+                    yuvToGray(data);
+                    timings.addTiming("YUV to grayscale (NDK)");
+                    timings.endSpan(yuvToGrayscale);
 
-                fastLibExtraction();
-                timings.addTiming("NDK FAST lib (optimized)");
+                    fast = timings.beginSpan(fastSpan);
+                    fastLibExtraction();
+                    timings.addTiming("NDK FAST lib (optimized)");
+                    timings.endSpan(fast);
+
+                    timings.endSpan(ndk);
+                }
+
+                // Pure Java FAST extraction
+                if (fullQuality && javaFast != null) {
+                    int pureJava = timings.beginSpan(javaSpan);
+
+                    fast = timings.beginSpan(fastSpan);
+                    javaFast.detect(data, inputImageSize.width, inputImageSize.height, inputImageSize.width, FAST_THRESHOLD);
+                    timings.addTiming("Java FAST-9 (fork/join)");
+                    timings.endSpan(fast);
+
+                    timings.endSpan(pureJava);
+                }
 
                 // Displays keypoints on preview surface
                 scriptCUtil.forEach_showFastKeypoints(fastKpAllocation, outputAllocation);
                 outputAllocation.ioSend();
                 timings.addTiming("Show keypoints");
 
+                timings.endSpan(frame);
                 timings.debugTimings();
 
+                if (USE_QUALITY_GOVERNOR) {
+                    int newLevel = qualityGovernor.onFrame(timings.getLastFrameTime());
+                    if (newLevel != qualityLevel) {
+                        // Keypoints found outside the new region would otherwise stay on screen
+                        scriptCUtil.forEach_clearKeypoints(fastKpAllocation);
+                        scriptCUtil.forEach_clearKeypoints(scoresAllocation);
+                        qualityLevel = newLevel;
+                    }
+                }
+
                 // Save screens
                 if(saveCurrentScreen)
                 {
@@ -316,7 +593,12 @@ public class MainActivity extends AppCompatActivity {
                         outputAllocation.copyTo(tmpBitmap);
                         Util.saveImageToExternal(MainActivity.this, fileName + "-fast", tmpBitmap);
 
-                        Toast.makeText(MainActivity.this,"Images saved", Toast.LENGTH_SHORT).show();
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Toast.makeText(MainActivity.this,"Images saved", Toast.LENGTH_SHORT).show();
+                            }
+                        });
 
                     }
                     catch (Exception ex)
@@ -328,10 +610,35 @@ public class MainActivity extends AppCompatActivity {
                 }
 
             }
-            camera.addCallbackBuffer(data);
         }
     };
 
+    private void verifyFastScores(int foundCount, int keypointsCount) {
+        if (foundCount > keypointsCount) {
+            Log.w(TAG, "FAST scores not verified, " + foundCount + " keypoints do not fit in the list");
+            return;
+        }
+
+        // RS keypoints order depends on threads scheduling
+        KeypointList.sortByPosition(keypointsArray, keypointsCount);
+
+        grayAllocation.copyTo(verifyGrayImage);
+        FastReference.score(verifyGrayImage, inputImageSize.width, inputImageSize.height, FAST_THRESHOLD, verifyScores);
+        int referenceCount = FastReference.nonmaxSuppression(verifyScores, inputImageSize.width, inputImageSize.height, 0,
+                verifyReferenceKeypoints);
+        int ndkCount = fastScoreNonmax(verifyGrayImage, FAST_THRESHOLD, verifyNdkKeypoints);
+
+        int rsDifference = FastReference.firstDifference(verifyReferenceKeypoints, referenceCount, keypointsArray, keypointsCount);
+        int ndkDifference = FastReference.firstDifference(verifyReferenceKeypoints, referenceCount, verifyNdkKeypoints, ndkCount);
+
+        if (rsDifference < 0 && ndkDifference < 0) {
+            Log.d(TAG, "FAST scores verified: " + referenceCount + " keypoints");
+        } else {
+            Log.e(TAG, "FAST scores mismatch. Java: " + referenceCount + " keypoints, RenderScript: " + keypointsCount +
+                    " (first difference at " + rsDifference + "), NDK: " + ndkCount + " (first difference at " + ndkDifference + ")");
+        }
+    }
+
     // NDK FAST library extraction
     private native int setImageSize(int width, int height);
 
@@ -339,6 +646,10 @@ public class MainActivity extends AppCompatActivity {
 
     private native int fastLibExtraction();
 
+    // Scored FAST + non maximum suppression of the given grayscale image. Keypoints are stored
+    // as x, y, score, level (0). Returns how many keypoints have been found.
+    private native int fastScoreNonmax(byte[] grayImage, int threshold, int[] keypoints);
+
     // Surfaces callbacks, to initialize the process
     TextureView.SurfaceTextureListener surfaceTextureListener = new TextureView.SurfaceTextureListener() {
         @Override
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import android.renderscript.Allocation;
+import android.renderscript.RenderScript;
+import android.renderscript.Script;
+
+/**
+ * Scored FAST + non maximum suppression (fast_score.fs) on every level of an ImagePyramid.
+ * Keypoints of all levels end up in the same KeypointList, annotated with their level.
+ */
+public class MultiScaleFast {
+
+    private final ImagePyramid pyramid;
+    private final KeypointList keypointList;
+    private final ScriptC_fast_score scriptCFastScore;
+
+    // Per level scores images and launch options, excluding the 3 pixels border
+    private final Allocation[] scoresAllocations;
+    private final Script.LaunchOptions[] launchOptions;
+
+    public MultiScaleFast(RenderScript rs, ImagePyramid pyramid, KeypointList keypointList, int threshold) {
+        this.pyramid = pyramid;
+        this.keypointList = keypointList;
+
+        scriptCFastScore = new ScriptC_fast_score(rs);
+        scriptCFastScore.set_fastThreshold(threshold);
+        scriptCFastScore.bind_keypoints(keypointList.getKeypointsAllocation());
+        scriptCFastScore.bind_keypointsCount(keypointList.getCountAllocation());
+        scriptCFastScore.set_maxKeypoints(keypointList.getMaxKeypoints());
+
+        int levelsCount = pyramid.getLevelsCount();
+        scoresAllocations = new Allocation[levelsCount];
+        launchOptions = new Script.LaunchOptions[levelsCount];
+        for (int level = 0; level < levelsCount; level++) {
+            int width = pyramid.getLevelWidth(level);
+            int height = pyramid.getLevelHeight(level);
+
+            // Scores outside the launch area are read by the non maximum suppression, and have to be 0
+            scoresAllocations[level] = Allocation.createTyped(rs, pyramid.getLevel(level).getType(), Allocation.USAGE_SCRIPT);
+            scoresAllocations[level].copyFrom(new byte[width * height]);
+
+            launchOptions[level] = new Script.LaunchOptions();
+            launchOptions[level].setX(ParallelFast9.BORDER, width - ParallelFast9.BORDER);
+            launchOptions[level].setY(ParallelFast9.BORDER, height - ParallelFast9.BORDER);
+        }
+    }
+
+    // Replaces the keypoints list content with the keypoints of all levels. The pyramid
+    // gets built first, if no other stage has done it for this frame.
+    public void detect(long frame) {
+        pyramid.build(frame);
+
+        keypointList.reset();
+        for (int level = 0; level < pyramid.getLevelsCount(); level++) {
+            scriptCFastScore.set_grayAllocation(pyramid.getLevel(level));
+            scriptCFastScore.set_scoresAllocation(scoresAllocations[level]);
+            scriptCFastScore.set_keypointLevel(level);
+
+            scriptCFastScore.forEach_fastScore(pyramid.getLevel(level), scoresAllocations[level], launchOptions[level]);
+            scriptCFastScore.forEach_nonmaxSuppressionList(scoresAllocations[level], launchOptions[level]);
+        }
+    }
+}
@@ -5,6 +5,6 @@ LOCAL_MODULE := native
 LOCAL_CFLAGS += -fopenmp -std=c++11
 LOCAL_LDFLAGS += -fopenmp
 
-LOCAL_SRC_FILES := jni.cpp fastlib/fast_9.cpp
+LOCAL_SRC_FILES := jni.cpp fastlib/fast_9.cpp fastlib/nonmax.cpp
 
 include $(BUILD_SHARED_LIBRARY)
\ No newline at end of file
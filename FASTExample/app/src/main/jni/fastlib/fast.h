@@ -41,4 +41,11 @@ typedef unsigned char byte;
 
 xy *fast9_detect(byte *im, int xsize, int ysize, int stride, int b, int *ret_num_corners);
 
+// Scoring and non maximum suppression, kept separate from the detector above. Returned
+// arrays have to be released with free().
+xy *fast9_detect_corners(const byte *im, int xsize, int ysize, int stride, int b, int *ret_num_corners);
+int fast9_corner_score(const byte *p, const int pixel[], int bstart);
+int *fast9_score(const byte *i, int stride, const xy *corners, int num_corners, int b);
+xy *nonmax_suppression(const xy *corners, const int *scores, int num_corners, int *ret_num_nonmax);
+
 #endif //FASTEXAMPLE_FAST_H
@@ -1,6 +1,7 @@
 #include "fast.h"
 #include <omp.h>
 #include <atomic>
+#include <stdlib.h>
 
 static void make_offsets(int pixel[], int row_stride) {
     pixel[0] = 0 + row_stride * 3;
@@ -22,17 +23,21 @@ static void make_offsets(int pixel[], int row_stride) {
 }
 
 xy *fast9_detect(byte *im, int xsize, int ysize, int stride, int b, int *ret_num_corners) {
-    std::atomic_int num_corners;
-    xy *ret_corners;
+    std::atomic_int num_corners(0);
+    // Corners are only counted, nothing is stored
+    xy *ret_corners = 0;
     int rsize = 512;
     int pixel[16];
-    int x, y;
+    int y;
 
     make_offsets(pixel, stride);
 
+    // Same area as fast9_detect_corners, the RS kernels and ParallelFast9: every pixel at
+    // least 3 pixels away from the image border
 #pragma omp parallel for default(shared)
-    for (y = 4; y < ysize - 5; y++)
-        for (x = 4; x < xsize - 5; x++) {
+    for (y = 3; y < ysize - 3; y++)
+        // x has to be declared here, to be private to every OpenMP thread
+        for (int x = 3; x < xsize - 3; x++) {
             byte *p = im + x + y * stride;
 
             int cb = *p + b;
@@ -2256,3 +2261,85 @@ xy *fast9_detect(byte *im, int xsize, int ysize, int stride, int b, int *ret_num
     return ret_corners;
 
 }
+
+// Segment test, written as a plain loop: true if 9 contiguous pixels of the circle are all
+// brighter than p + b or all darker than p - b. Used by the scoring functions below, which
+// follow the structure of the original FAST library ones.
+static int fast9_is_corner(const byte *p, const int pixel[], int b) {
+    int cb = *p + b;
+    int c_b = *p - b;
+    int brighter = 0;
+    int darker = 0;
+
+    // The circle is walked twice (16 + 8 pixels) to find arcs that wrap around pixel 0
+    for (int i = 0; i < 16 + 8; i++) {
+        int v = p[pixel[i & 15]];
+        brighter = v > cb ? brighter + 1 : 0;
+        darker = v < c_b ? darker + 1 : 0;
+        if (brighter >= 9 || darker >= 9)
+            return 1;
+    }
+
+    return 0;
+}
+
+// Stores every corner, in row major order, looking at all pixels at least 3 pixels away
+// from the image border. The returned array has to be released with free().
+xy *fast9_detect_corners(const byte *im, int xsize, int ysize, int stride, int b, int *ret_num_corners) {
+    int num_corners = 0;
+    int rsize = 512;
+    xy *ret_corners = (xy *) malloc(sizeof(xy) * rsize);
+    int pixel[16];
+
+    make_offsets(pixel, stride);
+
+    for (int y = 3; y < ysize - 3; y++)
+        for (int x = 3; x < xsize - 3; x++) {
+            if (!fast9_is_corner(im + y * stride + x, pixel, b))
+                continue;
+
+            if (num_corners == rsize) {
+                rsize *= 2;
+                ret_corners = (xy *) realloc(ret_corners, sizeof(xy) * rsize);
+            }
+            ret_corners[num_corners].x = x;
+            ret_corners[num_corners].y = y;
+            num_corners++;
+        }
+
+    *ret_num_corners = num_corners;
+    return ret_corners;
+}
+
+// Highest threshold at which the pixel is still a corner, found by binary search starting
+// from bstart, at which the pixel has to be a corner
+int fast9_corner_score(const byte *p, const int pixel[], int bstart) {
+    int bmin = bstart;
+    int bmax = 255;
+    int b = (bmax + bmin) / 2;
+
+    for (;;) {
+        if (fast9_is_corner(p, pixel, b))
+            bmin = b;
+        else
+            bmax = b;
+
+        if (bmin == bmax - 1 || bmin == bmax)
+            return bmin;
+
+        b = (bmin + bmax) / 2;
+    }
+}
+
+// The returned array has to be released with free()
+int *fast9_score(const byte *i, int stride, const xy *corners, int num_corners, int b) {
+    int *scores = (int *) malloc(sizeof(int) * num_corners);
+    int pixel[16];
+
+    make_offsets(pixel, stride);
+
+    for (int n = 0; n < num_corners; n++)
+        scores[n] = fast9_corner_score(i + corners[n].y * stride + corners[n].x, pixel, b);
+
+    return scores;
+}
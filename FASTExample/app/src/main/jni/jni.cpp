@@ -90,4 +90,44 @@ JNIEXPORT int JNICALL Java_net_hydex11_fastexample_MainActivity_fastLibExtractio
 
     return cornersCount;
 }
+
+JNIEXPORT int JNICALL Java_net_hydex11_fastexample_MainActivity_fastScoreNonmax(JNIEnv* env,
+    jobject,
+    jbyteArray grayDataArray,
+    jint threshold,
+    jintArray keypointsArray)
+{
+    // Scored FAST-9 followed by non maximum suppression, on a given grayscale image. Keypoints
+    // are stored as x, y, score, level (always 0) in keypointsArray, until it is full. Used to check the
+    // RenderScript implementation.
+    jboolean isCopy = false;
+    byte* grayDataPointer = (byte*)env->GetByteArrayElements(grayDataArray, &isCopy);
+
+    int cornersCount = 0;
+    xy* corners = fast9_detect_corners(grayDataPointer, imageWidth, imageHeight, imageWidth, threshold, &cornersCount);
+    int* scores = fast9_score(grayDataPointer, imageWidth, corners, cornersCount, threshold);
+
+    int nonmaxCount = 0;
+    xy* nonmax = nonmax_suppression(corners, scores, cornersCount, &nonmaxCount);
+    int* nonmaxScores = fast9_score(grayDataPointer, imageWidth, nonmax, nonmaxCount, threshold);
+
+    jint* keypointsPointer = env->GetIntArrayElements(keypointsArray, &isCopy);
+    int storedCount = std::min(nonmaxCount, (int)(env->GetArrayLength(keypointsArray) / 4));
+    for(int i = 0; i < storedCount; i++) {
+        keypointsPointer[i * 4] = nonmax[i].x;
+        keypointsPointer[i * 4 + 1] = nonmax[i].y;
+        keypointsPointer[i * 4 + 2] = nonmaxScores[i];
+        keypointsPointer[i * 4 + 3] = 0;
+    }
+
+    env->ReleaseIntArrayElements(keypointsArray, keypointsPointer, 0);
+    env->ReleaseByteArrayElements(grayDataArray, (jbyte*)grayDataPointer, JNI_ABORT);
+
+    free(corners);
+    free(scores);
+    free(nonmax);
+    free(nonmaxScores);
+
+    return nonmaxCount;
+}
 }
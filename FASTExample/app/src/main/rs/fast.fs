@@ -7,13 +7,14 @@
 rs_allocation grayAllocation;
 
 #include "fast_util.rsh"
+#include "keypoint_list.rsh"
 
 // The following code is a direct porting of the original FAST library
 // (http://www.edwardrosten.com/work/fast.html), which is highly optimized, auto
 // generated code.
 
 const int fastThreshold = 20;
-uchar __attribute__((kernel)) fastOptimized(uchar in, uint x, uint y)
+static uchar fastOptimizedKeypoint(uchar in, uint x, uint y)
 {
 
     int cb = in + fastThreshold;
@@ -2233,3 +2234,17 @@ if (getFASTPixel(0,x,y) > cb) if (getFASTPixel(1,x,y) > cb) if (getFASTPixel(2,x
     // Point is a FAST keypoint
     return 1;
 }
+
+// Writes the full frame keypoints mask
+uchar __attribute__((kernel)) fastOptimized(uchar in, uint x, uint y)
+{
+    return fastOptimizedKeypoint(in, x, y);
+}
+
+// Appends found keypoints to the packed keypoints list, without writing any mask
+void fastOptimizedList(const uchar *in, uint32_t x, uint32_t y)
+{
+    uchar score = fastOptimizedKeypoint(*in, x, y);
+    if (score > 0)
+        appendKeypoint(x, y, score);
+}
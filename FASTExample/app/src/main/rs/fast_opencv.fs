@@ -8,11 +8,12 @@ int fastThreshold = 20;
 rs_allocation grayAllocation;
 
 #include "fast_opencv_util.rsh"
+#include "keypoint_list.rsh"
 
 // Follows FAST features detection directly ported from OpenCV code
 // https://github.com/Itseez/opencv/blob/master/modules/cudafeatures2d/src/cuda/fast.cu
 
-uchar __attribute__((kernel)) fastOpenCV(uchar in, uint x, uint y){
+static uchar fastOpenCVKeypoint(uchar in, uint x, uint y){
     int v;
     uint4 C = {0,0,0,0};
 
@@ -57,4 +58,18 @@ uchar __attribute__((kernel)) fastOpenCV(uchar in, uint x, uint y){
     }
 
      return 0;
-}
\ No newline at end of file
+}
+
+// Writes the full frame keypoints mask
+uchar __attribute__((kernel)) fastOpenCV(uchar in, uint x, uint y)
+{
+    return fastOpenCVKeypoint(in, x, y);
+}
+
+// Appends found keypoints to the packed keypoints list, without writing any mask
+void fastOpenCVList(const uchar *in, uint32_t x, uint32_t y)
+{
+    uchar score = fastOpenCVKeypoint(*in, x, y);
+    if (score > 0)
+        appendKeypoint(x, y, score);
+}
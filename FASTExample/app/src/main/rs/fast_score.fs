@@ -0,0 +1,86 @@
+// Needed directive for RS to work
+#pragma version(1)
+
+// The java_package_name directive needs to use your Activity's package path
+#pragma rs java_package_name(net.hydex11.fastexample)
+
+int fastThreshold = 20;
+rs_allocation grayAllocation;
+
+// Scores image, written by fastScore and read by the non maximum suppression kernels. Pixels
+// outside the launch area have to be 0.
+rs_allocation scoresAllocation;
+
+#include "keypoint_list.rsh"
+
+// FAST-9 with corner score, matching the FAST library fast9_score (see FastReference).
+// Circle offsets are in the same order as the ones of getFASTPixel.
+const static int circleX[16] = {0, 1, 2, 3, 3, 3, 2, 1, 0, -1, -2, -3, -3, -3, -2, -1};
+const static int circleY[16] = {3, 3, 2, 1, 0, -1, -2, -3, -3, -3, -2, -1, 0, 1, 2, 3};
+
+// Returns the highest threshold at which the pixel is still a corner, or 0 if it is not
+// a corner at fastThreshold
+uchar __attribute__((kernel)) fastScore(uchar in, uint32_t x, uint32_t y)
+{
+    int diffs[16];
+    for (int i = 0; i < 16; i++)
+        diffs[i] = (int) rsGetElementAt_uchar(grayAllocation, x + circleX[i], y + circleY[i]) - in;
+
+    // Every arc of 9 pixels contains at least 2 of pixels 0, 4, 8 and 12, so most
+    // pixels are rejected here
+    int brighter = (diffs[0] > fastThreshold) + (diffs[4] > fastThreshold) +
+            (diffs[8] > fastThreshold) + (diffs[12] > fastThreshold);
+    int darker = (diffs[0] < -fastThreshold) + (diffs[4] < -fastThreshold) +
+            (diffs[8] < -fastThreshold) + (diffs[12] < -fastThreshold);
+    if (brighter < 2 && darker < 2)
+        return 0;
+
+    // Best arc minimum difference. Comparisons are strict, so the score is that minus 1.
+    int best = 0;
+    for (int start = 0; start < 16; start++) {
+        int minBrighter = 255;
+        int minDarker = 255;
+        for (int k = 0; k < 9; k++) {
+            int diff = diffs[(start + k) & 15];
+            minBrighter = min(minBrighter, diff);
+            minDarker = min(minDarker, -diff);
+        }
+        best = max(best, max(minBrighter, minDarker));
+    }
+
+    if (best <= fastThreshold)
+        return 0;
+
+    return best - 1;
+}
+
+// 3x3 non maximum suppression: keeps corners whose score is strictly greater than the ones
+// of all their neighbours, as the FAST library nonmax_suppression does
+static uchar nonmaxScore(uchar in, uint32_t x, uint32_t y)
+{
+    if (in == 0)
+        return 0;
+
+    for (int dy = -1; dy <= 1; dy++) {
+        for (int dx = -1; dx <= 1; dx++) {
+            if ((dx != 0 || dy != 0) && rsGetElementAt_uchar(scoresAllocation, x + dx, y + dy) >= in)
+                return 0;
+        }
+    }
+
+    return in;
+}
+
+// Writes a keypoints mask, whose values are the scores of the kept corners
+uchar __attribute__((kernel)) nonmaxSuppression(uchar in, uint32_t x, uint32_t y)
+{
+    return nonmaxScore(in, x, y);
+}
+
+// Appends the kept corners, with their scores, to the packed keypoints list
+void nonmaxSuppressionList(const uchar *in, uint32_t x, uint32_t y)
+{
+    uchar score = nonmaxScore(*in, x, y);
+    if (score > 0)
+        appendKeypoint(x, y, score);
+}
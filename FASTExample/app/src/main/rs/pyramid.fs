@@ -0,0 +1,22 @@
+// Needed directive for RS to work
+#pragma version(1)
+
+// The java_package_name directive needs to use your Activity's package path
+#pragma rs java_package_name(net.hydex11.fastexample)
+
+// Pyramid level being halved (see ImagePyramid)
+rs_allocation previousLevel;
+
+// Halves the previous pyramid level, averaging 2x2 pixels blocks
+uchar __attribute__((kernel)) downsample(uint32_t x, uint32_t y)
+{
+    uint32_t sourceX = x * 2;
+    uint32_t sourceY = y * 2;
+
+    uint sum = rsGetElementAt_uchar(previousLevel, sourceX, sourceY) +
+            rsGetElementAt_uchar(previousLevel, sourceX + 1, sourceY) +
+            rsGetElementAt_uchar(previousLevel, sourceX, sourceY + 1) +
+            rsGetElementAt_uchar(previousLevel, sourceX + 1, sourceY + 1);
+
+    return (sum + 2) >> 2;
+}
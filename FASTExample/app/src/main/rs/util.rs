@@ -35,4 +35,11 @@ uchar4 __attribute__((kernel)) grayToRGBA(uchar in, uint32_t x, uint32_t y)
    out.b = in;
 
    return out;
-}
\ No newline at end of file
+}
+
+// Clears a keypoints image, so that keypoints found outside a smaller
+// extraction area are not displayed anymore
+uchar __attribute__((kernel)) clearKeypoints(uint32_t x, uint32_t y)
+{
+   return 0;
+}
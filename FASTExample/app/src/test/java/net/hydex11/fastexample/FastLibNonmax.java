@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package net.hydex11.fastexample;
+
+/**
+ * Java port of the NDK FAST library nonmax_suppression (app/src/main/jni/fastlib/nonmax.cpp),
+ * keeping its sparse algorithm: corners are walked in row major order, and the rows above and
+ * below are reached through the index of the first corner of each row.
+ */
+public class FastLibNonmax {
+
+    // Corners are packed as x, y, in row major order, with one score each. Returns the
+    // indexes of the corners kept, in the same order.
+    public static int[] suppress(int[] corners, int[] scores, int numCorners) {
+        if (numCorners < 1)
+            return new int[0];
+
+        int[] kept = new int[numCorners];
+        int numNonmax = 0;
+        int sz = numCorners;
+
+        // Point above points (roughly) to the pixel above the one of interest, if there is a
+        // feature there
+        int pointAbove = 0;
+        int pointBelow = 0;
+
+        // Find where each row begins. A beginning of -1 signifies that there are no corners
+        // on that row.
+        int lastRow = y(corners, numCorners - 1);
+        int[] rowStart = new int[lastRow + 1];
+        for (int i = 0; i < lastRow + 1; i++)
+            rowStart[i] = -1;
+
+        int prevRow = -1;
+        for (int i = 0; i < numCorners; i++) {
+            if (y(corners, i) != prevRow) {
+                rowStart[y(corners, i)] = i;
+                prevRow = y(corners, i);
+            }
+        }
+
+        corners:
+        for (int i = 0; i < sz; i++) {
+            int score = scores[i];
+            int posX = x(corners, i);
+            int posY = y(corners, i);
+
+            // Check left
+            if (i > 0)
+                if (x(corners, i - 1) == posX - 1 && y(corners, i - 1) == posY && scores[i - 1] >= score)
+                    continue;
+
+            // Check right
+            if (i < sz - 1)
+                if (x(corners, i + 1) == posX + 1 && y(corners, i + 1) == posY && scores[i + 1] >= score)
+                    continue;
+
+            // Check above (if there is a valid row above)
+            if (posY != 0 && rowStart[posY - 1] != -1) {
+                // Make sure that current pointAbove is one row above
+                if (y(corners, pointAbove) < posY - 1)
+                    pointAbove = rowStart[posY - 1];
+
+                // Make pointAbove point to the first of the pixels above the current point, if it exists
+                for (; y(corners, pointAbove) < posY && x(corners, pointAbove) < posX - 1; pointAbove++) {
+                }
+
+                for (int j = pointAbove; y(corners, j) < posY && x(corners, j) <= posX + 1; j++) {
+                    int x = x(corners, j);
+                    if ((x == posX - 1 || x == posX || x == posX + 1) && scores[j] >= score)
+                        continue corners;
+                }
+            }
+
+            // Check below (if there is anything below)
+            if (posY != lastRow && rowStart[posY + 1] != -1 && pointBelow < sz) {
+                if (y(corners, pointBelow) < posY + 1)
+                    pointBelow = rowStart[posY + 1];
+
+                // Make pointBelow point to one of the pixels below the current point, if it exists
+                for (; pointBelow < sz && y(corners, pointBelow) == posY + 1 && x(corners, pointBelow) < posX - 1; pointBelow++) {
+                }
+
+                for (int j = pointBelow; j < sz && y(corners, j) == posY + 1 && x(corners, j) <= posX + 1; j++) {
+                    int x = x(corners, j);
+                    if ((x == posX - 1 || x == posX || x == posX + 1) && scores[j] >= score)
+                        continue corners;
+                }
+            }
+
+            kept[numNonmax++] = i;
+        }
+
+        int[] result = new int[numNonmax];
+        System.arraycopy(kept, 0, result, 0, numNonmax);
+        return result;
+    }
+
+    private static int x(int[] corners, int i) {
+        return corners[i * 2];
+    }
+
+    private static int y(int[] corners, int i) {
+        return corners[i * 2 + 1];
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import net.hydex11.rsprofiler.FrameCaptureReader;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks FastReference against the NDK FAST library: corner scores binary searched with the
+ * fast_9.cpp decision tree (see Fast9DecisionTree), and non maximum suppression against the
+ * nonmax.cpp algorithm (see FastLibNonmax). A capture recorded on a device
+ * (RECORD_FRAMES_COUNT in MainActivity) can be checked too, using its luma plane as grayscale
+ * image, with gradlew :app:testDebugUnitTest -PframeCapture=/path/to/RSFrameCapture.bin
+ */
+public class FastReferenceTest {
+
+    static final File FAST_9_SOURCE = new File("src/main/jni/fastlib/fast_9.cpp");
+    static final int THRESHOLD = 20;
+
+    static Fast9DecisionTree tree;
+
+    // Parsed once, for all tests
+    static synchronized Fast9DecisionTree getTree() throws Exception {
+        if (tree == null)
+            tree = Fast9DecisionTree.parse(FAST_9_SOURCE);
+        return tree;
+    }
+
+    // FAST library fast9_corner_score
+    static int binarySearchScore(Fast9DecisionTree tree, byte[] gray, int width, int x, int y, int bstart) {
+        int bmin = bstart;
+        int bmax = 255;
+        int b = (bmax + bmin) / 2;
+
+        for (;;) {
+            if (tree.isCorner(gray, width, x, y, b))
+                bmin = b;
+            else
+                bmax = b;
+
+            if (bmin == bmax - 1 || bmin == bmax)
+                return bmin;
+
+            b = (bmin + bmax) / 2;
+        }
+    }
+
+    static void checkScores(byte[] gray, int width, int height) throws Exception {
+        Fast9DecisionTree tree = getTree();
+        for (int y = ParallelFast9.BORDER; y < height - ParallelFast9.BORDER; y++) {
+            for (int x = ParallelFast9.BORDER; x < width - ParallelFast9.BORDER; x++) {
+                int expected = tree.isCorner(gray, width, x, y, THRESHOLD) ?
+                        binarySearchScore(tree, gray, width, x, y, THRESHOLD) : 0;
+                assertEquals("Score at " + x + "," + y, expected, FastReference.cornerScore(gray, width, x, y, THRESHOLD));
+            }
+        }
+    }
+
+    // Keypoints as the NDK fastScoreNonmax finds them: fast9_detect_corners, fast9_score and
+    // nonmax_suppression, packed as in KeypointList. Returns the keypoints count.
+    static int libraryKeypoints(byte[] gray, int width, int height, int[] keypoints) throws Exception {
+        Fast9DecisionTree tree = getTree();
+        int[] corners = tree.detect(gray, width, height, THRESHOLD);
+        int numCorners = corners.length / 2;
+
+        int[] scores = new int[numCorners];
+        for (int i = 0; i < numCorners; i++)
+            scores[i] = binarySearchScore(tree, gray, width, corners[i * 2], corners[i * 2 + 1], THRESHOLD);
+
+        int[] kept = FastLibNonmax.suppress(corners, scores, numCorners);
+        for (int i = 0; i < kept.length; i++) {
+            int offset = i * KeypointList.KEYPOINT_SIZE;
+            keypoints[offset] = corners[kept[i] * 2];
+            keypoints[offset + 1] = corners[kept[i] * 2 + 1];
+            keypoints[offset + 2] = scores[kept[i]];
+            keypoints[offset + 3] = 0;
+        }
+        return kept.length;
+    }
+
+    // Compares FastReference score and nonmaxSuppression with the library, keypoint by keypoint
+    static void checkNonmax(byte[] gray, int width, int height) throws Exception {
+        byte[] scores = new byte[width * height];
+        int[] keypoints = new int[width * height * KeypointList.KEYPOINT_SIZE];
+        FastReference.score(gray, width, height, THRESHOLD, scores);
+        int count = FastReference.nonmaxSuppression(scores, width, height, 0, keypoints);
+
+        int[] expected = new int[width * height * KeypointList.KEYPOINT_SIZE];
+        int expectedCount = libraryKeypoints(gray, width, height, expected);
+
+        int difference = FastReference.firstDifference(expected, expectedCount, keypoints, count);
+        if (difference >= 0) {
+            int offset = difference * KeypointList.KEYPOINT_SIZE;
+            fail("Keypoint " + difference + " differs: expected " + expected[offset] + "," + expected[offset + 1] +
+                    " score " + expected[offset + 2] + ", found " + keypoints[offset] + "," + keypoints[offset + 1] +
+                    " score " + keypoints[offset + 2] + " (" + expectedCount + " and " + count + " keypoints)");
+        }
+    }
+
+    // Random blocks, so that there are plenty of corners of different strengths
+    static byte[] blocksImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] gray = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                gray[x + y * width] = (byte) (((x / 5) * 37 + (y / 4) * 91) % 256 + random.nextInt(8));
+            }
+        }
+        return gray;
+    }
+
+    @Test
+    public void scoresMatchDecisionTree() throws Exception {
+        checkScores(blocksImage(64, 48, 1), 64, 48);
+
+        byte[] noise = new byte[64 * 48];
+        new Random(2).nextBytes(noise);
+        checkScores(noise, 64, 48);
+    }
+
+    @Test
+    public void nonmaxMatchesLibrary() throws Exception {
+        for (long seed = 1; seed <= 3; seed++) {
+            checkNonmax(blocksImage(160, 120, seed), 160, 120);
+        }
+
+        byte[] noise = new byte[97 * 83];
+        new Random(4).nextBytes(noise);
+        checkNonmax(noise, 97, 83);
+
+        // No corners at all
+        checkNonmax(new byte[32 * 32], 32, 32);
+    }
+
+    @Test
+    public void singleBrightSpotScore() {
+        int width = 9;
+        byte[] gray = new byte[width * width];
+        for (int i = 0; i < 16; i++)
+            gray[4 + ParallelFast9.CIRCLE_X[i] + (4 + ParallelFast9.CIRCLE_Y[i]) * width] = 100;
+        gray[4 + 4 * width] = 10;
+
+        // Whole circle 90 above the center: corner up to threshold 89
+        assertEquals(89, FastReference.cornerScore(gray, width, 4, 4, THRESHOLD));
+        assertEquals(0, FastReference.cornerScore(gray, width, 4, 4, 90));
+
+        // 8 contiguous pixels are not enough
+        for (int i = 8; i < 16; i++)
+            gray[4 + ParallelFast9.CIRCLE_X[i] + (4 + ParallelFast9.CIRCLE_Y[i]) * width] = 10;
+        assertEquals(0, FastReference.cornerScore(gray, width, 4, 4, THRESHOLD));
+    }
+
+    @Test
+    public void nonmaxKeepsStrictMaxima() {
+        int width = 8;
+        int height = 6;
+        byte[] scores = new byte[width * height];
+        scores[2 + 2 * width] = 50;
+        scores[3 + 2 * width] = 40; // Suppressed by its left neighbour
+        scores[5 + 2 * width] = 30; // Kept, 2 pixels away
+        scores[2 + 4 * width] = 60; // Equal neighbours suppress each other
+        scores[3 + 4 * width] = 60;
+        scores[6 + 4 * width] = (byte) 200; // Unsigned scores
+
+        int[] keypoints = new int[10 * KeypointList.KEYPOINT_SIZE];
+        int count = FastReference.nonmaxSuppression(scores, width, height, 2, keypoints);
+
+        assertEquals(3, count);
+        int[] expected = {2, 2, 50, 2, 5, 2, 30, 2, 6, 4, 200, 2};
+        assertEquals(-1, FastReference.firstDifference(expected, 3, keypoints, count));
+
+        // Keypoints are counted even when they do not fit
+        assertEquals(3, FastReference.nonmaxSuppression(scores, width, height, 0, new int[KeypointList.KEYPOINT_SIZE]));
+    }
+
+    @Test
+    public void recordedCaptureMatchesLibrary() throws Exception {
+        String capture = System.getProperty("frameCapture");
+        assumeTrue(capture != null && !capture.isEmpty());
+
+        FrameCaptureReader reader = new FrameCaptureReader(new File(capture));
+        int width = reader.getWidth();
+        int height = reader.getHeight();
+        byte[] frame = new byte[reader.getFrameSize()];
+
+        for (int i = 0; i < reader.getFrameCount(); i++) {
+            reader.readFrame(i, frame);
+            // NV21 starts with the luma plane
+            checkScores(frame, width, height);
+            checkNonmax(frame, width, height);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GridKeypointSelectorTest {
+
+    static final int K = KeypointList.KEYPOINT_SIZE;
+
+    static int[] randomKeypoints(int count, int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] keypoints = new int[count * K];
+        for (int i = 0; i < count; i++) {
+            keypoints[i * K] = random.nextInt(width);
+            keypoints[i * K + 1] = random.nextInt(height);
+            // Few distinct scores, so that there are plenty of ties
+            keypoints[i * K + 2] = 20 + random.nextInt(30);
+        }
+        return keypoints;
+    }
+
+    // Scores of the keypoints of a cell, best first
+    static List<Integer> cellScores(int[] keypoints, int count, int minX, int maxX, int minY, int maxY) {
+        List<Integer> scores = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            int x = keypoints[i * K];
+            int y = keypoints[i * K + 1];
+            if (x >= minX && x < maxX && y >= minY && y < maxY)
+                scores.add(keypoints[i * K + 2]);
+        }
+        Collections.sort(scores, Collections.reverseOrder());
+        return scores;
+    }
+
+    @Test
+    public void keepsBestScoresOfEveryCell() {
+        int width = 640;
+        int height = 480;
+        int count = 20000;
+        int[] keypoints = randomKeypoints(count, width, height, 1);
+
+        GridKeypointSelector selector = new GridKeypointSelector(width, height, 8, 6, 10);
+        int[] selected = new int[selector.getMaxSelectedCount() * K];
+        int selectedCount = selector.select(keypoints, count, selected);
+
+        assertEquals(8 * 6 * 10, selectedCount);
+        for (int row = 0; row < 6; row++) {
+            for (int column = 0; column < 8; column++) {
+                int minX = column * 80;
+                int minY = row * 80;
+                List<Integer> expected = cellScores(keypoints, count, minX, minX + 80, minY, minY + 80).subList(0, 10);
+                assertEquals("Cell " + column + "," + row, expected,
+                        cellScores(selected, selectedCount, minX, minX + 80, minY, minY + 80));
+            }
+        }
+    }
+
+    @Test
+    public void keepsEverythingBelowCellLimit() {
+        int[] keypoints = {
+                5, 5, 30, 0,
+                6, 5, 40, 0,
+                90, 70, 10, 0
+        };
+
+        GridKeypointSelector selector = new GridKeypointSelector(100, 80, 2, 2, 2);
+        int[] selected = new int[3 * K];
+        assertEquals(3, selector.select(keypoints, 3, selected));
+
+        KeypointList.sortByPosition(selected, 3);
+        assertArrayEquals(new int[]{5, 5, 30, 0, 6, 5, 40, 0, 90, 70, 10, 0}, selected);
+    }
+
+    @Test
+    public void upperLevelsUseBaseCoordinates() {
+        // Level 2 pixel 20,15 is at 81.5,61.5 on the base level: bottom right cell
+        int[] keypoints = {
+                20, 15, 50, 2,
+                80, 60, 10, 0,
+                85, 65, 20, 0
+        };
+
+        GridKeypointSelector selector = new GridKeypointSelector(100, 80, 2, 2, 1);
+        int[] selected = new int[selector.getMaxSelectedCount() * K];
+        assertEquals(1, selector.select(keypoints, 3, selected));
+        assertEquals(50, selected[2]);
+        assertEquals(2, selected[3]);
+    }
+
+    @Test
+    public void reusedAcrossFrames() {
+        GridKeypointSelector selector = new GridKeypointSelector(320, 240, 4, 4, 5);
+        int[] selected = new int[selector.getMaxSelectedCount() * K];
+
+        assertEquals(4 * 4 * 5, selector.select(randomKeypoints(5000, 320, 240, 2), 5000, selected));
+        assertEquals(0, selector.select(new int[0], 0, selected));
+        assertEquals(4 * 4 * 5, selector.select(randomKeypoints(100000, 320, 240, 3), 100000, selected));
+    }
+}
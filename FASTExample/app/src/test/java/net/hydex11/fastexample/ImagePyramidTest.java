@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImagePyramidTest {
+
+    @Test
+    public void levelsStopAtMinimumSize() {
+        assertEquals(4, ImagePyramid.getLevelsCount(640, 480, 4));
+        // 480 >> 5 is below ImagePyramid.MIN_LEVEL_SIZE
+        assertEquals(5, ImagePyramid.getLevelsCount(640, 480, 8));
+        assertEquals(1, ImagePyramid.getLevelsCount(20, 20, 8));
+        assertEquals(1, ImagePyramid.getLevelsCount(640, 480, 1));
+
+        assertEquals(80, ImagePyramid.getLevelSize(640, 3));
+        assertEquals(60, ImagePyramid.getLevelSize(241, 2));
+    }
+
+    @Test
+    public void downsampleAveragesBlocks() {
+        // Odd sizes drop the last column and row
+        byte[] source = {
+                0, 2, 10, 20, 7,
+                4, 8, (byte) 255, (byte) 255, 7,
+                1, 1, 1, 1, 7
+        };
+        byte[] destination = new byte[2];
+
+        ImagePyramid.downsample(source, 5, 3, destination);
+
+        assertEquals(4, destination[0]); // (0 + 2 + 4 + 8 + 2) / 4
+        assertEquals(135, destination[1] & 0xFF); // (10 + 20 + 255 + 255 + 2) / 4
+    }
+
+    @Test
+    public void baseCoordinates() {
+        assertEquals(10f, ImagePyramid.toBaseCoordinate(10, 0), 0f);
+        assertEquals(20.5f, ImagePyramid.toBaseCoordinate(10, 1), 0f);
+        assertEquals(1.5f, ImagePyramid.toBaseCoordinate(0, 2), 0f);
+    }
+}
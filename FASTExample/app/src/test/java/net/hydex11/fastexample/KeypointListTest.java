@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeypointListTest {
+
+    @Test
+    public void sortByPositionOrdersLevelsRowsThenColumns() {
+        int[] keypoints = {
+                10, 5, 1, 0,
+                3, 7, 2, 0,
+                1, 1, 5, 1,
+                4, 5, 3, 0,
+                10, 2, 4, 0,
+                99, 99, 99, 99 // Past count, untouched
+        };
+
+        KeypointList.sortByPosition(keypoints, 5);
+
+        assertArrayEquals(new int[]{
+                10, 2, 4, 0,
+                4, 5, 3, 0,
+                10, 5, 1, 0,
+                3, 7, 2, 0,
+                1, 1, 5, 1,
+                99, 99, 99, 99
+        }, keypoints);
+    }
+
+    @Test
+    public void copyStoredKeepsPackingAndClampsToMaxKeypoints() {
+        // Full copy of a 3 keypoints list, packed as x, y, score, level
+        int[] stored = {
+                1, 2, 30, 0,
+                4, 5, 60, 1,
+                7, 8, 90, 2
+        };
+
+        int[] dst = new int[4 * KeypointList.KEYPOINT_SIZE];
+        assertEquals(2, KeypointList.copyStored(stored, 2, 3, dst));
+        assertArrayEquals(new int[]{1, 2, 30, 0, 4, 5, 60, 1, 0, 0, 0, 0, 0, 0, 0, 0}, dst);
+
+        // 5 found, only 3 stored by the kernels
+        dst = new int[4 * KeypointList.KEYPOINT_SIZE];
+        assertEquals(3, KeypointList.copyStored(stored, 5, 3, dst));
+        assertArrayEquals(new int[]{1, 2, 30, 0, 4, 5, 60, 1, 7, 8, 90, 2, 0, 0, 0, 0}, dst);
+    }
+
+    @Test
+    public void storedCountClampsToDestination() {
+        assertEquals(0, KeypointList.storedCount(0, 100, 40));
+        assertEquals(7, KeypointList.storedCount(7, 100, 40));
+        assertEquals(5, KeypointList.storedCount(7, 5, 40));
+        // Only whole keypoints fit
+        assertEquals(2, KeypointList.storedCount(7, 100, 11));
+    }
+
+    @Test
+    public void sortByPositionKeepsDuplicatesStable() {
+        int[] keypoints = {
+                1, 1, 20, 0,
+                1, 1, 10, 0,
+                0, 0, 30, 0
+        };
+
+        KeypointList.sortByPosition(keypoints, 3);
+
+        assertArrayEquals(new int[]{0, 0, 30, 0, 1, 1, 20, 0, 1, 1, 10, 0}, keypoints);
+    }
+}
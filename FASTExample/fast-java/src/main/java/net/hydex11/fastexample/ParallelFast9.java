@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pure Java FAST-9 detector, giving the same corners as the FAST library (fast_9.cpp) on
+ * all pixels at least 3 pixels away from the image border. Rows are split in bands, which
+ * are detected in parallel on a ForkJoinPool. The segment test builds brighter/darker bit
+ * masks of the circle and looks for 9 contiguous bits, instead of walking a decision tree.
+ * <p>
+ * Corners are stored in primitive arrays reused across calls, so an instance must be used
+ * by one thread at a time.
+ */
+public class ParallelFast9 {
+
+    // Pixels closer than this to the image border are never corners
+    public static final int BORDER = 3;
+
+    public static final int DEFAULT_BAND_HEIGHT = 16;
+
+    // Bresenham circle of radius 3, in the same order as the FAST library offsets
+    public static final int[] CIRCLE_X = {0, 1, 2, 3, 3, 3, 2, 1, 0, -1, -2, -3, -3, -3, -2, -1};
+    public static final int[] CIRCLE_Y = {3, 3, 2, 1, 0, -1, -2, -3, -3, -3, -2, -1, 0, 1, 2, 3};
+
+    private final ForkJoinPool pool;
+    private final int bandHeight;
+
+    // Circle pixels offsets, for the stride of the last image
+    private final int[] offsets = new int[16];
+    private int offsetsStride = -1;
+
+    // Per band corners, packed as x, y, merged into corners after detection
+    private int[][] bandCorners = new int[0][];
+    private int[] bandCounts = new int[0];
+
+    private int[] corners = new int[1024];
+    private int cornersCount = 0;
+
+    public ParallelFast9(ForkJoinPool pool, int bandHeight) {
+        if (bandHeight <= 0)
+            throw new IllegalArgumentException("Band height must be positive");
+
+        this.pool = pool;
+        this.bandHeight = bandHeight;
+    }
+
+    public ParallelFast9(ForkJoinPool pool) {
+        this(pool, DEFAULT_BAND_HEIGHT);
+    }
+
+    // Detects corners of a grayscale image, whose rows are stride bytes apart. Returns how
+    // many corners have been found, see getCorners().
+    public int detect(byte[] image, int width, int height, int stride, int threshold) {
+        int firstRow = BORDER;
+        int lastRow = height - BORDER;
+        int bandsCount = Math.max(0, (lastRow - firstRow + bandHeight - 1) / bandHeight);
+
+        if (stride != offsetsStride) {
+            for (int i = 0; i < 16; i++)
+                offsets[i] = CIRCLE_X[i] + CIRCLE_Y[i] * stride;
+            offsetsStride = stride;
+        }
+
+        if (bandCorners.length < bandsCount) {
+            bandCorners = Arrays.copyOf(bandCorners, bandsCount);
+            bandCounts = new int[bandsCount];
+        }
+
+        if (bandsCount > 0)
+            pool.invoke(new BandsTask(this, image, width, height, stride, threshold, 0, bandsCount));
+
+        // Bands are in row order, so corners end up in row major order, as the FAST library ones
+        int total = 0;
+        for (int band = 0; band < bandsCount; band++)
+            total += bandCounts[band];
+        if (corners.length < total * 2)
+            corners = new int[total * 2];
+
+        int offset = 0;
+        for (int band = 0; band < bandsCount; band++) {
+            System.arraycopy(bandCorners[band], 0, corners, offset, bandCounts[band] * 2);
+            offset += bandCounts[band] * 2;
+        }
+        cornersCount = total;
+
+        return total;
+    }
+
+    // Corners of the last detect() call, packed as x, y. Only the first getCornersCount() * 2
+    // values are valid.
+    public int[] getCorners() {
+        return corners;
+    }
+
+    public int getCornersCount() {
+        return cornersCount;
+    }
+
+    // Splits the bands range in halves, down to single bands detected by the pool threads
+    @SuppressWarnings("serial")
+    private static class BandsTask extends RecursiveAction {
+        final ParallelFast9 detector;
+        final byte[] image;
+        final int width, height, stride, threshold;
+        final int fromBand, toBand;
+
+        BandsTask(ParallelFast9 detector, byte[] image, int width, int height, int stride, int threshold,
+                  int fromBand, int toBand) {
+            this.detector = detector;
+            this.image = image;
+            this.width = width;
+            this.height = height;
+            this.stride = stride;
+            this.threshold = threshold;
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBand - fromBand == 1) {
+                detector.detectBand(image, width, height, stride, threshold, fromBand);
+                return;
+            }
+
+            int middle = (fromBand + toBand) >>> 1;
+            invokeAll(new BandsTask(detector, image, width, height, stride, threshold, fromBand, middle),
+                    new BandsTask(detector, image, width, height, stride, threshold, middle, toBand));
+        }
+    }
+
+    private void detectBand(byte[] image, int width, int height, int stride, int threshold, int band) {
+        int firstRow = BORDER + band * bandHeight;
+        int lastRow = Math.min(firstRow + bandHeight, height - BORDER);
+
+        int[] bandArray = bandCorners[band];
+        if (bandArray == null)
+            bandArray = new int[256];
+        int count = 0;
+
+        for (int y = firstRow; y < lastRow; y++) {
+            for (int x = BORDER; x < width - BORDER; x++) {
+                if (!isCorner(image, x + y * stride, offsets, threshold))
+                    continue;
+
+                if (count * 2 == bandArray.length)
+                    bandArray = Arrays.copyOf(bandArray, bandArray.length * 2);
+                bandArray[count * 2] = x;
+                bandArray[count * 2 + 1] = y;
+                count++;
+            }
+        }
+
+        // Every band has its own slot, so no synchronization is needed
+        bandCorners[band] = bandArray;
+        bandCounts[band] = count;
+    }
+
+    // Segment test: true if 9 contiguous circle pixels are all brighter than center + threshold,
+    // or all darker than center - threshold
+    static boolean isCorner(byte[] image, int index, int[] offsets, int threshold) {
+        int center = image[index] & 0xFF;
+        int brighterLimit = center + threshold;
+        int darkerLimit = center - threshold;
+
+        // Every arc of 9 pixels contains at least 2 of pixels 0, 4, 8 and 12
+        int brighter = 0;
+        int darker = 0;
+        for (int i = 0; i < 16; i += 4) {
+            int v = image[index + offsets[i]] & 0xFF;
+            // Sign bits: set if v > brighterLimit and if v < darkerLimit, without branches
+            brighter += (brighterLimit - v) >>> 31;
+            darker += (v - darkerLimit) >>> 31;
+        }
+        if (brighter < 2 && darker < 2)
+            return false;
+
+        int brighterMask = 0;
+        int darkerMask = 0;
+        for (int i = 0; i < 16; i++) {
+            int v = image[index + offsets[i]] & 0xFF;
+            brighterMask |= ((brighterLimit - v) >>> 31) << i;
+            darkerMask |= ((v - darkerLimit) >>> 31) << i;
+        }
+
+        return hasArc9(brighterMask) || hasArc9(darkerMask);
+    }
+
+    // True if the 16 bits circular mask has 9 contiguous set bits
+    static boolean hasArc9(int mask) {
+        // Doubling the mask turns arcs wrapping around bit 0 into plain runs
+        int run = mask | (mask << 16);
+        run &= run >>> 1; // Runs of 2
+        run &= run >>> 2; // Runs of 4
+        run &= run >>> 4; // Runs of 8
+        run &= run >>> 1; // Runs of 9
+        return run != 0;
+    }
+}
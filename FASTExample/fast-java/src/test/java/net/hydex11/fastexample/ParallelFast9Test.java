@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.fastexample;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks ParallelFast9, corner for corner, against the decision tree of the NDK FAST library
+ * (app/src/main/jni/fastlib/fast_9.cpp), evaluated by Fast9DecisionTree.
+ */
+public class ParallelFast9Test {
+
+    static final File FAST_9_SOURCE = new File("../app/src/main/jni/fastlib/fast_9.cpp");
+    static final int THRESHOLD = 20;
+
+    static Fast9DecisionTree tree;
+
+    // Parsed once, for all tests
+    static synchronized Fast9DecisionTree getTree() throws Exception {
+        if (tree == null)
+            tree = Fast9DecisionTree.parse(FAST_9_SOURCE);
+        return tree;
+    }
+
+    static int[] treeCorners(byte[] image, int width, int height) throws Exception {
+        return getTree().detect(image, width, height, THRESHOLD);
+    }
+
+    // Random blocks plus noise: plenty of corners of both kinds, and plenty of near misses
+    static byte[] testImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] image = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image[x + y * width] = (byte) (((x / 5) * 37 + (y / 4) * 91) % 256 + random.nextInt(24));
+            }
+        }
+        return image;
+    }
+
+    static void assertSameCorners(int[] expected, ParallelFast9 detector, int count) {
+        assertEquals(expected.length / 2, count);
+        int[] corners = detector.getCorners();
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != corners[i])
+                fail("Corner " + i / 2 + " differs: expected " + expected[i / 2 * 2] + "," + expected[i / 2 * 2 + 1] +
+                        ", found " + corners[i / 2 * 2] + "," + corners[i / 2 * 2 + 1]);
+        }
+    }
+
+    @Test
+    public void matchesDecisionTree() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (long seed = 1; seed <= 3; seed++) {
+                byte[] image = testImage(160, 120, seed);
+                int[] expected = treeCorners(image, 160, 120);
+                assertTrue(expected.length > 100);
+
+                ParallelFast9 detector = new ParallelFast9(pool);
+                assertSameCorners(expected, detector, detector.detect(image, 160, 120, 160, THRESHOLD));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void matchesDecisionTreeOnNoise() throws Exception {
+        byte[] image = new byte[97 * 83];
+        new Random(4).nextBytes(image);
+        int[] expected = treeCorners(image, 97, 83);
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ParallelFast9 detector = new ParallelFast9(pool, 7);
+            assertSameCorners(expected, detector, detector.detect(image, 97, 83, 97, THRESHOLD));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sameCornersWhateverBandsAndThreads() throws Exception {
+        byte[] image = testImage(200, 150, 5);
+        int[] expected = treeCorners(image, 200, 150);
+
+        for (int threads = 1; threads <= 4; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int bandHeight : new int[]{1, 5, 16, 1000}) {
+                    ParallelFast9 detector = new ParallelFast9(pool, bandHeight);
+                    // Twice, as arrays are reused
+                    assertSameCorners(expected, detector, detector.detect(image, 200, 150, 200, THRESHOLD));
+                    assertSameCorners(expected, detector, detector.detect(image, 200, 150, 200, THRESHOLD));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void strideAndTinyImages() throws Exception {
+        // Image padded to a 64 bytes stride: padding must be ignored
+        byte[] image = testImage(50, 40, 6);
+        byte[] padded = new byte[64 * 40];
+        for (int y = 0; y < 40; y++)
+            System.arraycopy(image, y * 50, padded, y * 64, 50);
+        for (int i = 0; i < padded.length; i++) {
+            if (i % 64 >= 50)
+                padded[i] = (byte) (i * 7);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ParallelFast9 detector = new ParallelFast9(pool, 4);
+            assertSameCorners(treeCorners(image, 50, 40), detector, detector.detect(padded, 50, 40, 64, THRESHOLD));
+
+            assertEquals(0, detector.detect(new byte[36], 6, 6, 6, THRESHOLD));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void arcMask() {
+        assertTrue(ParallelFast9.hasArc9(0x01FF));
+        assertFalse(ParallelFast9.hasArc9(0x00FF));
+        // Arc wrapping around pixel 0: pixels 12..15 and 0..4
+        assertTrue(ParallelFast9.hasArc9(0xF01F));
+        assertFalse(ParallelFast9.hasArc9(0xF00F));
+        assertFalse(ParallelFast9.hasArc9(0xAAAA));
+        assertTrue(ParallelFast9.hasArc9(0xFFFF));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package net.hydex11.fastexample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Segment test of the NDK FAST library, as its decision tree: the tree is parsed from the
+ * fast9_detect loop body (app/src/main/jni/fastlib/fast_9.cpp) and evaluated in Java, so that
+ * tests can check against it without a native build. Shared by the fast-java and app tests.
+ */
+public class Fast9DecisionTree {
+
+    // Decision tree node: either a pixel comparison or a leaf
+    static class Node {
+        final int pixel;
+        final boolean brighter;
+        final Node ifTrue, ifFalse;
+        final boolean corner;
+
+        Node(int pixel, boolean brighter, Node ifTrue, Node ifFalse) {
+            this.pixel = pixel;
+            this.brighter = brighter;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+            this.corner = false;
+        }
+
+        Node(boolean corner) {
+            this.pixel = -1;
+            this.brighter = false;
+            this.ifTrue = null;
+            this.ifFalse = null;
+            this.corner = corner;
+        }
+    }
+
+    static final Node CORNER = new Node(true);
+    static final Node NOT_CORNER = new Node(false);
+
+    // Parses the statements of fast9_detect loop body, made only of
+    // "if (p[pixel[N]] > cb)", "if (p[pixel[N]] < c_b)", "else", "{ }" and "continue;"
+    static class TreeParser {
+        static final Pattern TOKEN = Pattern.compile("if|else|continue|p\\[pixel\\[(\\d+)\\]\\]|c_b|cb|[(){};<>]");
+
+        final List<String> tokens = new ArrayList<String>();
+        int position = 0;
+
+        TreeParser(String body) {
+            Matcher matcher = TOKEN.matcher(body);
+            while (matcher.find())
+                tokens.add(matcher.group());
+        }
+
+        String next() {
+            return tokens.get(position++);
+        }
+
+        void expect(String token) {
+            String found = next();
+            if (!found.equals(token))
+                throw new IllegalStateException("Expected " + token + ", found " + found + " at token " + position);
+        }
+
+        Node statement() {
+            String token = next();
+            if (token.equals("{")) {
+                expect("}");
+                return CORNER;
+            }
+            if (token.equals("continue")) {
+                expect(";");
+                return NOT_CORNER;
+            }
+            if (!token.equals("if"))
+                throw new IllegalStateException("Unexpected " + token + " at token " + position);
+
+            expect("(");
+            String pixelToken = next();
+            int pixel = Integer.parseInt(pixelToken.substring("p[pixel[".length(), pixelToken.length() - 2));
+            String comparison = next();
+            String limit = next();
+            boolean brighter = comparison.equals(">");
+            if (!limit.equals(brighter ? "cb" : "c_b"))
+                throw new IllegalStateException("Unexpected comparison " + comparison + " " + limit);
+            expect(")");
+
+            Node ifTrue = statement();
+            // Dangling else binds to the nearest if, as in C
+            Node ifFalse = CORNER;
+            if (position < tokens.size() && tokens.get(position).equals("else")) {
+                position++;
+                ifFalse = statement();
+            }
+            return new Node(pixel, brighter, ifTrue, ifFalse);
+        }
+    }
+
+    private final Node root;
+
+    private Fast9DecisionTree(Node root) {
+        this.root = root;
+    }
+
+    public static Fast9DecisionTree parse(File fast9Source) throws IOException {
+        if (!fast9Source.exists())
+            throw new IOException(fast9Source.getAbsolutePath() + " not found");
+        String source = new String(Files.readAllBytes(fast9Source.toPath()), Charset.forName("UTF-8"));
+
+        // Loop body of fast9_detect, between the thresholds and the corner count increment
+        int start = source.indexOf("int c_b = *p - b;");
+        int end = source.indexOf("num_corners++;", start);
+        if (start < 0 || end < 0)
+            throw new IllegalStateException("fast9_detect loop body not found");
+
+        TreeParser parser = new TreeParser(source.substring(start + "int c_b = *p - b;".length(), end));
+        Node root = parser.statement();
+        if (parser.position != parser.tokens.size())
+            throw new IllegalStateException("Tree parsed up to token " + parser.position + " of " + parser.tokens.size());
+        return new Fast9DecisionTree(root);
+    }
+
+    // True if the pixel is a corner at the given threshold
+    public boolean isCorner(byte[] image, int stride, int x, int y, int threshold) {
+        int center = image[x + y * stride] & 0xFF;
+        Node node = root;
+        while (node.pixel >= 0) {
+            int v = image[x + ParallelFast9.CIRCLE_X[node.pixel] + (y + ParallelFast9.CIRCLE_Y[node.pixel]) * stride] & 0xFF;
+            boolean result = node.brighter ? v > center + threshold : v < center - threshold;
+            node = result ? node.ifTrue : node.ifFalse;
+        }
+        return node.corner;
+    }
+
+    // Corners of all pixels at least BORDER pixels away from the image border, in row major
+    // order, packed as x, y (as fast9_detect_corners returns them)
+    public int[] detect(byte[] image, int width, int height, int threshold) {
+        int[] corners = new int[width * height * 2];
+        int count = 0;
+        for (int y = ParallelFast9.BORDER; y < height - ParallelFast9.BORDER; y++) {
+            for (int x = ParallelFast9.BORDER; x < width - ParallelFast9.BORDER; x++) {
+                if (isCorner(image, width, x, y, threshold)) {
+                    corners[count * 2] = x;
+                    corners[count * 2 + 1] = y;
+                    count++;
+                }
+            }
+        }
+        int[] result = new int[count * 2];
+        System.arraycopy(corners, 0, result, 0, result.length);
+        return result;
+    }
+}
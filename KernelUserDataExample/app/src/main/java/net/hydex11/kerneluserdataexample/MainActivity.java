@@ -32,6 +32,7 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
+import net.hydex11.rsprofiler.LogView;
 
 import java.lang.reflect.Method;
 
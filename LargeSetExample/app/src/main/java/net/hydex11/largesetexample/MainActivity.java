@@ -36,6 +36,8 @@ import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.LinearLayout;
+import net.hydex11.rsprofiler.LogView;
+import net.hydex11.rsprofiler.Timings;
 
 import java.util.ArrayList;
 
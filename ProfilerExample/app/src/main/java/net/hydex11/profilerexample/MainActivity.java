@@ -36,6 +36,8 @@ import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.LinearLayout;
+import net.hydex11.rsprofiler.LogView;
+import net.hydex11.rsprofiler.Timings;
 
 import java.io.IOException;
 
@@ -52,6 +54,11 @@ public class MainActivity extends AppCompatActivity {
     // Used when renderscriptTargetApi is >= 21
     private static final boolean DISABLE_POST_LOLLIPOP = false;
 
+    // If true, kernels are not serialized with mRS.finish() before each timing: the whole
+    // cycle runs asynchronously, and kernels are fenced only once every n cycles (defined below)
+    // to attribute time to them. Gives the real cycle throughput instead of isolated kernel times.
+    private static final boolean OVERLAPPED_TIMINGS = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -163,6 +170,13 @@ public class MainActivity extends AppCompatActivity {
                 // Averaging will run every 10 cycles
                 timings.setTimingDebugInterval(20);
 
+                if (OVERLAPPED_TIMINGS)
+                    timings.enableOverlappedMode(10);
+
+                // Records every timing, nested inside the test spans below, to be saved as a
+                // Chrome trace (RSProfilerTrace_*.json) together with the stats
+                timings.enableTracing(65536);
+
                 if (PURE_PROFILING) {
                     try {
                         timings.enableSaveStats(true);
@@ -244,6 +258,56 @@ public class MainActivity extends AppCompatActivity {
                 mRS.finish();
                 Log.d(TAG, "Pre filled auxiliary data");
 
+                // Registers all timing tags once, so that the loop below only passes integer
+                // handles to the profiler, without formatting strings on every sample.
+                int[] blurSimpleKernelTiming = timings.registerTimings("blur%d - simple kernel", blurRadiusVariants);
+                int[] blurPointersTiming = timings.registerTimings("blur%d - pointers", blurRadiusVariants);
+                int[] blurPointersSetTiming = timings.registerTimings("blur%d - pointers - rsSet", blurRadiusVariants);
+                int[] blurPointersGetTiming = timings.registerTimings("blur%d - pointers - rsGet", blurRadiusVariants);
+                int[] blurPointersScriptVarTiming = timings.registerTimings("blur%d - pointers - ScriptVar", blurRadiusVariants);
+                int[] blurPointersScriptVarPointerTiming = timings.registerTimings("blur%d - pointers - ScriptVarPointer", blurRadiusVariants);
+                int[] blurFilterScriptScriptVarTiming = timings.registerTimings("blur%d - FilterScript - ScriptVar", blurRadiusVariants);
+                int[] blurFilterScriptTiming = timings.registerTimings("blur%d - FilterScript", blurRadiusVariants);
+                int[] blurNDKTiming = timings.registerTimings("blur%d - NDK", blurRadiusVariants);
+
+                int[] setValuesSimpleKernelTiming = timings.registerTimings("setValues%d - simple kernel", blurRadiusVariants);
+                int[] setValuesPointersTiming = timings.registerTimings("setValues%d - pointers", blurRadiusVariants);
+                int[] setValuesPointersSetTiming = timings.registerTimings("setValues%d - pointers - rsSet", blurRadiusVariants);
+                int[] setValuesFilterScriptTiming = timings.registerTimings("setValues%d - FilterScript", blurRadiusVariants);
+                int[] setValuesNDKTiming = timings.registerTimings("setValues%d - NDK", blurRadiusVariants);
+
+                int graySimpleKernelTiming = timings.registerTiming("RGBAtoGRAY - simple kernel");
+                int grayPointersSetTiming = timings.registerTiming("RGBAtoGRAY - pointers - rsSet");
+                int grayPointersGetTiming = timings.registerTiming("RGBAtoGRAY - pointers - rsGet");
+                int grayPointersTiming = timings.registerTiming("RGBAtoGRAY - pointers");
+                int grayFilterScriptTiming = timings.registerTiming("RGBAtoGRAY - FilterScript");
+                int grayNDKTiming = timings.registerTiming("RGBAtoGRAY - NDK");
+
+                int multipleKernelsDividedTiming = timings.registerTiming("Multiple kernels - divided");
+                int multipleKernelsRsForEachTiming = timings.registerTiming("Multiple kernels - rsForEach");
+                int multipleKernelsRsForEachSingleTiming = timings.registerTiming("Multiple kernels - rsForEach - single kernel");
+                int multipleKernelsSingleTiming = timings.registerTiming("Multiple kernels - single kernel");
+
+                int[] piSimpleKernelTiming = timings.registerTimings("PI%d - simple kernel", piIterations);
+                int[] piFilterScriptTiming = timings.registerTimings("PI%d - FilterScript - simple kernel", piIterations);
+                int[] piNDKTiming = timings.registerTimings("PI%d - NDK", piIterations);
+
+                // Spans group the timings of each test, and of each radius / iterations variant
+                int loopSpan = timings.registerSpan("Profiling cycle");
+                int blurSpan = timings.registerSpan("Blur test");
+                int setValuesSpan = timings.registerSpan("Set values test");
+                int graySpan = timings.registerSpan("RGBA to GRAY test");
+                int multipleKernelsSpan = timings.registerSpan("Multiple kernels test");
+                int piSpan = timings.registerSpan("PI test");
+                int[] radiusSpans = new int[blurRadiusVariants.length];
+                for (int i = 0; i < blurRadiusVariants.length; i++) {
+                    radiusSpans[i] = timings.registerSpan("radius " + blurRadiusVariants[i]);
+                }
+                int[] piIterationsSpans = new int[piIterations.length];
+                for (int i = 0; i < piIterations.length; i++) {
+                    piIterationsSpans[i] = timings.registerSpan(piIterations[i] + " iterations");
+                }
+
                 boolean testBlur = true;
                 boolean testSetValues = true;
                 boolean testGray = true;
@@ -253,10 +317,13 @@ public class MainActivity extends AppCompatActivity {
                 // My loop
                 while (true) {
                     // Calling this function, the profiler sets current time as initial one
+                    int cycle = timings.beginSpan(loopSpan);
                     timings.initTimings();
 
                     if (testBlur) {
+                        int blur = timings.beginSpan(blurSpan);
                         for (int i = 0; i < blurRadiusVariants.length; i++) {
+                            int radius = timings.beginSpan(radiusSpans[i]);
                             int currentRadius = blurRadiusVariants[i];
                             // Blur and set values square 
                             scriptC_main.set_blurRadius(currentRadius);
@@ -267,38 +334,42 @@ public class MainActivity extends AppCompatActivity {
                             timings.resetLastTimingsTimestamp();
 
                             scriptC_main.forEach_blurSimpleKernel(outputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("blur%d - simple kernel", currentRadius);
+                            timings.addTiming(blurSimpleKernelTiming[i]);
 
                             scriptC_main.forEach_blurPointerKernel(inputAllocation, outputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("blur%d - pointers", currentRadius);
+                            timings.addTiming(blurPointersTiming[i]);
 
                             scriptC_main.forEach_blurPointerKernelSet(inputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("blur%d - pointers - rsSet", currentRadius);
+                            timings.addTiming(blurPointersSetTiming[i]);
 
                             scriptC_main.forEach_blurPointerKernelGet(outputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("blur%d - pointers - rsGet", currentRadius);
+                            timings.addTiming(blurPointersGetTiming[i]);
 
                             if (!DISABLE_POST_LOLLIPOP || (DISABLE_POST_LOLLIPOP && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)) {
                                 scriptC_main.forEach_blurPointerKernelGetFromScriptVariable(outputAllocation, launchOptionsBlur[i]);
-                                timings.addTiming("blur%d - pointers - ScriptVar", currentRadius);
+                                timings.addTiming(blurPointersScriptVarTiming[i]);
 
                                 scriptC_main.forEach_blurPointerKernelGetFromScriptVariablePointer(outputAllocation, launchOptionsBlur[i]);
-                                timings.addTiming("blur%d - pointers - ScriptVarPointer", currentRadius);
+                                timings.addTiming(blurPointersScriptVarPointerTiming[i]);
 
                                 scriptC_main_fs.forEach_blurSimpleKernelFSGetFromScriptVariable(outputAllocation, launchOptionsBlur[i]);
-                                timings.addTiming("blur%d - FilterScript - ScriptVar", currentRadius);
+                                timings.addTiming(blurFilterScriptScriptVarTiming[i]);
                             }
 
                             scriptC_main_fs.forEach_blurSimpleKernelFS(outputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("blur%d - FilterScript", currentRadius);
+                            timings.addTiming(blurFilterScriptTiming[i]);
 
                             ndkBlur();
-                            timings.addTiming("blur%d - NDK", currentRadius);
+                            timings.addTiming(blurNDKTiming[i]);
+                            timings.endSpan(radius);
                         }
+                        timings.endSpan(blur);
                     }
 
                     if (testSetValues) {
+                        int setValues = timings.beginSpan(setValuesSpan);
                         for (int i = 0; i < blurRadiusVariants.length; i++) {
+                            int radius = timings.beginSpan(radiusSpans[i]);
                             int currentRadius = blurRadiusVariants[i];
                             // Blur and set values square
                             scriptC_main.set_blurRadius(currentRadius);
@@ -309,44 +380,49 @@ public class MainActivity extends AppCompatActivity {
                             timings.resetLastTimingsTimestamp();
 
                             scriptC_main.forEach_setValuesSimpleKernel(inputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("setValues%d - simple kernel", currentRadius);
+                            timings.addTiming(setValuesSimpleKernelTiming[i]);
 
                             scriptC_main.forEach_setValuesPointerKernel(inputAllocation, outputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("setValues%d - pointers", currentRadius);
+                            timings.addTiming(setValuesPointersTiming[i]);
 
                             scriptC_main.forEach_setValuesPointerKernelSet(inputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("setValues%d - pointers - rsSet", currentRadius);
+                            timings.addTiming(setValuesPointersSetTiming[i]);
 
                             scriptC_main_fs.forEach_setValuesSimpleKernelFS(outputAllocation, launchOptionsBlur[i]);
-                            timings.addTiming("setValues%d - FilterScript", currentRadius);
+                            timings.addTiming(setValuesFilterScriptTiming[i]);
 
                             ndkSetValues();
-                            timings.addTiming("setValues%d - NDK", currentRadius);
+                            timings.addTiming(setValuesNDKTiming[i]);
+                            timings.endSpan(radius);
                         }
+                        timings.endSpan(setValues);
                     }
 
                     if (testGray) {
+                        int gray = timings.beginSpan(graySpan);
                         // RGBA to GRAY conversion
                         scriptC_main.forEach_rgbaToGrayNoPointer(inputAllocation, grayAllocation);
-                        timings.addTiming("RGBAtoGRAY - simple kernel");
+                        timings.addTiming(graySimpleKernelTiming);
 
                         scriptC_main.forEach_rgbaToGrayPointerAndSet(inputAllocation);
-                        timings.addTiming("RGBAtoGRAY - pointers - rsSet");
+                        timings.addTiming(grayPointersSetTiming);
 
                         scriptC_main.forEach_rgbaToGrayPointerAndGet(grayAllocation);
-                        timings.addTiming("RGBAtoGRAY - pointers - rsGet");
+                        timings.addTiming(grayPointersGetTiming);
 
                         scriptC_main.forEach_rgbaToGrayPointerAndOut(inputAllocation, grayAllocation);
-                        timings.addTiming("RGBAtoGRAY - pointers");
+                        timings.addTiming(grayPointersTiming);
 
                         scriptC_main_fs.forEach_rgbaToGraySimpleKernelFS(inputAllocation, grayAllocation);
-                        timings.addTiming("RGBAtoGRAY - FilterScript");
+                        timings.addTiming(grayFilterScriptTiming);
 
                         rgbaToGray();
-                        timings.addTiming("RGBAtoGRAY - NDK");
+                        timings.addTiming(grayNDKTiming);
+                        timings.endSpan(gray);
                     }
 
                     if (testMultipleKernels) {
+                        int multipleKernels = timings.beginSpan(multipleKernelsSpan);
                         // Kernel concatenation
                         // Tests if kernel calls are faster without switching context or not
                         // Main tests:
@@ -355,23 +431,26 @@ public class MainActivity extends AppCompatActivity {
                         // 3. Single kernel, made merging two kernels in one
                         scriptC_multipleKernelsTest_first.forEach_root(multipleKernelsAllocation, multipleKernelsAllocationMid, multipleKernelsLaunchOptions);
                         scriptC_multipleKernelsTest_second.forEach_root(multipleKernelsAllocationMid, multipleKernelsAllocationOut, multipleKernelsLaunchOptions);
-                        timings.addTiming("Multiple kernels - divided");
+                        timings.addTiming(multipleKernelsDividedTiming);
 
                         if (!DISABLE_POST_LOLLIPOP || (DISABLE_POST_LOLLIPOP && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)) {
                             scriptC_multipleKernelsTest_merged.invoke_invokeMultipleKernelsCall(scriptC_multipleKernelsTest_first,
                                     scriptC_multipleKernelsTest_second, multipleKernelsAllocation, multipleKernelsAllocationMid, multipleKernelsAllocationOut);
-                            timings.addTiming("Multiple kernels - rsForEach");
+                            timings.addTiming(multipleKernelsRsForEachTiming);
 
                             scriptC_multipleKernelsTest_merged.invoke_invokeSingleKernelCall(scriptC_multipleKernelsTest_unique, multipleKernelsAllocation, multipleKernelsAllocationOut);
-                            timings.addTiming("Multiple kernels - rsForEach - single kernel");
+                            timings.addTiming(multipleKernelsRsForEachSingleTiming);
 
                         }
 
                         scriptC_multipleKernelsTest_unique.forEach_root(multipleKernelsAllocation, multipleKernelsAllocationOut, multipleKernelsLaunchOptions);
-                        timings.addTiming("Multiple kernels - single kernel");
+                        timings.addTiming(multipleKernelsSingleTiming);
+                        timings.endSpan(multipleKernels);
                     }
                     if (testPI) {
+                        int pi = timings.beginSpan(piSpan);
                         for (int i = 0; i < piIterations.length; i++) {
+                            int iterations = timings.beginSpan(piIterationsSpans[i]);
                             int currentIterations = piIterations[i];
                             scriptC_main.set_piIterations(currentIterations);
                             scriptC_main_fs.set_piIterations(currentIterations);
@@ -381,16 +460,20 @@ public class MainActivity extends AppCompatActivity {
 
                             // Tests PI calculation
                             scriptC_main.forEach_PITestSimpleKernel(piTestAllocation);
-                            timings.addTiming("PI%d - simple kernel", currentIterations);
+                            timings.addTiming(piSimpleKernelTiming[i]);
 
                             scriptC_main_fs.forEach_PITestSimpleKernel(piTestAllocation);
-                            timings.addTiming("PI%d - FilterScript - simple kernel", currentIterations);
+                            timings.addTiming(piFilterScriptTiming[i]);
 
                             calculatePI(piTestElementsCount, currentIterations);
-                            timings.addTiming("PI%d - NDK", currentIterations);
+                            timings.addTiming(piNDKTiming[i]);
+                            timings.endSpan(iterations);
                         }
+                        timings.endSpan(pi);
                     }
 
+                    timings.endSpan(cycle);
+
                     // Checks if this cycle is the correct one for debugging timings and outputs them
                     // in case it is.
                     timings.debugTimings();
@@ -0,0 +1,191 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the analysis of a set of captures, as JSON (machine readable) or as a text table.
+ * All times are in milliseconds.
+ */
+public class AnalysisReport {
+
+    private final List<CaptureStatistics> captures;
+
+    public AnalysisReport(List<CaptureStatistics> captures) {
+        this.captures = captures;
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\n  \"captures\": [");
+
+        for (int c = 0; c < captures.size(); c++) {
+            CaptureStatistics capture = captures.get(c);
+            writer.write(c == 0 ? "\n" : ",\n");
+            writer.write("    {\n");
+            writer.write("      \"name\": " + jsonString(capture.getName()) + ",\n");
+            writer.write("      \"samples\": " + capture.getSampleCount() + ",\n");
+            writer.write("      \"skippedLines\": " + capture.getSkippedLines() + ",\n");
+            writer.write("      \"dropped\": " + capture.getDroppedCount() + ",\n");
+            writer.write("      \"tags\": [");
+
+            boolean first = true;
+            for (TagStatistics tag : capture.getTags()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+
+                double[] meanCI = tag.getMeanConfidenceInterval();
+                long[] medianCI = tag.getMedianConfidenceInterval();
+
+                writer.write("        {\"tag\": " + jsonString(tag.getTag())
+                        + ", \"count\": " + tag.getCount()
+                        + ", \"mean\": " + millis(tag.getMean())
+                        + ", \"harmonicMean\": " + millis(tag.getHarmonicMean())
+                        + ", \"stdDev\": " + millis(tag.getStdDeviation())
+                        + ", \"min\": " + millis(tag.getMin())
+                        + ", \"p50\": " + millis(tag.getMedian())
+                        + ", \"p90\": " + millis(tag.getPercentile(90))
+                        + ", \"p99\": " + millis(tag.getPercentile(99))
+                        + ", \"max\": " + millis(tag.getMax())
+                        + ", \"meanCI95\": [" + millis(meanCI[0]) + ", " + millis(meanCI[1]) + "]"
+                        + ", \"medianCI95\": [" + millis(medianCI[0]) + ", " + millis(medianCI[1]) + "]"
+                        + ", \"outliers\": " + tag.getOutlierCount() + "}");
+            }
+            writer.write("\n      ],\n");
+
+            writer.write("      \"rankings\": [");
+            List<CaptureStatistics.TaskRanking> rankings = capture.getRankings();
+            for (int r = 0; r < rankings.size(); r++) {
+                CaptureStatistics.TaskRanking ranking = rankings.get(r);
+                writer.write(r == 0 ? "\n" : ",\n");
+                writer.write("        {\"task\": " + jsonString(ranking.getTask()) + ", \"variants\": [");
+
+                List<TagStatistics> variants = ranking.getVariants();
+                for (int v = 0; v < variants.size(); v++) {
+                    TagStatistics variant = variants.get(v);
+                    writer.write(v == 0 ? "\n" : ",\n");
+                    writer.write("          {\"rank\": " + (v + 1)
+                            + ", \"tag\": " + jsonString(variant.getTag())
+                            + ", \"p50\": " + millis(variant.getMedian())
+                            + ", \"relative\": " + String.format(Locale.US, "%.4f", ranking.getRelativeMedian(variant))
+                            + ", \"significantlySlower\": " + ranking.isSignificantlySlower(variant) + "}");
+                }
+                writer.write("\n        ]}");
+            }
+            writer.write(rankings.isEmpty() ? "]\n" : "\n      ]\n");
+            writer.write("    }");
+        }
+
+        writer.write(captures.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+    }
+
+    public void writeText(Writer writer) throws IOException {
+        for (CaptureStatistics capture : captures) {
+            int tagWidth = 3;
+            for (TagStatistics tag : capture.getTags()) {
+                tagWidth = Math.max(tagWidth, tag.getTag().length());
+            }
+
+            writer.write(String.format(Locale.US, "== %s: %d samples, %d skipped lines, %d dropped\n\n",
+                    capture.getName(), capture.getSampleCount(), capture.getSkippedLines(), capture.getDroppedCount()));
+
+            String rowFormat = "%-" + tagWidth + "s %8s %9s %9s %9s %9s %9s %9s %21s %8s\n";
+            writer.write(String.format(Locale.US, rowFormat,
+                    "Tag", "n", "mean", "p50", "p90", "p99", "max", "sd", "p50 95% CI", "outliers"));
+
+            for (TagStatistics tag : capture.getTags()) {
+                long[] medianCI = tag.getMedianConfidenceInterval();
+                writer.write(String.format(Locale.US, rowFormat,
+                        tag.getTag(),
+                        String.valueOf(tag.getCount()),
+                        millis(tag.getMean()),
+                        millis(tag.getMedian()),
+                        millis(tag.getPercentile(90)),
+                        millis(tag.getPercentile(99)),
+                        millis(tag.getMax()),
+                        millis(tag.getStdDeviation()),
+                        "[" + millis(medianCI[0]) + ", " + millis(medianCI[1]) + "]",
+                        String.valueOf(tag.getOutlierCount())));
+            }
+
+            List<CaptureStatistics.TaskRanking> rankings = capture.getRankings();
+            if (!rankings.isEmpty())
+                writer.write("\nRankings (by median, fastest first, * = significantly slower than fastest)\n");
+
+            for (CaptureStatistics.TaskRanking ranking : rankings) {
+                writer.write("\n" + ranking.getTask() + "\n");
+
+                List<TagStatistics> variants = ranking.getVariants();
+                for (int v = 0; v < variants.size(); v++) {
+                    TagStatistics variant = variants.get(v);
+                    writer.write(String.format(Locale.US, "  %2d. %-" + tagWidth + "s %9s ms  x%.2f%s\n",
+                            v + 1, variant.getTag(), millis(variant.getMedian()),
+                            ranking.getRelativeMedian(variant),
+                            ranking.isSignificantlySlower(variant) ? " *" : ""));
+                }
+            }
+
+            writer.write("\n");
+        }
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.US, "%.4f", nanos / 1000000.0);
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        builder.append(String.format("\\u%04x", (int) c));
+                    else
+                        builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import net.hydex11.rsprofiler.BinaryStatsReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Streams the samples of a capture file, without loading it in memory.
+ * <p>
+ * Two formats are supported:
+ * - CSV files written by Timings ("Tag,Timing" header, timing in milliseconds). Files made by
+ * concatenating many captures are accepted, repeated headers are skipped.
+ * - Binary files written by BinaryStatsSink (detected by their magic number).
+ */
+public class CaptureReader {
+
+    private static final String CSV_HEADER = "Tag,Timing";
+
+    public interface SampleListener {
+        void onSample(String tag, long nanos);
+    }
+
+    private long sampleCount = 0;
+    private long skippedLines = 0;
+    private long droppedCount = 0;
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    // CSV lines that could not be parsed
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    // Samples dropped on the device, as written in binary captures
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public void read(File file, SampleListener listener) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file), 256 * 1024);
+        try {
+            // Checks the magic number, to choose the format
+            inputStream.mark(4);
+            byte[] magic = new byte[4];
+            int read = inputStream.read(magic);
+            inputStream.reset();
+
+            if (BinaryStatsReader.isBinaryStatsHeader(magic, read))
+                readBinary(inputStream, listener);
+            else
+                readCsv(new InputStreamReader(inputStream, "UTF-8"), listener);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public void readCsv(Reader reader, SampleListener listener) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader, 256 * 1024);
+
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            if (line.isEmpty() || line.equals(CSV_HEADER))
+                continue;
+
+            // Tags never contain commas (Timings replaces them), so the last one splits the line
+            int separator = line.lastIndexOf(',');
+            if (separator <= 0) {
+                skippedLines++;
+                continue;
+            }
+
+            double millis;
+            try {
+                millis = Double.parseDouble(line.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                skippedLines++;
+                continue;
+            }
+
+            listener.onSample(line.substring(0, separator), Math.round(millis * 1000000.0));
+            sampleCount++;
+        }
+    }
+
+    public void readBinary(InputStream inputStream, final SampleListener listener) throws IOException {
+        BinaryStatsReader reader = new BinaryStatsReader();
+        reader.read(inputStream, new BinaryStatsReader.SampleListener() {
+            @Override
+            public void onSample(String tag, long nanos, long sequence) {
+                listener.onSample(tag, nanos);
+            }
+        });
+
+        sampleCount += reader.getSampleCount();
+        droppedCount += reader.getDroppedCount();
+    }
+}
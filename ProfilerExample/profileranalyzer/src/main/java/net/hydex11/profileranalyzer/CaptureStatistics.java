@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of all the tags found in a capture (a single file, or a group of merged files).
+ * Tags keep the order they first appear in.
+ */
+public class CaptureStatistics implements CaptureReader.SampleListener {
+
+    // Tags are grouped in tasks by their first word, like the crowdtest R script does
+    // (e.g. "blur5 - FilterScript" and "blur5 - NDK" are both variants of "blur5").
+    private static final Pattern TASK_PATTERN = Pattern.compile("^(\\w+)");
+
+    private final String name;
+    private final LinkedHashMap<String, TagStatistics> tags = new LinkedHashMap<>();
+
+    long sampleCount = 0;
+    long skippedLines = 0;
+    long droppedCount = 0;
+
+    public CaptureStatistics(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void onSample(String tag, long nanos) {
+        TagStatistics tagStatistics = tags.get(tag);
+        if (tagStatistics == null) {
+            tagStatistics = new TagStatistics(tag);
+            tags.put(tag, tagStatistics);
+        }
+        tagStatistics.add(nanos);
+        sampleCount++;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Collection<TagStatistics> getTags() {
+        return tags.values();
+    }
+
+    public TagStatistics getTag(String tag) {
+        return tags.get(tag);
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    static String getTaskName(String tag) {
+        Matcher matcher = TASK_PATTERN.matcher(tag);
+        return matcher.find() ? matcher.group(1) : tag;
+    }
+
+    // Ranks the variants of each task (only tasks with at least two variants) by their median,
+    // fastest first
+    public List<TaskRanking> getRankings() {
+        LinkedHashMap<String, TaskRanking> rankings = new LinkedHashMap<>();
+
+        for (TagStatistics tagStatistics : tags.values()) {
+            String task = getTaskName(tagStatistics.getTag());
+            TaskRanking ranking = rankings.get(task);
+            if (ranking == null) {
+                ranking = new TaskRanking(task);
+                rankings.put(task, ranking);
+            }
+            ranking.variants.add(tagStatistics);
+        }
+
+        List<TaskRanking> result = new ArrayList<>();
+        for (TaskRanking ranking : rankings.values()) {
+            if (ranking.variants.size() < 2)
+                continue;
+
+            Collections.sort(ranking.variants, new Comparator<TagStatistics>() {
+                @Override
+                public int compare(TagStatistics lhs, TagStatistics rhs) {
+                    return Long.compare(lhs.getMedian(), rhs.getMedian());
+                }
+            });
+            result.add(ranking);
+        }
+        return result;
+    }
+
+    public static class TaskRanking {
+        private final String task;
+        private final List<TagStatistics> variants = new ArrayList<>();
+
+        TaskRanking(String task) {
+            this.task = task;
+        }
+
+        public String getTask() {
+            return task;
+        }
+
+        // Variants, fastest first
+        public List<TagStatistics> getVariants() {
+            return variants;
+        }
+
+        // Median of the variant divided by the median of the fastest one
+        public double getRelativeMedian(TagStatistics variant) {
+            long fastestMedian = variants.get(0).getMedian();
+            return fastestMedian == 0 ? 0 : (double) variant.getMedian() / fastestMedian;
+        }
+
+        // True if the median confidence intervals of the variant and of the fastest one
+        // do not overlap
+        public boolean isSignificantlySlower(TagStatistics variant) {
+            if (variant == variants.get(0))
+                return false;
+            return variant.getMedianConfidenceInterval()[0] > variants.get(0).getMedianConfidenceInterval()[1];
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line analyzer for RSProfilerData captures.
+ * <p>
+ * Usage: ProfilerAnalyzer [--json output.json] [--merge] inputs...
+ * <p>
+ * Inputs can be CSV or binary capture files, or folders containing them. Every file is
+ * analyzed on its own (so devices and builds can be compared side by side), unless --merge is
+ * given. Files are streamed, so their size is not limited by the available memory.
+ * A text table is printed to the standard output; JSON is written to the given file
+ * ("-" for the standard output, in place of the table).
+ */
+public class ProfilerAnalyzer {
+
+    private static final String CAPTURE_PREFIX = "RSProfilerData_";
+
+    public static void main(String[] args) throws IOException {
+        String jsonOutput = null;
+        boolean merge = false;
+        List<File> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--json") && i + 1 < args.length) {
+                jsonOutput = args[++i];
+            } else if (args[i].equals("--merge")) {
+                merge = true;
+            } else if (args[i].startsWith("--")) {
+                printUsageAndExit();
+            } else {
+                addInput(new File(args[i]), inputs);
+            }
+        }
+
+        if (inputs.isEmpty())
+            printUsageAndExit();
+
+        List<CaptureStatistics> captures = analyze(inputs, merge);
+        AnalysisReport report = new AnalysisReport(captures);
+
+        if (jsonOutput != null) {
+            boolean toStandardOutput = jsonOutput.equals("-");
+            Writer writer = toStandardOutput ?
+                    new PrintWriter(System.out) :
+                    new OutputStreamWriter(new FileOutputStream(jsonOutput), "UTF-8");
+            try {
+                report.writeJson(writer);
+            } finally {
+                if (toStandardOutput)
+                    writer.flush();
+                else
+                    writer.close();
+            }
+
+            if (toStandardOutput)
+                return;
+        }
+
+        PrintWriter writer = new PrintWriter(System.out);
+        report.writeText(writer);
+        writer.flush();
+    }
+
+    public static List<CaptureStatistics> analyze(List<File> inputs, boolean merge) throws IOException {
+        List<CaptureStatistics> captures = new ArrayList<>();
+        CaptureStatistics merged = merge ? new CaptureStatistics("merged") : null;
+        if (merged != null)
+            captures.add(merged);
+
+        for (File input : inputs) {
+            CaptureStatistics capture = merged != null ? merged : new CaptureStatistics(getCaptureName(input));
+            CaptureReader reader = new CaptureReader();
+            reader.read(input, capture);
+
+            capture.skippedLines += reader.getSkippedLines();
+            capture.droppedCount += reader.getDroppedCount();
+
+            if (merged == null)
+                captures.add(capture);
+        }
+
+        return captures;
+    }
+
+    // RSProfilerData_Nexus5_23.csv -> Nexus5_23
+    static String getCaptureName(File file) {
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension > 0)
+            name = name.substring(0, extension);
+        if (name.startsWith(CAPTURE_PREFIX) && name.length() > CAPTURE_PREFIX.length())
+            name = name.substring(CAPTURE_PREFIX.length());
+        return name;
+    }
+
+    private static void addInput(File file, List<File> inputs) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null)
+                return;
+
+            Arrays.sort(children);
+            for (File child : children) {
+                String name = child.getName();
+                if (child.isDirectory() || name.endsWith(".csv") || name.endsWith(".bin"))
+                    addInput(child, inputs);
+            }
+        } else {
+            inputs.add(file);
+        }
+    }
+
+    private static void printUsageAndExit() {
+        System.err.println("Usage: ProfilerAnalyzer [--json output.json] [--merge] inputs...");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line regression gate between two RSProfilerData captures.
+ * <p>
+ * Usage: RegressionGate [--threshold percent] [--alpha level] [--min-samples count] baseline candidate
+ * <p>
+ * Every tag found in both captures is compared with a one-sided Mann-Whitney U test. A tag is
+ * a regression when the candidate is significantly slower (p below alpha, Bonferroni corrected
+ * over the compared tags) and its median is slower by more than the threshold. The process
+ * exits with 1 if any regression is found, so it can be used to gate builds, and with 2 on
+ * wrong arguments.
+ */
+public class RegressionGate {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_REGRESSION = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private double threshold = 0.05;
+    private double alpha = 0.01;
+    private long minSamples = 20;
+
+    private final List<TagComparison> comparisons = new ArrayList<>();
+    private final List<TagComparison> regressions = new ArrayList<>();
+    private final List<String> skippedTags = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        RegressionGate gate = new RegressionGate();
+        List<File> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--threshold") && i + 1 < args.length) {
+                    gate.setThreshold(Double.parseDouble(args[++i]) / 100.0);
+                } else if (args[i].equals("--alpha") && i + 1 < args.length) {
+                    gate.setAlpha(Double.parseDouble(args[++i]));
+                } else if (args[i].equals("--min-samples") && i + 1 < args.length) {
+                    gate.setMinSamples(Long.parseLong(args[++i]));
+                } else if (args[i].startsWith("--")) {
+                    printUsageAndExit();
+                } else {
+                    inputs.add(new File(args[i]));
+                }
+            }
+        } catch (NumberFormatException e) {
+            printUsageAndExit();
+        }
+
+        if (inputs.size() != 2)
+            printUsageAndExit();
+
+        List<CaptureStatistics> captures = ProfilerAnalyzer.analyze(inputs, false);
+        gate.compare(captures.get(0), captures.get(1));
+
+        PrintWriter writer = new PrintWriter(System.out);
+        gate.writeReport(writer);
+        writer.flush();
+
+        System.exit(gate.getRegressions().isEmpty() ? EXIT_OK : EXIT_REGRESSION);
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public void compare(CaptureStatistics baseline, CaptureStatistics candidate) {
+        comparisons.clear();
+        regressions.clear();
+        skippedTags.clear();
+
+        for (TagStatistics baselineTag : baseline.getTags()) {
+            TagStatistics candidateTag = candidate.getTag(baselineTag.getTag());
+            if (candidateTag == null || baselineTag.getCount() < minSamples || candidateTag.getCount() < minSamples) {
+                skippedTags.add(baselineTag.getTag());
+                continue;
+            }
+
+            comparisons.add(TagComparison.compare(baselineTag, candidateTag));
+        }
+
+        for (TagStatistics candidateTag : candidate.getTags()) {
+            if (baseline.getTag(candidateTag.getTag()) == null)
+                skippedTags.add(candidateTag.getTag());
+        }
+
+        double correctedAlpha = getCorrectedAlpha();
+        for (TagComparison comparison : comparisons) {
+            if (comparison.getPValue() < correctedAlpha && comparison.getMedianChange() > threshold)
+                regressions.add(comparison);
+        }
+    }
+
+    // Bonferroni correction: with tens of tags compared at every run, an uncorrected alpha
+    // would make the gate fail on noise alone
+    public double getCorrectedAlpha() {
+        return comparisons.isEmpty() ? alpha : alpha / comparisons.size();
+    }
+
+    public List<TagComparison> getComparisons() {
+        return comparisons;
+    }
+
+    public List<TagComparison> getRegressions() {
+        return regressions;
+    }
+
+    // Tags missing from one of the captures, or with too few samples
+    public List<String> getSkippedTags() {
+        return skippedTags;
+    }
+
+    public void writeReport(PrintWriter writer) {
+        int tagWidth = 3;
+        for (TagComparison comparison : comparisons) {
+            tagWidth = Math.max(tagWidth, comparison.getTag().length());
+        }
+
+        String rowFormat = "%-" + tagWidth + "s %11s %11s %8s %10s %6s%s\n";
+        writer.print(String.format(Locale.US, rowFormat,
+                "Tag", "base p50", "cand p50", "change", "p-value", "P(>)", ""));
+
+        for (TagComparison comparison : comparisons) {
+            writer.print(String.format(Locale.US, rowFormat,
+                    comparison.getTag(),
+                    String.format(Locale.US, "%.4f", comparison.getBaselineMedian() / 1000000.0),
+                    String.format(Locale.US, "%.4f", comparison.getCandidateMedian() / 1000000.0),
+                    String.format(Locale.US, "%+.1f%%", comparison.getMedianChange() * 100),
+                    String.format(Locale.US, "%.2e", comparison.getPValue()),
+                    String.format(Locale.US, "%.2f", comparison.getProbabilityOfSlower()),
+                    regressions.contains(comparison) ? "  REGRESSION" : ""));
+        }
+
+        for (String tag : skippedTags) {
+            writer.println("Skipped (missing or less than " + minSamples + " samples): " + tag);
+        }
+
+        writer.println(String.format(Locale.US,
+                "\n%d regressions over %d tags (threshold %.1f%%, alpha %.3g, corrected %.3g)",
+                regressions.size(), comparisons.size(), threshold * 100, alpha, getCorrectedAlpha()));
+    }
+
+    private static void printUsageAndExit() {
+        System.err.println("Usage: RegressionGate [--threshold percent] [--alpha level] [--min-samples count] baseline candidate");
+        System.exit(EXIT_USAGE);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import net.hydex11.rsprofiler.TimingHistogram;
+
+/**
+ * Comparison of the same tag between a baseline and a candidate capture, using the one-sided
+ * Mann-Whitney U test (is the candidate stochastically slower than the baseline?).
+ * <p>
+ * The test works on ranks, so it does not assume normally distributed timings and is not
+ * thrown off by the long right tail that GPU / driver scheduling adds to every kernel.
+ * Ranks are computed directly from the two histograms: samples falling in the same bucket
+ * (less than 1% apart) are considered ties.
+ */
+public class TagComparison {
+
+    private final String tag;
+    private final long baselineCount;
+    private final long candidateCount;
+    private final long baselineMedian;
+    private final long candidateMedian;
+    private final double u;
+    private final double z;
+    private final double pValue;
+
+    private TagComparison(String tag, long baselineCount, long candidateCount,
+                          long baselineMedian, long candidateMedian,
+                          double u, double z, double pValue) {
+        this.tag = tag;
+        this.baselineCount = baselineCount;
+        this.candidateCount = candidateCount;
+        this.baselineMedian = baselineMedian;
+        this.candidateMedian = candidateMedian;
+        this.u = u;
+        this.z = z;
+        this.pValue = pValue;
+    }
+
+    public static TagComparison compare(TagStatistics baseline, TagStatistics candidate) {
+        TimingHistogram baselineHistogram = baseline.getHistogram();
+        TimingHistogram candidateHistogram = candidate.getHistogram();
+
+        long n1 = baselineHistogram.getTotalCount();
+        long n2 = candidateHistogram.getTotalCount();
+
+        // U = number of (baseline, candidate) pairs where the candidate is slower, ties count half
+        double u = 0;
+        double tieCorrection = 0;
+        long baselineBelow = 0;
+
+        for (int i = 0; i < TimingHistogram.COUNTS_LENGTH; i++) {
+            long a = baselineHistogram.getCountAtIndex(i);
+            long b = candidateHistogram.getCountAtIndex(i);
+            if (a == 0 && b == 0)
+                continue;
+
+            u += b * (baselineBelow + 0.5 * a);
+            baselineBelow += a;
+
+            double ties = a + b;
+            tieCorrection += ties * ties * ties - ties;
+        }
+
+        double z = 0;
+        double pValue = 1;
+
+        long n = n1 + n2;
+        if (n1 > 0 && n2 > 0 && n > 1) {
+            double mean = n1 * (double) n2 / 2;
+            double variance = n1 * (double) n2 / 12 * ((n + 1) - tieCorrection / (n * (double) (n - 1)));
+
+            if (variance > 0) {
+                // Continuity correction towards the mean
+                double difference = u - mean;
+                difference = difference > 0 ? Math.max(0, difference - 0.5) : Math.min(0, difference + 0.5);
+
+                z = difference / Math.sqrt(variance);
+                pValue = 1 - normalCdf(z);
+            }
+        }
+
+        return new TagComparison(baseline.getTag(), n1, n2, baseline.getMedian(), candidate.getMedian(), u, z, pValue);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getBaselineCount() {
+        return baselineCount;
+    }
+
+    public long getCandidateCount() {
+        return candidateCount;
+    }
+
+    public long getBaselineMedian() {
+        return baselineMedian;
+    }
+
+    public long getCandidateMedian() {
+        return candidateMedian;
+    }
+
+    // Relative change of the median: 0.05 means the candidate is 5% slower
+    public double getMedianChange() {
+        return baselineMedian == 0 ? 0 : (double) candidateMedian / baselineMedian - 1;
+    }
+
+    public double getU() {
+        return u;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    // One-sided p-value of the candidate being slower than the baseline
+    public double getPValue() {
+        return pValue;
+    }
+
+    // Probability that a random candidate sample is slower than a random baseline one
+    // (0.5 = no difference)
+    public double getProbabilityOfSlower() {
+        double pairs = baselineCount * (double) candidateCount;
+        return pairs == 0 ? 0.5 : u / pairs;
+    }
+
+    // Standard normal cumulative distribution function, through the Abramowitz and Stegun
+    // 7.1.26 erf approximation (absolute error below 1.5e-7)
+    static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741
+                + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+}
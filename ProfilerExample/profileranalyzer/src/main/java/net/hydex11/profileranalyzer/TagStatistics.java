@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import net.hydex11.rsprofiler.TimingHistogram;
+
+/**
+ * Streaming statistics of a single tag: every sample goes into a fixed-memory histogram, and
+ * percentiles, confidence intervals and outliers are derived from it.
+ */
+public class TagStatistics {
+
+    // 95% two-sided normal quantile
+    static final double Z_95 = 1.959964;
+
+    // Tukey's fences multiplier, used to count outliers
+    static final double OUTLIER_IQR_MULTIPLIER = 1.5;
+
+    private final String tag;
+    private final TimingHistogram histogram = new TimingHistogram();
+
+    public TagStatistics(String tag) {
+        this.tag = tag;
+    }
+
+    public void add(long nanos) {
+        histogram.recordValue(nanos);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    TimingHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public double getMean() {
+        return histogram.getMean();
+    }
+
+    public double getHarmonicMean() {
+        return histogram.getHarmonicMean();
+    }
+
+    public double getStdDeviation() {
+        return histogram.getStdDeviation();
+    }
+
+    public long getMin() {
+        return histogram.getMinValue();
+    }
+
+    public long getMax() {
+        return histogram.getMaxValue();
+    }
+
+    public long getPercentile(double percentile) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    public long getMedian() {
+        return histogram.getValueAtPercentile(50);
+    }
+
+    // 95% confidence interval of the mean, based on the normal approximation
+    public double[] getMeanConfidenceInterval() {
+        long count = getCount();
+        if (count < 2)
+            return new double[]{getMean(), getMean()};
+
+        double halfWidth = Z_95 * getStdDeviation() / Math.sqrt(count);
+        return new double[]{getMean() - halfWidth, getMean() + halfWidth};
+    }
+
+    // Distribution-free 95% confidence interval of the median: the samples whose ranks are
+    // n/2 -+ z * sqrt(n) / 2 (binomial approximation of the order statistics)
+    public long[] getMedianConfidenceInterval() {
+        long count = getCount();
+        if (count == 0)
+            return new long[]{0, 0};
+
+        double halfWidth = Z_95 * Math.sqrt(count) / 2;
+        long lowerRank = Math.max(1, (long) Math.floor(count / 2.0 - halfWidth));
+        long upperRank = Math.min(count, (long) Math.ceil(count / 2.0 + halfWidth) + 1);
+
+        return new long[]{histogram.getValueAtRank(lowerRank), histogram.getValueAtRank(upperRank)};
+    }
+
+    // Number of samples outside Tukey's fences (Q1 - 1.5 IQR, Q3 + 1.5 IQR)
+    public long getOutlierCount() {
+        if (getCount() == 0)
+            return 0;
+
+        long q1 = histogram.getValueAtPercentile(25);
+        long q3 = histogram.getValueAtPercentile(75);
+        double iqr = q3 - q1;
+
+        long lowerFence = (long) Math.floor(q1 - OUTLIER_IQR_MULTIPLIER * iqr);
+        long upperFence = (long) Math.ceil(q3 + OUTLIER_IQR_MULTIPLIER * iqr);
+
+        return histogram.countValuesBelow(lowerFence) + histogram.countValuesAbove(upperFence);
+    }
+}
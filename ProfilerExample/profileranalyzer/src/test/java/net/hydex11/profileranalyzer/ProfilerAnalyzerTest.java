@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProfilerAnalyzerTest {
+
+    @Test
+    public void csvReadingSkipsRepeatedHeaders() throws Exception {
+        // Captures from multiple runs are appended to the same file, header included
+        String csv = "Tag,Timing\nblur5 - NDK,2.0\nblur5 - NDK,4.0\n\nTag,Timing\nblur5 - NDK,3.0\nbroken line\n";
+
+        CaptureStatistics capture = new CaptureStatistics("test");
+        CaptureReader reader = new CaptureReader();
+        reader.readCsv(new StringReader(csv), capture);
+
+        assertEquals(3, capture.getSampleCount());
+        assertEquals(1, reader.getSkippedLines());
+
+        TagStatistics tag = capture.getTag("blur5 - NDK");
+        assertEquals(3, tag.getCount());
+        assertEquals(3000000.0, tag.getMean(), 1);
+    }
+
+    @Test
+    public void confidenceIntervalsContainTheEstimates() {
+        TagStatistics tag = new TagStatistics("tag");
+        for (int i = 1; i <= 1000; i++) {
+            tag.add(i * 1000L);
+        }
+
+        double[] meanCI = tag.getMeanConfidenceInterval();
+        assertTrue(meanCI[0] < tag.getMean() && tag.getMean() < meanCI[1]);
+
+        long[] medianCI = tag.getMedianConfidenceInterval();
+        assertTrue(medianCI[0] <= tag.getMedian() && tag.getMedian() <= medianCI[1]);
+        assertTrue(medianCI[1] - medianCI[0] < 100000);
+
+        assertEquals(0, tag.getOutlierCount());
+        tag.add(100000000L);
+        assertEquals(1, tag.getOutlierCount());
+    }
+
+    @Test
+    public void variantsAreRankedByMedian() throws Exception {
+        CaptureStatistics capture = new CaptureStatistics("test");
+        for (int i = 0; i < 200; i++) {
+            capture.onSample("blur5 - FilterScript", 3000000 + i * 100);
+            capture.onSample("blur5 - NDK", 1000000 + i * 100);
+            capture.onSample("blur5 - Intrinsic", 1000000 + i * 101);
+            capture.onSample("gray - simple kernel", 500000);
+        }
+
+        List<CaptureStatistics.TaskRanking> rankings = capture.getRankings();
+        // Single-variant tasks are not ranked
+        assertEquals(1, rankings.size());
+
+        CaptureStatistics.TaskRanking ranking = rankings.get(0);
+        assertEquals("blur5", ranking.getTask());
+
+        List<TagStatistics> variants = ranking.getVariants();
+        assertEquals("blur5 - NDK", variants.get(0).getTag());
+        assertEquals("blur5 - FilterScript", variants.get(2).getTag());
+        assertFalse(ranking.isSignificantlySlower(variants.get(1)));
+        assertTrue(ranking.isSignificantlySlower(variants.get(2)));
+        assertEquals(3.0, ranking.getRelativeMedian(variants.get(2)), 0.1);
+
+        StringWriter json = new StringWriter();
+        new AnalysisReport(Collections.singletonList(capture)).writeJson(json);
+        assertTrue(json.toString().contains("\"task\": \"blur5\""));
+        assertTrue(json.toString().contains("\"significantlySlower\": true"));
+    }
+}
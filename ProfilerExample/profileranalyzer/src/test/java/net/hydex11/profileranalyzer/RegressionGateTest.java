@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.profileranalyzer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RegressionGateTest {
+
+    // Kernel-like timings: ~10ms, with noise and a long right tail
+    private static CaptureStatistics capture(String name, double scale, long seed) {
+        Random random = new Random(seed);
+        CaptureStatistics capture = new CaptureStatistics(name);
+        for (int i = 0; i < 250; i++) {
+            double value = 10000000 * (1 + 0.03 * random.nextGaussian());
+            if (random.nextInt(10) == 0)
+                value *= 1 + random.nextDouble();
+
+            capture.onSample("RGBAtoGRAY - pointers - rsGet", (long) (value * scale));
+            capture.onSample("blur3 - NDK", (long) (value * 2));
+        }
+        return capture;
+    }
+
+    @Test
+    public void detectsSmallSlowdown() {
+        RegressionGate gate = new RegressionGate();
+        gate.compare(capture("baseline", 1, 1), capture("candidate", 1.07, 2));
+
+        assertEquals(2, gate.getComparisons().size());
+        assertEquals(1, gate.getRegressions().size());
+
+        TagComparison regression = gate.getRegressions().get(0);
+        assertEquals("RGBAtoGRAY - pointers - rsGet", regression.getTag());
+        assertEquals(0.07, regression.getMedianChange(), 0.02);
+        assertTrue(regression.getProbabilityOfSlower() > 0.8);
+    }
+
+    @Test
+    public void ignoresNoiseSpeedupsAndChangesBelowThreshold() {
+        RegressionGate gate = new RegressionGate();
+
+        gate.compare(capture("baseline", 1, 1), capture("candidate", 1, 2));
+        assertTrue(gate.getRegressions().isEmpty());
+
+        gate.compare(capture("baseline", 1, 1), capture("candidate", 0.9, 2));
+        assertTrue(gate.getRegressions().isEmpty());
+        assertTrue(gate.getComparisons().get(0).getPValue() > 0.99);
+
+        // Significant, but smaller than the threshold
+        gate.setThreshold(0.1);
+        gate.compare(capture("baseline", 1, 1), capture("candidate", 1.07, 2));
+        assertTrue(gate.getRegressions().isEmpty());
+        assertTrue(gate.getComparisons().get(0).getPValue() < gate.getCorrectedAlpha());
+    }
+
+    @Test
+    public void skipsMissingTags() {
+        CaptureStatistics candidate = capture("candidate", 1, 2);
+        candidate.onSample("new tag", 1000);
+
+        RegressionGate gate = new RegressionGate();
+        gate.compare(capture("baseline", 1, 1), candidate);
+        assertEquals(2, gate.getComparisons().size());
+        assertEquals(1, gate.getSkippedTags().size());
+        assertEquals("new tag", gate.getSkippedTags().get(0));
+    }
+
+    @Test
+    public void normalCdf() {
+        assertEquals(0.5, TagComparison.normalCdf(0), 1e-6);
+        assertEquals(0.975, TagComparison.normalCdf(1.959964), 1e-5);
+        assertEquals(0.025, TagComparison.normalCdf(-1.959964), 1e-5);
+    }
+}
@@ -30,6 +30,7 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
+import net.hydex11.rsprofiler.LogView;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MessageHandlerExample";
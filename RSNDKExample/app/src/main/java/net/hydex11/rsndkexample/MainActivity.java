@@ -29,6 +29,7 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
+import net.hydex11.rsprofiler.LogView;
 
 /*
  * ----- IMPORTANT NOTICE!! -----
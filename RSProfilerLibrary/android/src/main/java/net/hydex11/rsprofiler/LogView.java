@@ -0,0 +1,376 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.hydex11.rsprofiler;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * LogView is a scrolling view where chosen LogCat data is displayed.
+ * <p>
+ * Only the last MAX_LINES lines are kept (see LineRing), and only the ones on screen get drawn,
+ * so that long runs do not slow down the UI. New lines, from any thread, invalidate the view
+ * at most once per frame.
+ */
+public class LogView extends View {
+    private static final String TAG = "LogView";
+    // Lines remembered to skip the ones LogCat sends again when the reader gets restarted
+    private static final int DEDUPLICATION_CAPACITY = 4096;
+    private static final int MAX_LINES = 2000;
+    private static final float TEXT_SIZE_SP = 10;
+
+    private final int mPID;
+
+    final LineRing logLines = new LineRing(MAX_LINES);
+    final UpdateCoalescer invalidateCoalescer = new UpdateCoalescer();
+    private LineRing.Window visibleLines = new LineRing.Window(0);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float lineHeight;
+    private final float charWidth;
+
+    // Scrolling, in wrapped rows. 0 follows the newest lines.
+    private int rowsFromBottom = 0;
+    private long drawnLineCount = 0;
+    private float lastTouchY;
+    private float touchScrollRemainder;
+
+    LogLineFilter logFilter;
+    final LogcatLineParser logcatLineParser = new LogcatLineParser();
+    final LineDeduplicator recentLines = new LineDeduplicator(DEDUPLICATION_CAPACITY);
+
+    Thread loggingThread;
+    volatile Process logCatProcess;
+
+    // Records published in-process (e.g. by Timings) are read from the LogBus, on the UI
+    // thread, instead of going through LogCat
+    private static final long LOG_BUS_POLL_INTERVAL_MS = 100;
+    private static final int LOG_BUS_POLL_BATCH = 256;
+    final LogBus logBus = LogBus.getDefault();
+    final LogBus.Subscription logBusSubscription = logBus.subscribe();
+    final ForwardedLines forwardedLines = LogcatForwarder.getForwardedLines();
+    boolean isPollingLogBus = false;
+
+    private final LogBus.RecordListener logBusListener = new LogBus.RecordListener() {
+        @Override
+        public void onRecord(long timestampNanos, String tag, String message) {
+            if (logFilter.accepts('I', tag, message)) {
+                threadedAddLogLine("I/" + tag + ": " + message);
+            }
+        }
+    };
+
+    private final Runnable pollLogBus = new Runnable() {
+        @Override
+        public void run() {
+            while (logBusSubscription.poll(logBusListener, LOG_BUS_POLL_BATCH) == LOG_BUS_POLL_BATCH) {
+                // More records waiting
+            }
+            postDelayed(this, LOG_BUS_POLL_INTERVAL_MS);
+        }
+    };
+
+    static boolean firstRun = true;
+
+    public LogView(Context context) {
+        // No filtering
+        this(context, (String[]) null, 5);
+    }
+
+    public LogView(Context context, String filter, int logCheckIntervalSeconds) {
+        this(context, new String[]{filter}, logCheckIntervalSeconds);
+    }
+
+    // LogCat output is streamed, so logCheckIntervalSeconds is not used anymore. Kept for
+    // compatibility.
+    public LogView(Context context, String[] filters, int logCheckIntervalSeconds) {
+        super(context);
+
+        this.mPID = android.os.Process.myPid();
+
+        Log.d(TAG, "Instantiated new LogView");
+
+        // If is first run in entire program execution, cleans LogCat output, so that
+        // we do not get previous executions lines.
+        try {
+            if (firstRun) {
+                Process logCatCleanProcess = null;
+                logCatCleanProcess = Runtime.getRuntime().exec("logcat -c");
+                logCatCleanProcess.waitFor();
+                firstRun = false;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Only log rows that contains this filter are shown.
+        // For this example, simple filtering is applied (only single-line rows are counted)
+        // Filters are compiled once, and matched all together in a single pass over the line.
+        logFilter = new LogLineFilter(filters);
+
+        // Console like look. Monospace font, so that wrapping only depends on line length.
+        setBackgroundColor(Color.BLACK);
+        setPadding(5, 5, 5, 5);
+
+        textPaint.setColor(Color.GREEN);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP,
+                getResources().getDisplayMetrics()));
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        lineHeight = textPaint.getFontSpacing();
+        charWidth = textPaint.measureText("M");
+
+        initLoggingThread();
+        startPollingLogBus();
+    }
+
+    private void startPollingLogBus() {
+        if (!isPollingLogBus) {
+            isPollingLogBus = true;
+            post(pollLogBus);
+        }
+    }
+
+    // Logging thread runs separately from UI as it will read LogCat output. A single LogCat
+    // process is kept running, and its lines are parsed as soon as they arrive.
+    private void initLoggingThread() {
+        loggingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    streamLogs();
+                } catch (IOException e) {
+                    // Also happens when destroy kills the LogCat process
+                    if (!Thread.currentThread().isInterrupted())
+                        Log.e(TAG, "Could not read LogCat output", e);
+                }
+                Log.d(TAG, "Closing LogCat check thread");
+            }
+        });
+        loggingThread.start();
+    }
+
+    public void onResume() {
+        // Resets log checking
+        if (loggingThread == null || !loggingThread.isAlive()) {
+            initLoggingThread();
+        }
+        startPollingLogBus();
+    }
+
+    public void onPause() {
+        // Disables log checking
+        destroy();
+    }
+
+    private void streamLogs() throws IOException {
+
+        // Label of the app using the library (its resources are not visible from here)
+        String appId = getContext().getApplicationInfo().loadLabel(getContext().getPackageManager()).toString();
+
+        // Info from: http://stackoverflow.com/questions/19897628/need-to-handle-uncaught-exception-and-send-log-file
+
+        // For Android 4.0 and earlier, you will get all app's log output, so filter it to
+        // mostly limit it to your app's output. In later versions, the filtering isn't needed.
+        // Without -d flag, the process dumps the current buffer and then waits for new lines.
+
+        String cmd = (Build.VERSION.SDK_INT <= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) ?
+                "logcat -v brief " + appId + ":v dalvikvm:v System.err:v *:s" :
+                "logcat -v brief";
+
+        Process process = Runtime.getRuntime().exec(cmd);
+        logCatProcess = process;
+
+        // Reads output, line per line, until the process gets destroyed
+        BufferedReader bufferedReader = new BufferedReader(
+                new InputStreamReader(process.getInputStream()));
+        try {
+            String line;
+            while (!Thread.currentThread().isInterrupted() && (line = bufferedReader.readLine()) != null) {
+                evaluateLogLine(line);
+            }
+        } finally {
+            bufferedReader.close();
+            process.destroy();
+        }
+    }
+
+    // Called by the logging thread and by addFilteredLogLine, which share parser and
+    // deduplicator
+    private synchronized void evaluateLogLine(String logLine) {
+        // W/art     (11096): Suspending all threads took: 5.780ms
+        // I/Timeline(11096): Timeline: Activity_idle id: android.os.BinderProxy@273fb0d2 time:364339488
+        // Invalid or empty log line
+        if (!logcatLineParser.parse(logLine)) {
+            return;
+        }
+
+        // Check if message belongs to current process (and not previous)
+        if (logcatLineParser.getPid() != mPID) {
+            return;
+        }
+
+        // Filtering works on the parsed offsets: lines not shown are not copied
+        if (!logFilter.accepts(logcatLineParser)) {
+            return;
+        }
+
+        // Line already parsed
+        if (!recentLines.add(logLine)) {
+            return;
+        }
+
+        // Copy of a LogBus record, forwarded to LogCat: already shown. Checked after the
+        // deduplication, so that a forwarded line read twice is skipped the second time too.
+        if (forwardedLines.consume(logcatLineParser.getTag(), logcatLineParser.getMessage())) {
+            return;
+        }
+
+        // Get actual message
+        threadedAddLogLine(logcatLineParser.getPriority() + "/" + logcatLineParser.getTag() + ": "
+                + logcatLineParser.getMessage());
+    }
+
+    // Can be called from any thread: the line is stored, and the view redrawn on next frame
+    private void threadedAddLogLine(String logLine) {
+        logLines.add(logLine);
+        if (invalidateCoalescer.request()) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        invalidateCoalescer.onUpdate();
+
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        int columns = Math.max(1, (int) (width / charWidth));
+        int rows = Math.max(1, (int) Math.ceil(height / lineHeight));
+
+        if (visibleLines.lines.length < rows) {
+            visibleLines = new LineRing.Window(rows);
+        }
+
+        // If scrolled up, keeps showing the same lines while new ones arrive
+        long lineCount = logLines.getAddedCount();
+        if (rowsFromBottom > 0 && lineCount > drawnLineCount) {
+            rowsFromBottom += logLines.getNewestRowCount((int) Math.min(lineCount - drawnLineCount, MAX_LINES), columns);
+        }
+        drawnLineCount = lineCount;
+
+        logLines.getWindow(columns, rows, rowsFromBottom, visibleLines);
+        rowsFromBottom = visibleLines.rowsFromBottom;
+
+        // Wrapped rows, starting above the top if the first line is partially visible
+        float x = getPaddingLeft();
+        float y = getPaddingTop() - visibleLines.skippedRows * lineHeight - textPaint.ascent();
+        canvas.save();
+        canvas.clipRect(getPaddingLeft(), getPaddingTop(), getWidth() - getPaddingRight(), getHeight() - getPaddingBottom());
+        for (int i = 0; i < visibleLines.count; i++) {
+            String line = visibleLines.lines[i];
+            int start = 0;
+            do {
+                int end = Math.min(line.length(), start + columns);
+                canvas.drawText(line, start, end, x, y, textPaint);
+                y += lineHeight;
+                start = end;
+            } while (start < line.length());
+        }
+        canvas.restore();
+    }
+
+    // Drag to scroll back, drag down to the bottom to follow new lines again
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                lastTouchY = event.getY();
+                touchScrollRemainder = 0;
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                touchScrollRemainder += event.getY() - lastTouchY;
+                lastTouchY = event.getY();
+
+                int scrolledRows = (int) (touchScrollRemainder / lineHeight);
+                if (scrolledRows != 0) {
+                    touchScrollRemainder -= scrolledRows * lineHeight;
+                    rowsFromBottom = Math.max(0, rowsFromBottom + scrolledRows);
+                    invalidate();
+                }
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    // Public because we can use it even from other places
+    public void addFilteredLogLine(String line) {
+        evaluateLogLine(line);
+    }
+
+    // Public because we can use it even from other places. Multiple lines are split.
+    public void addLogLine(String line) {
+        int start = 0;
+        while (start < line.length()) {
+            int end = line.indexOf('\n', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            threadedAddLogLine(line.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    public void destroy() {
+        if (loggingThread != null) {
+            loggingThread.interrupt();
+            loggingThread = null;
+        }
+
+        // Unblocks the logging thread, waiting for new LogCat lines
+        Process process = logCatProcess;
+        if (process != null) {
+            process.destroy();
+            logCatProcess = null;
+        }
+
+        removeCallbacks(pollLogBus);
+        isPollingLogBus = false;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import android.util.Log;
+
+/**
+ * Copies the records of the default LogBus to LogCat, from a background thread, so that
+ * producers never pay for LogCat writes. Used by Timings, to keep results visible with adb.
+ */
+public class LogcatForwarder {
+
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final int POLL_BATCH = 256;
+    private static final int FORWARDED_LINES_CAPACITY = 1024;
+
+    private static final ForwardedLines forwardedLines = new ForwardedLines(FORWARDED_LINES_CAPACITY);
+    private static Thread forwardingThread;
+
+    // Lines written to LogCat, that LogView has not read back yet
+    public static ForwardedLines getForwardedLines() {
+        return forwardedLines;
+    }
+
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && forwardingThread == null) {
+            final LogBus.Subscription subscription = LogBus.getDefault().subscribe();
+            final LogBus.RecordListener logcatListener = new LogBus.RecordListener() {
+                @Override
+                public void onRecord(long timestampNanos, String tag, String message) {
+                    forwardedLines.add(tag, message);
+                    Log.i(tag, message);
+                }
+            };
+
+            forwardingThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            if (subscription.poll(logcatListener, POLL_BATCH) < POLL_BATCH)
+                                Thread.sleep(POLL_INTERVAL_MS);
+                        }
+                    } catch (InterruptedException e) {
+                        // Disabled
+                    }
+                }
+            }, "LogcatForwarder");
+            forwardingThread.setDaemon(true);
+            forwardingThread.start();
+        } else if (!enabled && forwardingThread != null) {
+            forwardingThread.interrupt();
+            forwardingThread = null;
+        }
+    }
+
+    public static synchronized boolean isEnabled() {
+        return forwardingThread != null;
+    }
+}
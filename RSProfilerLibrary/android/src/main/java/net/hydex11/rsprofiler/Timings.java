@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.hydex11.rsprofiler;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.support.v4.app.ActivityCompat;
+import android.support.v4.content.ContextCompat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Created by Alberto on 02/01/2016.
+ * <p>
+ * Android side of the profiler: output goes to the default LogBus (shown by LogView, and
+ * forwarded to LogCat), stats and traces are saved to the external storage and sent to an
+ * intent. Measuring is done by Profiler.
+ */
+public class Timings extends Profiler {
+
+    private Context context;
+
+    private File statsCsvFile;
+
+    // Constructor
+    public Timings(Context context) {
+        super(LogBus.getDefault());
+        this.context = context;
+        setLogcatForwarding(true);
+    }
+
+    // Results are published in-process, on the default LogBus. If forwarding is enabled (the
+    // default), a background thread also writes them to LogCat.
+    public void setLogcatForwarding(boolean enabled) {
+        LogcatForwarder.setEnabled(enabled);
+    }
+
+    public void enableSaveStats(boolean enable) throws IOException {
+        // If save is enabled, stats are written to disk in background, and converted
+        // to CSV on request. Then, the CSV file gets sent to an intent.
+        if (enable && !isSavingStats()) {
+            // Check for permissions
+            // https://stackoverflow.com/a/37854281
+            if (context instanceof Activity && ContextCompat.checkSelfPermission(context,
+                    Manifest.permission.WRITE_EXTERNAL_STORAGE)
+                    != PackageManager.PERMISSION_GRANTED) {
+
+                if (ActivityCompat.shouldShowRequestPermissionRationale((Activity) context,
+                        Manifest.permission.WRITE_EXTERNAL_STORAGE)) {
+                    // Ok, already have permissions
+                } else {
+                    ActivityCompat.requestPermissions((Activity) context,
+                            new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE}, 23
+                    );
+                }
+            }
+
+            statsCsvFile = new File(getProfilerDir(), "RSProfilerData_" + getPhoneDataString() + ".csv");
+            startSavingStats(new File(getProfilerDir(), "RSProfilerData_" + getPhoneDataString() + ".bin"));
+        } else if (!enable) {
+            stopSavingStats();
+        }
+    }
+
+    // Creates a custom folder inside the external dir
+    private static File getProfilerDir() {
+        File rsProfilerDir = new File(Environment.getExternalStorageDirectory() + File.separator + "RSProfiler");
+        rsProfilerDir.mkdirs();
+        return rsProfilerDir;
+    }
+
+    private static String getPhoneDataString() {
+        return String.format("%s_%d", Build.MODEL.replaceAll("\\s", ""), Build.VERSION.SDK_INT);
+    }
+
+    // Writes recorded spans as Chrome trace-event JSON, and returns the written file
+    public File saveTrace() throws IOException {
+        SpanTracer tracer = getTracer();
+        if (tracer == null)
+            return null;
+
+        File traceFile = new File(getProfilerDir(), "RSProfilerTrace_" + getPhoneDataString() + ".json");
+        Writer writer = new BufferedWriter(new FileWriter(traceFile));
+        try {
+            writeTrace(writer, context.getPackageName());
+        } finally {
+            writer.close();
+        }
+
+        logSink.log(TAG, String.format("Saved %d spans (%d dropped) to %s",
+                tracer.getSpanCount(), tracer.getDroppedCount(), traceFile));
+        return traceFile;
+    }
+
+    // Function that gets called when there is the need to send the CSV file to
+    // an intent
+    public void sendStats() throws IOException {
+        // Samples still buffered by other threads go to the stats too
+        drainConcurrentSamples();
+
+        if (getTracer() != null)
+            saveTrace();
+
+        File statsBinaryFile = stopSavingStats();
+        if (statsBinaryFile != null) {
+            // Converts binary data to the usual CSV layout
+            BinaryStatsConverter converter = new BinaryStatsConverter();
+            converter.convert(statsBinaryFile, statsCsvFile);
+            logSink.log(TAG, String.format("Saved %d samples (%d dropped)",
+                    converter.getSampleCount(), converter.getDroppedCount()));
+
+            Intent sendIntent = new Intent(Intent.ACTION_SEND);
+            sendIntent.putExtra(Intent.EXTRA_SUBJECT, "RenderScript Profiler data");
+            sendIntent.putExtra(Intent.EXTRA_STREAM, Uri.fromFile(statsCsvFile));
+            sendIntent.setType("text/html");
+            context.startActivity(sendIntent);
+        }
+    }
+
+    // When the stats save limit is reached, stats are sent and the application exits
+    @Override
+    protected void onStatsSaveCountLimitReached() throws IOException {
+        sendStats();
+
+        if (endCallback != null)
+            endCallback.run();
+
+        if (context instanceof Activity)
+            ((Activity) context).finishAffinity();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of the profiler recording paths, the ones that end up inside the measured
+ * intervals. Compares recording through a formatted string tag (the original
+ * Timings.addTiming(String, Object...) path) with recording through a pre-registered handle.
+ * <p>
+ * Run it with: gradlew :rsprofiler-core:jmh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProfilerBenchmark {
+
+    private static final int[] RADIUSES = new int[]{1, 3, 5};
+    private static final int RING_CAPACITY = 4096;
+
+    private TimingRecorder recorder;
+    private int[] handles;
+    private TimingHistogram histogram;
+    private TimingRingBuffer ringBuffer;
+    private int[] polledTagIds;
+    private long[] polledValues;
+    private long[] polledSequences;
+    private ConcurrentTimingRecorder concurrentRecorder;
+    private ConcurrentTimingRecorder.SampleListener drainListener;
+
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        recorder = new TimingRecorder();
+        handles = new int[RADIUSES.length];
+        for (int r = 0; r < RADIUSES.length; r++) {
+            handles[r] = recorder.register(String.format("blur%d - pointers - rsGet", RADIUSES[r]));
+        }
+
+        histogram = new TimingHistogram();
+
+        ringBuffer = new TimingRingBuffer(RING_CAPACITY);
+        polledTagIds = new int[RING_CAPACITY];
+        polledValues = new long[RING_CAPACITY];
+        polledSequences = new long[RING_CAPACITY];
+
+        concurrentRecorder = new ConcurrentTimingRecorder(RING_CAPACITY);
+        drainListener = new ConcurrentTimingRecorder.SampleListener() {
+            @Override
+            public void onSample(int timingHandle, long elapsedNanos) {
+            }
+        };
+        concurrentRecorder.startInterval();
+    }
+
+    // What addTiming("blur%d - pointers - rsGet", radius) did before: format and lookup
+    @Benchmark
+    public int recordStringTag() {
+        i++;
+        String tag = String.format("blur%d - pointers - rsGet", RADIUSES[i % RADIUSES.length]);
+        int handle = recorder.register(tag);
+        recorder.record(handle, i & 0xffff);
+        return handle;
+    }
+
+    @Benchmark
+    public int recordHandle() {
+        i++;
+        int handle = handles[i % handles.length];
+        recorder.record(handle, i & 0xffff);
+        return handle;
+    }
+
+    @Benchmark
+    public long recordHistogram() {
+        i++;
+        histogram.recordValue(i & 0xffff);
+        return histogram.getTotalCount();
+    }
+
+    // Producer side of the stats sink ring. Emptied when full, as the writer thread would do.
+    @Benchmark
+    public boolean offerRingBuffer() {
+        i++;
+        if (!ringBuffer.offer(i % handles.length, i & 0xffff))
+            ringBuffer.poll(polledTagIds, polledValues, polledSequences, ringBuffer.getWriteIndex());
+        return true;
+    }
+
+    // Timing from a thread in concurrent mode: thread-local lookup plus ring offer
+    @Benchmark
+    public long recordConcurrent() {
+        i++;
+        if ((i & (RING_CAPACITY - 1)) == 0)
+            concurrentRecorder.drain(drainListener);
+        return concurrentRecorder.record(handles[i % handles.length], i);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * Converts a binary stats file, written by BinaryStatsSink, to the CSV layout that Timings
+ * has always produced ("Tag,Timing" header, one line per sample, timing in milliseconds).
+ * <p>
+ * Can be used from the command line: BinaryStatsConverter input.bin output.csv
+ */
+public class BinaryStatsConverter {
+
+    private long sampleCount = 0;
+    private long droppedCount = 0;
+    private long sequenceGaps = 0;
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    // Samples dropped by the sink, as written in the file
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Samples missing between the written sequence numbers. Samples dropped after the
+    // last written one are only counted in getDroppedCount.
+    public long getSequenceGaps() {
+        return sequenceGaps;
+    }
+
+    public void convert(File binaryFile, File csvFile) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(binaryFile), 64 * 1024);
+        try {
+            Writer writer = new BufferedWriter(new FileWriter(csvFile), 64 * 1024);
+            try {
+                convert(inputStream, writer);
+            } finally {
+                writer.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public void convert(InputStream binaryStream, final Writer csvWriter) throws IOException {
+        csvWriter.write("Tag,Timing\n");
+
+        BinaryStatsReader reader = new BinaryStatsReader();
+        reader.read(binaryStream, new BinaryStatsReader.SampleListener() {
+            private long expectedSequence = 0;
+
+            @Override
+            public void onSample(String tag, long nanos, long sequence) throws IOException {
+                csvWriter.write(tag + "," + (nanos / 1000000.0) + "\n");
+
+                sequenceGaps += sequence - expectedSequence;
+                expectedSequence = sequence + 1;
+            }
+        });
+
+        sampleCount += reader.getSampleCount();
+        droppedCount = reader.getDroppedCount();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BinaryStatsConverter input.bin output.csv");
+            System.exit(1);
+        }
+
+        BinaryStatsConverter converter = new BinaryStatsConverter();
+        converter.convert(new File(args[0]), new File(args[1]));
+        System.out.println(String.format("Converted %d samples (%d dropped)",
+                converter.getSampleCount(), converter.getDroppedCount()));
+    }
+}
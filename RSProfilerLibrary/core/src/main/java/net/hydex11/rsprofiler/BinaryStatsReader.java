@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+/**
+ * Streams the samples of a binary stats file, written by BinaryStatsSink, to a listener.
+ * Used by BinaryStatsConverter and by the desktop analyzer.
+ */
+public class BinaryStatsReader {
+
+    public interface SampleListener {
+        void onSample(String tag, long nanos, long sequence) throws IOException;
+    }
+
+    private long sampleCount = 0;
+    private long droppedCount = 0;
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    // Samples dropped by the sink, as written in the file
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Checks the first four bytes of a file, to tell binary stats files from CSV ones
+    public static boolean isBinaryStatsHeader(byte[] header, int length) {
+        return length >= 4 && ((header[0] & 0xff) << 24 | (header[1] & 0xff) << 16
+                | (header[2] & 0xff) << 8 | (header[3] & 0xff)) == BinaryStatsSink.MAGIC;
+    }
+
+    public void read(InputStream inputStream, SampleListener listener) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+
+        if (input.readInt() != BinaryStatsSink.MAGIC)
+            throw new IOException("Not a binary stats file");
+        short version = input.readShort();
+        if (version != BinaryStatsSink.VERSION)
+            throw new IOException("Unsupported binary stats version " + version);
+
+        HashMap<Integer, String> tags = new HashMap<>();
+
+        while (true) {
+            int recordType = input.read();
+            if (recordType < 0)
+                break;
+
+            try {
+                switch (recordType) {
+                    case BinaryStatsSink.RECORD_TAG: {
+                        int tagId = input.readInt();
+                        byte[] tagBytes = new byte[input.readUnsignedShort()];
+                        input.readFully(tagBytes);
+                        tags.put(tagId, new String(tagBytes, "UTF-8"));
+                        break;
+                    }
+                    case BinaryStatsSink.RECORD_SAMPLES: {
+                        int count = input.readInt();
+                        for (int i = 0; i < count; i++) {
+                            int tagId = input.readInt();
+                            long nanos = input.readLong();
+                            long sequence = input.readLong();
+
+                            String tag = tags.get(tagId);
+                            if (tag == null)
+                                throw new IOException("Sample for undefined tag " + tagId);
+
+                            listener.onSample(tag, nanos, sequence);
+                            sampleCount++;
+                        }
+                        break;
+                    }
+                    case BinaryStatsSink.RECORD_DROPPED:
+                        droppedCount = input.readLong();
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + recordType);
+                }
+            } catch (EOFException e) {
+                // A truncated last record happens if the app has been killed while writing
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Asynchronous binary sink for timing samples.
+ * <p>
+ * The measuring thread only puts fixed-size records into a TimingRingBuffer. A background thread
+ * periodically drains it and writes the records to a compact binary file through a FileChannel,
+ * so disk stalls never end up inside a measured interval. If the writer cannot keep up,
+ * records are dropped and counted instead of blocking the measuring thread.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * header:  int MAGIC, short VERSION
+ * records: byte RECORD_TAG, int tagId, short length, UTF-8 tag
+ *          byte RECORD_SAMPLES, int count, count * (int tagId, long nanoseconds, long sequence)
+ *          byte RECORD_DROPPED, long droppedCount (written on close)
+ * </pre>
+ * BinaryStatsConverter turns such a file back into the CSV layout used by Timings.
+ */
+public class BinaryStatsSink {
+
+    static final int MAGIC = 0x52535042; // "RSPB"
+    static final short VERSION = 1;
+
+    static final byte RECORD_TAG = 1;
+    static final byte RECORD_SAMPLES = 2;
+    static final byte RECORD_DROPPED = 3;
+
+    static final int SAMPLE_SIZE = 4 + 8 + 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BATCH_SIZE = 1024;
+
+    private final TimingRingBuffer ringBuffer;
+    private final long flushIntervalMillis;
+
+    // Tag definitions are rare (once per tag), so a concurrent queue is good enough here
+    private final ConcurrentLinkedQueue<TagDefinition> pendingTags = new ConcurrentLinkedQueue<>();
+
+    // Writer thread only fields
+    private final FileOutputStream outputStream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final int[] batchTagIds = new int[BATCH_SIZE];
+    private final long[] batchValues = new long[BATCH_SIZE];
+    private final long[] batchSequences = new long[BATCH_SIZE];
+    private int blockCountPosition = -1;
+    private int blockCount = 0;
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // Wakes the writer thread on close. Interrupting it instead could close the channel
+    // in the middle of a write (ClosedByInterruptException).
+    private final Object wakeLock = new Object();
+    private volatile IOException writeException;
+
+    public BinaryStatsSink(File file, int ringCapacity, long flushIntervalMillis) throws IOException {
+        this.ringBuffer = new TimingRingBuffer(ringCapacity);
+        this.flushIntervalMillis = flushIntervalMillis;
+
+        outputStream = new FileOutputStream(file);
+        channel = outputStream.getChannel();
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        flushBuffer();
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        }, "BinaryStatsSink");
+        writerThread.start();
+    }
+
+    // Defines the name of a tag. Must be called before recording samples for it.
+    public void defineTag(int tagId, String tag) {
+        pendingTags.add(new TagDefinition(tagId, tag));
+    }
+
+    // Called from the measuring thread. Never blocks: returns false if the sample was dropped.
+    public boolean record(int tagId, long nanos) {
+        return ringBuffer.offer(tagId, nanos);
+    }
+
+    public long getDroppedCount() {
+        return ringBuffer.getDroppedCount();
+    }
+
+    // Stops the writer thread, after it has written all pending records, and closes the file
+    public void close() throws IOException {
+        synchronized (wakeLock) {
+            running = false;
+            wakeLock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing stats sink", e);
+        }
+
+        if (writeException != null)
+            throw writeException;
+    }
+
+    // Writer thread
+
+    private void writerLoop() {
+        try {
+            while (running) {
+                writePending();
+                synchronized (wakeLock) {
+                    if (running) {
+                        try {
+                            wakeLock.wait(flushIntervalMillis);
+                        } catch (InterruptedException e) {
+                            // Nobody else owns this thread, so just write the last records and stop
+                            running = false;
+                        }
+                    }
+                }
+            }
+
+            writePending();
+
+            buffer.put(RECORD_DROPPED);
+            buffer.putLong(ringBuffer.getDroppedCount());
+            flushBuffer();
+            channel.force(false);
+        } catch (IOException e) {
+            writeException = e;
+        } finally {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                if (writeException == null)
+                    writeException = e;
+            }
+        }
+    }
+
+    private void writePending() throws IOException {
+        // The write index is read before tag definitions, so that every drained sample
+        // has its tag already defined
+        long writeIndex = ringBuffer.getWriteIndex();
+
+        TagDefinition tagDefinition;
+        while ((tagDefinition = pendingTags.poll()) != null) {
+            writeTag(tagDefinition.tagId, tagDefinition.tag);
+        }
+
+        int count;
+        while ((count = ringBuffer.poll(batchTagIds, batchValues, batchSequences, writeIndex)) > 0) {
+            for (int i = 0; i < count; i++) {
+                writeSample(batchTagIds[i], batchValues[i], batchSequences[i]);
+            }
+        }
+
+        finishSamplesBlock();
+        flushBuffer();
+    }
+
+    private void writeTag(int tagId, String tag) throws IOException {
+        byte[] tagBytes = tag.getBytes(UTF8);
+
+        finishSamplesBlock();
+        ensureRemaining(1 + 4 + 2 + tagBytes.length);
+        buffer.put(RECORD_TAG);
+        buffer.putInt(tagId);
+        buffer.putShort((short) tagBytes.length);
+        buffer.put(tagBytes);
+    }
+
+    private void writeSample(int tagId, long nanos, long sequence) throws IOException {
+        if (blockCountPosition < 0 || buffer.remaining() < SAMPLE_SIZE) {
+            // Starts a new samples block
+            finishSamplesBlock();
+            ensureRemaining(1 + 4 + SAMPLE_SIZE);
+            buffer.put(RECORD_SAMPLES);
+            blockCountPosition = buffer.position();
+            buffer.putInt(0);
+            blockCount = 0;
+        }
+
+        buffer.putInt(tagId);
+        buffer.putLong(nanos);
+        buffer.putLong(sequence);
+        blockCount++;
+    }
+
+    // Writes the real count of samples of the current block
+    private void finishSamplesBlock() {
+        if (blockCountPosition >= 0) {
+            buffer.putInt(blockCountPosition, blockCount);
+            blockCountPosition = -1;
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static class TagDefinition {
+        final int tagId;
+        final String tag;
+
+        TagDefinition(int tagId, String tag) {
+            this.tagId = tagId;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records timings from any number of threads at the same time (camera callback, RenderScript
+ * submission, NDK worker threads...), without ever taking a lock on the recording path.
+ * <p>
+ * Every thread gets its own interval start and its own TimingRingBuffer, of which it is the only
+ * producer. Samples stay in the per-thread buffers until drain is called, at report time, by
+ * the single thread that owns the merged histograms. If a thread records more samples than its
+ * buffer holds between two drains, the exceeding ones are dropped and counted.
+ */
+public class ConcurrentTimingRecorder {
+
+    // Receives drained samples, on the draining thread
+    public interface SampleListener {
+        void onSample(int timingHandle, long elapsedNanos);
+    }
+
+    private final int bufferCapacity;
+    private final CopyOnWriteArrayList<ThreadBuffer> buffers = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<ThreadBuffer> threadBuffer = new ThreadLocal<ThreadBuffer>() {
+        @Override
+        protected ThreadBuffer initialValue() {
+            // Once per thread: the only allocation of the recording path
+            ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread(), bufferCapacity);
+            buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    // Draining thread only
+    private final int[] batchHandles = new int[256];
+    private final long[] batchValues = new long[256];
+    private final long[] batchSequences = new long[256];
+    private long droppedCount = 0;
+
+    public ConcurrentTimingRecorder(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    // Starts a new interval for the calling thread
+    public void startInterval() {
+        threadBuffer.get().lastTimestamp = System.nanoTime();
+    }
+
+    // Records the time elapsed from the calling thread's interval start to now, and returns it.
+    // The next interval has to be started with startInterval.
+    public long record(int timingHandle, long now) {
+        ThreadBuffer buffer = threadBuffer.get();
+        long elapsed = now - buffer.lastTimestamp;
+        buffer.ring.offer(timingHandle, elapsed);
+        return elapsed;
+    }
+
+    // Interval start of the calling thread
+    public long getIntervalStart() {
+        return threadBuffer.get().lastTimestamp;
+    }
+
+    // Hands all samples recorded so far to the listener, thread by thread (so samples of each
+    // thread keep their order). Must be called by one thread at a time. Returns the number
+    // of samples.
+    public long drain(SampleListener listener) {
+        long drained = 0;
+
+        for (ThreadBuffer buffer : buffers) {
+            // Checked before draining, so that the last samples of a finished thread are not lost
+            boolean threadAlive = buffer.thread.get() != null && buffer.thread.get().isAlive();
+
+            long writeIndex = buffer.ring.getWriteIndex();
+            int count;
+            while ((count = buffer.ring.poll(batchHandles, batchValues, batchSequences, writeIndex)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    listener.onSample(batchHandles[i], batchValues[i]);
+                }
+                drained += count;
+            }
+
+            if (!threadAlive) {
+                droppedCount += buffer.ring.getDroppedCount();
+                buffers.remove(buffer);
+            }
+        }
+
+        return drained;
+    }
+
+    // Number of threads with a buffer: every live thread that has recorded at least once, plus
+    // finished threads until the drain that takes their last samples
+    public int getThreadCount() {
+        return buffers.size();
+    }
+
+    // Draining thread only
+    public long getDroppedCount() {
+        long dropped = droppedCount;
+        for (ThreadBuffer buffer : buffers) {
+            dropped += buffer.ring.getDroppedCount();
+        }
+        return dropped;
+    }
+
+    private static class ThreadBuffer {
+        final WeakReference<Thread> thread;
+        final TimingRingBuffer ring;
+
+        // Only accessed by the owner thread
+        long lastTimestamp;
+
+        ThreadBuffer(Thread thread, int capacity) {
+            this.thread = new WeakReference<>(thread);
+            this.ring = new TimingRingBuffer(capacity);
+            this.lastTimestamp = System.nanoTime();
+        }
+    }
+}
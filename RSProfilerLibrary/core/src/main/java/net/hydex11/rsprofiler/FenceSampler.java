@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * Decides, frame by frame, where an overlap-aware profiler waits for the GPU / RenderScript
+ * queue (a fence, e.g. mRS.finish()), so that the pipeline runs asynchronously, as it does in
+ * production, and only a sample of frames pays the cost of being measured:
+ * <ul>
+ * <li>PIPELINED frames are never fenced: they give the real frame period (throughput) and
+ * the CPU time needed to submit a frame.</li>
+ * <li>STAGE_FENCED frames (one every sampleInterval) fence after each stage, giving
+ * per-stage attribution, as in the isolated mode.</li>
+ * <li>LATENCY_FENCED frames (one every sampleInterval, halfway between stage fenced ones)
+ * fence only at their end, giving the end-to-end latency of a frame submitted behind
+ * still running work.</li>
+ * </ul>
+ * The period of a frame is only measured between two consecutive pipelined frames, so that
+ * fences never leak into throughput numbers.
+ */
+public class FenceSampler {
+
+    public static final int PIPELINED = 0;
+    public static final int STAGE_FENCED = 1;
+    public static final int LATENCY_FENCED = 2;
+
+    private final int sampleInterval;
+
+    private long frameCount = 0;
+    private int frameType = PIPELINED;
+    private long frameStart;
+
+    private long previousFrameEnd;
+    private boolean previousFramePipelined = false;
+
+    // Results of the last ended frame, -1 when not available
+    private long submissionTime = -1;
+    private long latency = -1;
+    private long period = -1;
+
+    public FenceSampler(int sampleInterval) {
+        if (sampleInterval < 2)
+            throw new IllegalArgumentException("Sample interval must be at least 2");
+        this.sampleInterval = sampleInterval;
+    }
+
+    // Starts a new frame and returns its type
+    public int beginFrame(long now) {
+        long position = frameCount++ % sampleInterval;
+        if (position == 0)
+            frameType = STAGE_FENCED;
+        else if (position == sampleInterval / 2)
+            frameType = LATENCY_FENCED;
+        else
+            frameType = PIPELINED;
+
+        frameStart = now;
+        return frameType;
+    }
+
+    public int getFrameType() {
+        return frameType;
+    }
+
+    // True if stages of the current frame have to be fenced
+    public boolean isStageFenced() {
+        return frameType == STAGE_FENCED;
+    }
+
+    // True if the end of the current frame has to be fenced
+    public boolean isEndFenced() {
+        return frameType == LATENCY_FENCED;
+    }
+
+    // Ends the current frame. For latency fenced frames, now has to be taken after the fence.
+    public void endFrame(long now) {
+        boolean pipelined = frameType == PIPELINED;
+
+        submissionTime = pipelined ? now - frameStart : -1;
+        latency = frameType == LATENCY_FENCED ? now - frameStart : -1;
+        period = pipelined && previousFramePipelined ? now - previousFrameEnd : -1;
+
+        previousFrameEnd = now;
+        previousFramePipelined = pipelined;
+    }
+
+    // CPU time spent submitting the last frame (pipelined frames only)
+    public long getSubmissionTime() {
+        return submissionTime;
+    }
+
+    // Time from the start of the last frame to the completion of all its work (latency fenced
+    // frames only)
+    public long getLatency() {
+        return latency;
+    }
+
+    // Time between the end of the previous frame and the end of the last one (two consecutive
+    // pipelined frames only)
+    public long getPeriod() {
+        return period;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Lines copied to LogCat by LogcatForwarder, still to be read back by LogView. Each forwarded
+ * line is consumed by the first LogCat line with the same tag and message, so that LogView
+ * skips only the copies of bus records, and not other lines logged with the same tag.
+ * <p>
+ * Memory is bounded: past capacity, the oldest lines are forgotten (e.g. if LogView is not
+ * reading LogCat at all). Thread safe.
+ */
+public class ForwardedLines {
+
+    private final int capacity;
+    private final ArrayDeque<String> order;
+    // Number of pending copies of each line
+    private final HashMap<String, Integer> pendingCounts = new HashMap<>();
+
+    public ForwardedLines(int capacity) {
+        this.capacity = capacity;
+        order = new ArrayDeque<>(capacity);
+    }
+
+    // Registers a message about to be logged. LogCat shows every line of a multiline message
+    // as a separate entry, so lines are registered one by one.
+    public synchronized void add(String tag, String message) {
+        int lineBegin = 0;
+        while (true) {
+            int lineEnd = message.indexOf('\n', lineBegin);
+            if (lineEnd < 0) {
+                addLine(key(tag, message.substring(lineBegin)));
+                return;
+            }
+            addLine(key(tag, message.substring(lineBegin, lineEnd)));
+            lineBegin = lineEnd + 1;
+        }
+    }
+
+    // Returns true, and forgets one copy of it, if the line has been forwarded
+    public synchronized boolean consume(String tag, String line) {
+        if (order.isEmpty())
+            return false;
+
+        String key = key(tag, line);
+        if (!decrement(key))
+            return false;
+
+        // LogCat keeps the forwarding order, so this is almost always the first line
+        order.removeFirstOccurrence(key);
+        return true;
+    }
+
+    public synchronized int size() {
+        return order.size();
+    }
+
+    private void addLine(String key) {
+        if (order.size() == capacity)
+            decrement(order.pollFirst());
+
+        order.addLast(key);
+        Integer count = pendingCounts.get(key);
+        pendingCounts.put(key, count == null ? 1 : count + 1);
+    }
+
+    private boolean decrement(String key) {
+        Integer count = pendingCounts.get(key);
+        if (count == null)
+            return false;
+
+        if (count == 1)
+            pendingCounts.remove(key);
+        else
+            pendingCounts.put(key, count - 1);
+        return true;
+    }
+
+    private static String key(String tag, String line) {
+        return tag + ": " + line;
+    }
+}
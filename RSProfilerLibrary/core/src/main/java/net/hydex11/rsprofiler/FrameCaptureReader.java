@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped access to a capture written by FrameCaptureWriter. Frames are mapped in
+ * segments of whole records, so captures bigger than 2 GB can be read too.
+ */
+public class FrameCaptureReader {
+
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final int width;
+    private final int height;
+    private final int frameSize;
+    private final int recordSize;
+    private final int frameCount;
+
+    private final int framesPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    public FrameCaptureReader(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(FrameCaptureWriter.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0)
+                    throw new IOException("Truncated frame capture header");
+            }
+            header.flip();
+
+            if (header.getInt() != FrameCaptureWriter.MAGIC)
+                throw new IOException("Not a frame capture file");
+            short version = header.getShort();
+            if (version != FrameCaptureWriter.VERSION)
+                throw new IOException("Unsupported frame capture version " + version);
+            header.getShort();
+
+            width = header.getInt();
+            height = header.getInt();
+            frameSize = header.getInt();
+            if (width <= 0 || height <= 0 || frameSize != FrameCaptureWriter.getNV21FrameSize(width, height))
+                throw new IOException("Invalid frame capture header");
+
+            recordSize = FrameCaptureWriter.TIMESTAMP_SIZE + frameSize;
+
+            // A partially written last record is ignored
+            long framesLength = channel.size() - FrameCaptureWriter.HEADER_SIZE;
+            long frames = framesLength / recordSize;
+            if (frames > Integer.MAX_VALUE)
+                throw new IOException("Too many frames in capture");
+            frameCount = (int) frames;
+
+            framesPerSegment = Math.max(1, MAX_SEGMENT_SIZE / recordSize);
+            int segmentCount = (frameCount + framesPerSegment - 1) / framesPerSegment;
+            segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                int segmentFrames = Math.min(framesPerSegment, frameCount - i * framesPerSegment);
+                long position = FrameCaptureWriter.HEADER_SIZE + (long) i * framesPerSegment * recordSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) segmentFrames * recordSize);
+            }
+        } finally {
+            // Mappings stay valid after the channel is closed
+            randomAccessFile.close();
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTimestamp(int index) {
+        ByteBuffer segment = segments[checkIndex(index) / framesPerSegment];
+        return segment.getLong((index % framesPerSegment) * recordSize);
+    }
+
+    // Copies the NV21 data of a frame into destination, which must hold at least getFrameSize() bytes
+    public void readFrame(int index, byte[] destination) {
+        getFrame(index).get(destination, 0, frameSize);
+    }
+
+    // Read only view of the NV21 data of a frame, without copies
+    public ByteBuffer getFrame(int index) {
+        ByteBuffer segment = segments[checkIndex(index) / framesPerSegment].duplicate();
+        int position = (index % framesPerSegment) * recordSize + FrameCaptureWriter.TIMESTAMP_SIZE;
+        segment.limit(position + frameSize);
+        segment.position(position);
+        return segment.slice();
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= frameCount)
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+        return index;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records raw NV21 camera frames, so that the same frame sequence can be replayed later
+ * (FrameCaptureReader, FrameReplayer), on a device or on a JVM with reference kernels.
+ * <p>
+ * File layout (big endian), with fixed size records so that frames can be memory mapped:
+ * <pre>
+ * header:  int MAGIC, short VERSION, short 0, int width, int height, int frameSize
+ * records: long timestampNanos, frameSize bytes of NV21 data
+ * </pre>
+ * The frame count is given by the file length, so a capture is usable even if it was not closed.
+ */
+public class FrameCaptureWriter {
+
+    static final int MAGIC = 0x52534643; // "RSFC"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 4;
+    static final int TIMESTAMP_SIZE = 8;
+
+    private final int width;
+    private final int height;
+    private final int frameSize;
+
+    private final FileOutputStream outputStream;
+    private final FileChannel channel;
+    private final ByteBuffer timestampBuffer = ByteBuffer.allocate(TIMESTAMP_SIZE);
+    private int frameCount = 0;
+
+    public FrameCaptureWriter(File file, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid frame size " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        frameSize = getNV21FrameSize(width, height);
+
+        outputStream = new FileOutputStream(file);
+        channel = outputStream.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) 0);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(frameSize);
+        header.flip();
+        writeFully(header);
+    }
+
+    // Bytes of an NV21 frame: full size Y plane and half size interleaved VU plane
+    public static int getNV21FrameSize(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    // Appends a frame. frame must hold at least getFrameSize() bytes.
+    public void write(byte[] frame, long timestampNanos) throws IOException {
+        if (frame.length < frameSize)
+            throw new IllegalArgumentException("Frame has " + frame.length + " bytes, expected " + frameSize);
+
+        timestampBuffer.clear();
+        timestampBuffer.putLong(timestampNanos);
+        timestampBuffer.flip();
+        writeFully(timestampBuffer);
+        writeFully(ByteBuffer.wrap(frame, 0, frameSize));
+        frameCount++;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+        outputStream.close();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
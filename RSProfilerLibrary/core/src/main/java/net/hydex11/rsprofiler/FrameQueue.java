@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded hand-off queue between the camera thread, which offers preview buffers, and a
+ * compute thread, which takes them. When the compute thread falls behind, frames are dropped
+ * according to the chosen {@link Policy} and handed back to the {@link Recycler}, so that the
+ * camera never runs out of buffers.
+ */
+public class FrameQueue<T> {
+
+    public enum Policy {
+        // Every new frame replaces all the pending ones: lowest latency
+        LATEST_WINS,
+        // Pending frames are kept up to the capacity, then the oldest one is dropped: highest throughput
+        DROP_OLDEST
+    }
+
+    // Gets back the frames that have been dropped or processed (e.g. Camera.addCallbackBuffer)
+    public interface Recycler<T> {
+        void recycle(T frame);
+    }
+
+    private final Policy policy;
+    private final int capacity;
+    private final Recycler<T> recycler;
+    private final ArrayDeque<T> pending;
+    private boolean closed = false;
+
+    // Counters
+    private long queuedCount = 0;
+    private long droppedCount = 0;
+    private long processedCount = 0;
+
+    public FrameQueue(Policy policy, int capacity, Recycler<T> recycler) {
+        if (policy == null)
+            throw new IllegalArgumentException("Policy cannot be null");
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        if (recycler == null)
+            throw new IllegalArgumentException("Recycler cannot be null");
+
+        this.policy = policy;
+        this.capacity = capacity;
+        this.recycler = recycler;
+        pending = new ArrayDeque<T>(capacity);
+    }
+
+    // Called by the producer. Returns false if the queue has been closed, in which case
+    // the frame is recycled immediately.
+    public boolean offer(T frame) {
+        T dropped = null;
+
+        synchronized (this) {
+            if (closed) {
+                dropped = frame;
+            } else {
+                // With LATEST_WINS every offer replaces the pending frames, so there is never
+                // more than one of them
+                if ((policy == Policy.LATEST_WINS && !pending.isEmpty()) || pending.size() == capacity) {
+                    dropped = pending.pollFirst();
+                    droppedCount++;
+                }
+
+                pending.addLast(frame);
+                queuedCount++;
+                notifyAll();
+            }
+        }
+
+        // Buffers are given back outside of the lock, as the recycler may block
+        if (dropped != null)
+            recycler.recycle(dropped);
+
+        return dropped != frame;
+    }
+
+    // Called by the consumer. Waits for the next frame, returning null once the queue is closed.
+    public T take() throws InterruptedException {
+        synchronized (this) {
+            while (pending.isEmpty() && !closed)
+                wait();
+            return pending.pollFirst();
+        }
+    }
+
+    // Non blocking version of take. Returns null if there is no pending frame.
+    public synchronized T poll() {
+        return pending.pollFirst();
+    }
+
+    // Called by the consumer once a taken frame is not needed anymore
+    public void done(T frame) {
+        synchronized (this) {
+            processedCount++;
+        }
+        recycler.recycle(frame);
+    }
+
+    // Wakes up the consumer and recycles every pending frame. Further offers are rejected.
+    public void close() {
+        ArrayDeque<T> remaining;
+        synchronized (this) {
+            closed = true;
+            remaining = new ArrayDeque<T>(pending);
+            pending.clear();
+            notifyAll();
+        }
+
+        for (T f : remaining)
+            recycler.recycle(f);
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    // Frames accepted by offer
+    public synchronized long getQueuedCount() {
+        return queuedCount;
+    }
+
+    // Frames replaced by newer ones before reaching the consumer
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Frames given back through done
+    public synchronized long getProcessedCount() {
+        return processedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s queue: %d queued, %d dropped, %d processed, %d pending",
+                policy, queuedCount, droppedCount, processedCount, pending.size());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * Feeds the frames of a capture, always in the same order, to a frame consumer (a camera
+ * pipeline, or its Java reference kernels), either as fast as possible or at a fixed rate,
+ * and measures how long each frame takes.
+ * <p>
+ * At a fixed rate, frames are never skipped: a frame that could not start on time is counted
+ * as late and processed right away.
+ */
+public class FrameReplayer {
+
+    // Rate to use to replay frames as fast as possible
+    public static final double MAX_RATE = 0;
+
+    public interface FrameConsumer {
+        void onFrame(byte[] frame, int index, long timestampNanos) throws Exception;
+    }
+
+    private final FrameCaptureReader reader;
+    private final byte[] frame;
+
+    // Results of the last replay
+    private final TimingHistogram processingTimes = new TimingHistogram();
+    private long processedCount = 0;
+    private long lateCount = 0;
+    private long elapsedTime = 0;
+
+    public FrameReplayer(FrameCaptureReader reader) {
+        this.reader = reader;
+        frame = new byte[reader.getFrameSize()];
+    }
+
+    // Replays the capture loops times. rate is in frames per second, or MAX_RATE.
+    public void replay(FrameConsumer consumer, double rate, int loops) throws Exception {
+        if (rate < 0)
+            throw new IllegalArgumentException("Rate cannot be negative");
+
+        processingTimes.reset();
+        processedCount = 0;
+        lateCount = 0;
+
+        long framePeriod = rate == MAX_RATE ? 0 : Math.round(1e9 / rate);
+        int frameCount = reader.getFrameCount();
+
+        long start = System.nanoTime();
+        for (int loop = 0; loop < loops; loop++) {
+            for (int i = 0; i < frameCount; i++) {
+                // Frames are copied, as consumers may write into their input, and the copy is not measured
+                reader.readFrame(i, frame);
+
+                if (framePeriod > 0) {
+                    long scheduled = start + processedCount * framePeriod;
+                    long wait = scheduled - System.nanoTime();
+                    if (wait > 0)
+                        sleepNanos(wait);
+                    else if (processedCount > 0)
+                        lateCount++;
+                }
+
+                long frameStart = System.nanoTime();
+                consumer.onFrame(frame, i, reader.getTimestamp(i));
+                processingTimes.recordValue(System.nanoTime() - frameStart);
+                processedCount++;
+            }
+        }
+        elapsedTime = System.nanoTime() - start;
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+    }
+
+    // Time spent in the consumer for each frame, in nanoseconds
+    public TimingHistogram getProcessingTimes() {
+        return processingTimes;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    // Frames that started after their scheduled time (fixed rate only)
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    // Processed frames per second, including the time spent waiting at a fixed rate
+    public double getThroughput() {
+        return elapsedTime == 0 ? 0 : processedCount * 1e9 / elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames in %.1f ms (%.1f fps), %d late, processing mean %.3f ms, p99 %.3f ms",
+                processedCount, elapsedTime / 1e6, getThroughput(), lateCount,
+                processingTimes.getMean() / 1e6, processingTimes.getValueAtPercentile(99) / 1e6);
+    }
+}
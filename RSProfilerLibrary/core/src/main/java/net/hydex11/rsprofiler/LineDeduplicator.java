@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the hashes of the last lines it has seen, to skip lines read twice (LogView reads
+ * the whole LogCat buffer again every time its reader is restarted).
+ * <p>
+ * Memory is bounded: hashes are kept in two generations of fixed-size open addressing tables.
+ * When the current one is full, it becomes the previous one and the oldest generation is
+ * forgotten, so at least the last capacity lines are always remembered. Lines are compared
+ * by their 64 bit hash only.
+ */
+public class LineDeduplicator {
+
+    // Marks an empty slot. A line whose hash is 0 gets hash 1 instead.
+    private static final long EMPTY = 0;
+
+    private final int capacity;
+    private long[] current;
+    private long[] previous;
+    private int currentCount = 0;
+
+    public LineDeduplicator(int capacity) {
+        this.capacity = capacity;
+
+        // Tables are kept at most half full
+        int tableLength = Integer.highestOneBit(Math.max(capacity, 1)) << 2;
+        current = new long[tableLength];
+        previous = new long[tableLength];
+    }
+
+    // Returns true if the line has not been seen recently, and remembers it
+    public boolean add(CharSequence line) {
+        long hash = hash(line);
+        if (contains(previous, hash) || contains(current, hash))
+            return false;
+
+        if (currentCount == capacity) {
+            long[] oldest = previous;
+            previous = current;
+            current = oldest;
+            Arrays.fill(current, EMPTY);
+            currentCount = 0;
+        }
+
+        insert(current, hash);
+        currentCount++;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(current, EMPTY);
+        Arrays.fill(previous, EMPTY);
+        currentCount = 0;
+    }
+
+    private static boolean contains(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = slot(hash, mask); ; i = (i + 1) & mask) {
+            if (table[i] == EMPTY)
+                return false;
+            if (table[i] == hash)
+                return true;
+        }
+    }
+
+    private static void insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        int i = slot(hash, mask);
+        while (table[i] != EMPTY)
+            i = (i + 1) & mask;
+        table[i] = hash;
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    // 64 bit FNV-1a over the UTF-16 chars of the line
+    static long hash(CharSequence line) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            hash ^= c & 0xff;
+            hash *= 0x100000001b3L;
+            hash ^= c >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+}
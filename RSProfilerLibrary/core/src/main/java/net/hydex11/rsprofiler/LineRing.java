@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * Fixed-capacity ring of text lines, the storage behind LogView. Once full, every new line
+ * replaces the oldest one, so memory does not grow with the run length.
+ * <p>
+ * Lines are wrapped at a given number of columns (LogView uses a monospace font), and
+ * getWindow only walks the lines that end up on screen, starting from the newest one.
+ * Methods are synchronized: lines are added by the reading threads and drawn by the UI thread.
+ */
+public class LineRing {
+
+    /**
+     * Lines to be drawn, oldest first. The first one can start above the top of the view.
+     */
+    public static class Window {
+        public final String[] lines;
+        public int count;
+        // Wrapped rows of lines[0] that are above the top of the view
+        public int skippedRows;
+        // Rows between the bottom of the view and the newest row, after clamping
+        public int rowsFromBottom;
+
+        public Window(int maxRows) {
+            lines = new String[maxRows];
+        }
+    }
+
+    private final String[] lines;
+    private int head = 0;
+    private int size = 0;
+    private long addedCount = 0;
+
+    public LineRing(int capacity) {
+        lines = new String[capacity];
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    public synchronized void add(String line) {
+        lines[head] = line;
+        head = (head + 1) % lines.length;
+        if (size < lines.length)
+            size++;
+        addedCount++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Lines added since the creation of the ring, including the ones already replaced
+    public synchronized long getAddedCount() {
+        return addedCount;
+    }
+
+    // Line at the given position, 0 being the oldest one still stored
+    public synchronized String get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        return lines[(head - size + index + lines.length) % lines.length];
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    // Rows taken by a line wrapped at the given columns. Empty lines take a row too.
+    public static int getRowCount(String line, int columns) {
+        return Math.max(1, (line.length() + columns - 1) / columns);
+    }
+
+    // Rows taken by the newest lineCount lines
+    public synchronized int getNewestRowCount(int lineCount, int columns) {
+        int rows = 0;
+        for (int i = 1; i <= Math.min(lineCount, size); i++) {
+            rows += getRowCount(lines[(head - i + lines.length) % lines.length], columns);
+        }
+        return rows;
+    }
+
+    // Fills the window with the lines covering the given rows, wrapped at columns, whose bottom
+    // is rowsFromBottom rows above the newest row. If there are not enough lines to go that
+    // far, the window is clamped to the oldest line.
+    public synchronized void getWindow(int columns, int rows, int rowsFromBottom, Window window) {
+        int clamped = fillWindow(columns, rows, rowsFromBottom, window);
+        if (clamped != rowsFromBottom)
+            fillWindow(columns, rows, clamped, window);
+    }
+
+    // Returns the rowsFromBottom the window would have to use to stay inside the stored lines
+    private int fillWindow(int columns, int rows, int rowsFromBottom, Window window) {
+        int maxCount = Math.min(rows, window.lines.length);
+        int top = rowsFromBottom + rows;
+        int count = 0;
+        int rowsBelow = 0;
+        int i = 1;
+
+        // From the newest line up, until the top of the view
+        while (i <= size && rowsBelow < top) {
+            String line = lines[(head - i + lines.length) % lines.length];
+            int lineRows = getRowCount(line, columns);
+            if (rowsBelow + lineRows > rowsFromBottom && count < maxCount) {
+                window.lines[count++] = line;
+                window.skippedRows = Math.max(0, rowsBelow + lineRows - top);
+            }
+            rowsBelow += lineRows;
+            i++;
+        }
+
+        // Oldest first
+        for (int j = 0; j < count / 2; j++) {
+            String swap = window.lines[j];
+            window.lines[j] = window.lines[count - 1 - j];
+            window.lines[count - 1 - j] = swap;
+        }
+        for (int j = count; j < window.lines.length; j++) {
+            window.lines[j] = null;
+        }
+        if (count == 0)
+            window.skippedRows = 0;
+        window.count = count;
+        window.rowsFromBottom = rowsFromBottom;
+
+        // Ran out of lines before the top of the view
+        if (rowsBelow < top)
+            return Math.max(0, rowsBelow - rows);
+        return rowsFromBottom;
+    }
+}
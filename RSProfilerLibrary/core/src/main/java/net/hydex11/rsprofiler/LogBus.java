@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-process publish/subscribe log bus. Producers (e.g. Profiler.debugTimings) append records
+ * to a fixed-size ring, and every subscriber reads them at its own pace, without any LogCat
+ * round trip (no process, no pipe, no regular expression).
+ * <p>
+ * Publishing never locks nor waits: a producer claims a sequence number and stores its record
+ * in the corresponding slot. If a subscriber is too slow, older records get overwritten, and
+ * the subscriber counts them as missed.
+ */
+public class LogBus implements LogSink {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final LogBus defaultBus = new LogBus(DEFAULT_CAPACITY);
+
+    // Bus used by Timings and LogView
+    public static LogBus getDefault() {
+        return defaultBus;
+    }
+
+    public interface RecordListener {
+        void onRecord(long timestampNanos, String tag, String message);
+    }
+
+    // Records are immutable: once a subscriber got one from the ring, it can read its fields
+    // while producers keep going
+    private static class Record {
+        final long sequence;
+        final long timestampNanos;
+        final String tag;
+        final String message;
+
+        Record(long sequence, long timestampNanos, String tag, String message) {
+            this.sequence = sequence;
+            this.timestampNanos = timestampNanos;
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+
+    private final int mask;
+    private final AtomicReferenceArray<Record> records;
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    public LogBus(int capacity) {
+        // Capacity is rounded up to a power of two
+        int length = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mask = length - 1;
+        records = new AtomicReferenceArray<>(length);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public void log(String tag, String message) {
+        publish(tag, message);
+    }
+
+    public void publish(String tag, String message) {
+        long sequence = writeSequence.getAndIncrement();
+        records.set((int) sequence & mask, new Record(sequence, System.nanoTime(), tag, message));
+    }
+
+    // Returns a subscription that starts from the oldest record still in the ring
+    public Subscription subscribe() {
+        return new Subscription(Math.max(0, writeSequence.get() - getCapacity()));
+    }
+
+    /**
+     * Read cursor of a single subscriber. Not thread safe: meant to be polled by one thread.
+     */
+    public class Subscription {
+        private long nextSequence;
+        private long missedCount = 0;
+
+        private Subscription(long nextSequence) {
+            this.nextSequence = nextSequence;
+        }
+
+        // Delivers up to maxRecords published records, in order. Returns the delivered count.
+        public int poll(RecordListener listener, int maxRecords) {
+            int delivered = 0;
+            while (delivered < maxRecords) {
+                Record record = records.get((int) nextSequence & mask);
+
+                if (record == null || record.sequence < nextSequence) {
+                    // Not published yet (or still being stored by its producer)
+                    break;
+                }
+
+                if (record.sequence > nextSequence) {
+                    // Lapped by producers: continues from the oldest record still in the ring.
+                    // The slot holds a newer record, so oldest is always past nextSequence.
+                    long oldest = writeSequence.get() - getCapacity();
+                    missedCount += oldest - nextSequence;
+                    nextSequence = oldest;
+                    continue;
+                }
+
+                listener.onRecord(record.timestampNanos, record.tag, record.message);
+                nextSequence++;
+                delivered++;
+            }
+            return delivered;
+        }
+
+        // Records published, but not delivered yet
+        public long getPendingCount() {
+            return Math.max(0, writeSequence.get() - nextSequence);
+        }
+
+        // Records overwritten before this subscriber could read them
+        public long getMissedCount() {
+            return missedCount;
+        }
+    }
+}
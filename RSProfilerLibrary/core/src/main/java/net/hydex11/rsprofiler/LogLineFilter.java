@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * LogView filters: a line is shown if its "P/Tag: message" text contains any of the filters.
+ * Filters are compiled once in a MultiPatternMatcher, and lines are matched piece by piece
+ * (priority, tag, message), so rejected lines do not allocate anything.
+ */
+public class LogLineFilter {
+
+    private static final String TAG_SEPARATOR = ": ";
+
+    // Null if there are no filters (every line is accepted)
+    private final MultiPatternMatcher matcher;
+
+    public LogLineFilter(String[] filters) {
+        matcher = filters == null ? null : new MultiPatternMatcher(filters);
+    }
+
+    public boolean isAcceptingAll() {
+        return matcher == null;
+    }
+
+    // Index of the filter found in the line, MultiPatternMatcher.NO_MATCH if none. Lines are
+    // always accepted, as filter 0, if there are no filters.
+    public int classify(char priority, CharSequence tag, CharSequence message) {
+        return classify(priority, tag, 0, tag.length(), message, 0, message.length());
+    }
+
+    // Line parsed by a LogcatLineParser
+    public int classify(LogcatLineParser parser) {
+        return classify(parser.getPriority(), parser.getLine(), parser.getTagBegin(), parser.getTagEnd(),
+                parser.getLine(), parser.getMessageBegin(), parser.getMessageEnd());
+    }
+
+    public boolean accepts(LogcatLineParser parser) {
+        return classify(parser) != MultiPatternMatcher.NO_MATCH;
+    }
+
+    public boolean accepts(char priority, CharSequence tag, CharSequence message) {
+        return classify(priority, tag, message) != MultiPatternMatcher.NO_MATCH;
+    }
+
+    private int classify(char priority, CharSequence tag, int tagBegin, int tagEnd,
+                         CharSequence message, int messageBegin, int messageEnd) {
+        if (matcher == null)
+            return 0;
+
+        int state = matcher.next(MultiPatternMatcher.START, priority);
+        state = matcher.next(state, '/');
+        state = matcher.next(state, tag, tagBegin, tagEnd);
+        state = matcher.next(state, TAG_SEPARATOR);
+        state = matcher.next(state, message, messageBegin, messageEnd);
+        return matcher.getMatch(state);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * Parses LogCat lines in the "brief" format, the one LogView reads:
+ * <p>
+ * I/Timings( 1234): blur3 - NDK: 1.234ms
+ * <p>
+ * The parser is reused for every line: after parse returns true, the getters refer to the
+ * last parsed line. No regular expression is involved, so parsing only scans the line once.
+ * Tag and message are only copied out of the line when asked for, so that lines can be
+ * filtered by their offsets without allocating.
+ */
+public class LogcatLineParser {
+
+    private static final String PRIORITIES = "VDIWEAF";
+    private static final int TAG_BEGIN = 2;
+
+    private String line;
+    private char priority;
+    private int tagEnd;
+    private int pid;
+    private int messageBegin;
+    private int messageEnd;
+    private String tag;
+    private String message;
+
+    // Returns false if the line is not a brief format log line (e.g. "--------- beginning of main")
+    public boolean parse(String line) {
+        int length = line.length();
+        if (length < 6 || PRIORITIES.indexOf(line.charAt(0)) < 0 || line.charAt(1) != '/')
+            return false;
+
+        // Tag, up to the parenthesis of the PID. Tags are padded with spaces.
+        int pidBegin = line.indexOf('(', TAG_BEGIN);
+        if (pidBegin < 0)
+            return false;
+        int tagEnd = pidBegin;
+        while (tagEnd > TAG_BEGIN && line.charAt(tagEnd - 1) == ' ')
+            tagEnd--;
+        if (tagEnd == TAG_BEGIN)
+            return false;
+
+        // PID, padded with spaces too
+        int i = pidBegin + 1;
+        while (i < length && line.charAt(i) == ' ')
+            i++;
+        int parsedPid = 0;
+        int digits = 0;
+        while (i < length && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+            parsedPid = parsedPid * 10 + (line.charAt(i) - '0');
+            digits++;
+            i++;
+        }
+        while (i < length && line.charAt(i) == ' ')
+            i++;
+        if (digits == 0 || i + 1 >= length || line.charAt(i) != ')' || line.charAt(i + 1) != ':')
+            return false;
+
+        // Message, without leading and trailing spaces
+        int messageBegin = i + 2;
+        int messageEnd = length;
+        while (messageBegin < messageEnd && line.charAt(messageBegin) <= ' ')
+            messageBegin++;
+        while (messageEnd > messageBegin && line.charAt(messageEnd - 1) <= ' ')
+            messageEnd--;
+
+        this.line = line;
+        this.priority = line.charAt(0);
+        this.tagEnd = tagEnd;
+        this.pid = parsedPid;
+        this.messageBegin = messageBegin;
+        this.messageEnd = messageEnd;
+        this.tag = null;
+        this.message = null;
+        return true;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public char getPriority() {
+        return priority;
+    }
+
+    public String getTag() {
+        if (tag == null)
+            tag = line.substring(TAG_BEGIN, tagEnd);
+        return tag;
+    }
+
+    // Tag offsets inside the line
+    public int getTagBegin() {
+        return TAG_BEGIN;
+    }
+
+    public int getTagEnd() {
+        return tagEnd;
+    }
+
+    public int getPid() {
+        return pid;
+    }
+
+    public String getMessage() {
+        if (message == null)
+            message = line.substring(messageBegin, messageEnd);
+        return message;
+    }
+
+    // Message offsets inside the line
+    public int getMessageBegin() {
+        return messageBegin;
+    }
+
+    public int getMessageEnd() {
+        return messageEnd;
+    }
+}
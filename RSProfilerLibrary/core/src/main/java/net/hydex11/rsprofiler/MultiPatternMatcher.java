@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Aho-Corasick automaton that looks for many substrings at once, scanning the text a single
+ * time, without allocating. LogView compiles its filters into one, instead of calling
+ * String.contains once per filter on every line.
+ * <p>
+ * The automaton is a complete DFA over the characters used by the patterns (any other
+ * character is a single class), and states where a pattern has been found are absorbing, so
+ * the text can be fed in pieces (e.g. tag, then message) and scanning stops at the first match.
+ */
+public class MultiPatternMatcher {
+
+    public static final int START = 0;
+    public static final int NO_MATCH = -1;
+
+    private final String[] patterns;
+    private final int classCount;
+    // Character classes: ASCII ones by table, others by binary search in nonAsciiChars
+    private final int[] asciiClasses = new int[128];
+    private final char[] nonAsciiChars;
+    private final int nonAsciiFirstClass;
+
+    // transitions[state * classCount + class]
+    private final int[] transitions;
+    // Pattern found in each state (the lowest index, if more than one), or NO_MATCH
+    private final int[] matches;
+
+    public MultiPatternMatcher(String... patterns) {
+        this.patterns = patterns.clone();
+
+        // Class 0 is any character not in the patterns
+        StringBuilder nonAscii = new StringBuilder();
+        int nextClass = 1;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < 128) {
+                    if (asciiClasses[c] == 0)
+                        asciiClasses[c] = nextClass++;
+                } else if (nonAscii.indexOf(String.valueOf(c)) < 0) {
+                    nonAscii.append(c);
+                }
+            }
+        }
+        nonAsciiChars = nonAscii.toString().toCharArray();
+        Arrays.sort(nonAsciiChars);
+        nonAsciiFirstClass = nextClass;
+        classCount = nextClass + nonAsciiChars.length;
+
+        // Trie of the patterns
+        ArrayList<int[]> trie = new ArrayList<>();
+        ArrayList<Integer> trieMatches = new ArrayList<>();
+        trie.add(newRow());
+        trieMatches.add(NO_MATCH);
+        for (int p = 0; p < patterns.length; p++) {
+            int state = START;
+            for (int i = 0; i < patterns[p].length(); i++) {
+                int charClass = getCharClass(patterns[p].charAt(i));
+                if (trie.get(state)[charClass] < 0) {
+                    trie.get(state)[charClass] = trie.size();
+                    trie.add(newRow());
+                    trieMatches.add(NO_MATCH);
+                }
+                state = trie.get(state)[charClass];
+            }
+            if (trieMatches.get(state) == NO_MATCH)
+                trieMatches.set(state, p);
+        }
+
+        // Failure links, breadth first, turning the trie into a complete DFA
+        int stateCount = trie.size();
+        transitions = new int[stateCount * classCount];
+        matches = new int[stateCount];
+        int[] failures = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int queueHead = 0;
+        int queueTail = 0;
+
+        matches[START] = trieMatches.get(START);
+        for (int c = 0; c < classCount; c++) {
+            int child = trie.get(START)[c];
+            if (child < 0) {
+                transitions[c] = START;
+            } else {
+                transitions[c] = child;
+                failures[child] = START;
+                queue[queueTail++] = child;
+            }
+        }
+
+        while (queueHead < queueTail) {
+            int state = queue[queueHead++];
+
+            // Lowest pattern index among the ones ending here, or in the failure chain
+            int ownMatch = trieMatches.get(state);
+            int failureMatch = matches[failures[state]];
+            matches[state] = ownMatch == NO_MATCH ? failureMatch :
+                    failureMatch == NO_MATCH ? ownMatch : Math.min(ownMatch, failureMatch);
+
+            for (int c = 0; c < classCount; c++) {
+                int child = trie.get(state)[c];
+                if (child < 0) {
+                    transitions[state * classCount + c] = transitions[failures[state] * classCount + c];
+                } else {
+                    transitions[state * classCount + c] = child;
+                    failures[child] = transitions[failures[state] * classCount + c];
+                    queue[queueTail++] = child;
+                }
+            }
+        }
+
+        // Found is final: matching states loop on themselves
+        for (int state = 0; state < stateCount; state++) {
+            if (matches[state] != NO_MATCH)
+                Arrays.fill(transitions, state * classCount, (state + 1) * classCount, state);
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[classCount];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private int getCharClass(char c) {
+        if (c < 128)
+            return asciiClasses[c];
+        int index = Arrays.binarySearch(nonAsciiChars, c);
+        return index < 0 ? 0 : nonAsciiFirstClass + index;
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public String getPattern(int index) {
+        return patterns[index];
+    }
+
+    public int next(int state, char c) {
+        return transitions[state * classCount + getCharClass(c)];
+    }
+
+    // Feeds text[start, end) to the automaton, starting from the given state
+    public int next(int state, CharSequence text, int start, int end) {
+        for (int i = start; i < end && matches[state] == NO_MATCH; i++) {
+            state = transitions[state * classCount + getCharClass(text.charAt(i))];
+        }
+        return state;
+    }
+
+    public int next(int state, CharSequence text) {
+        return next(state, text, 0, text.length());
+    }
+
+    // Pattern found by the time the automaton reached this state, or NO_MATCH
+    public int getMatch(int state) {
+        return matches[state];
+    }
+
+    // First pattern found in the text (the one ending first, then the lowest index), or NO_MATCH
+    public int find(CharSequence text) {
+        return matches[next(START, text)];
+    }
+}
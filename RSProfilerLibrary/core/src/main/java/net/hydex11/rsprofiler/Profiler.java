@@ -0,0 +1,544 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.hydex11.rsprofiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform independent part of the profiler: timing intervals, histograms, warm-up detection,
+ * tracing and stats recording. Output goes to a LogSink, so that the same code runs on a device
+ * (see Timings, which logs to LogCat) and on a desktop JVM.
+ */
+public class Profiler {
+    public static final String TAG = "Timings";
+
+    protected final LogSink logSink;
+
+    // Timestamp (nanoseconds) got on last addTiming call
+    private long lastTimingsTimestamp = 0;
+
+    // Duration of the last frame, from initTimings to debugTimings (e.g. for QualityGovernor)
+    private long frameStartTimestamp = -1;
+    private volatile long lastFrameTime = -1;
+
+    // Counter to count timings cycles. When this counter reaches timingDebugInterval,
+    // profiler will output its code to LogCat
+    private final AtomicInteger timingDebugCounter = new AtomicInteger();
+    private int timingDebugInterval = 50;
+
+    // Profilings are stored in a fixed-memory histogram per tag, so that recording a sample
+    // does not allocate. Histograms are reset, not released, after each debug cycle.
+    // Tags can be registered in advance, to get a handle that skips any string work.
+    // Registration and reporting synchronize on it, recording does not.
+    private final TimingRecorder recorder = new TimingRecorder();
+
+    // Concurrent mode: every thread has its own interval and sample buffer, merged into the
+    // histograms by debugTimings (see ConcurrentTimingRecorder)
+    private static final int CONCURRENT_BUFFER_CAPACITY = 4096;
+    private volatile ConcurrentTimingRecorder concurrentRecorder;
+
+    private final ConcurrentTimingRecorder.SampleListener drainListener = new ConcurrentTimingRecorder.SampleListener() {
+        @Override
+        public void onSample(int timingHandle, long elapsedNanos) {
+            recordSample(timingHandle, elapsedNanos);
+        }
+    };
+
+    // Callback function (sync) to be used before taking the current time. Useful to test single
+    // RenderScript kernels, as we can this way call mRS.finish() before each of them
+    private TimingCallback timingCallback;
+    protected TimingCallback endCallback;
+
+    // Boolean that checks wether first timingDebugInterval has been reached. If
+    // endFirstTimingOnConvergence is set, it becomes true when all tags reached steady state instead.
+    private boolean isFirstTimingEnded = false;
+    private boolean endFirstTimingOnConvergence = false;
+
+    // Sets desired cycles count when we want the output to be written to LogCat
+    public void setTimingDebugInterval(int timingDebugInterval) {
+        this.timingDebugInterval = timingDebugInterval;
+    }
+
+    // Sets custom function to be called before each timing cycle
+    public void setTimingCallback(TimingCallback timingCallback) {
+        this.timingCallback = timingCallback;
+    }
+
+    // Sets custom function to be called before closing app
+    public void setEndCallback(TimingCallback endCallback) {
+        this.endCallback = endCallback;
+    }
+
+    // Warm-up detection (enabled by default): samples taken before a tag reaches its steady state
+    // (JIT, script compilation, driver caches, CPU frequency ramp-up) are logged separately and
+    // excluded from the reported statistics. See SteadyStateDetector.
+    public void setSteadyStateDetection(boolean enabled) {
+        recorder.setSteadyStateDetection(enabled);
+    }
+
+    public void setSteadyStateDetection(int windowSize, double maxCv, double maxDrift, int maxWarmupSamples) {
+        recorder.setSteadyStateDetection(windowSize, maxCv, maxDrift, maxWarmupSamples);
+    }
+
+    // If enabled, isFirstTimingEnded becomes true as soon as every measured tag has converged,
+    // instead of after the first timingDebugInterval cycles
+    public void setEndFirstTimingOnConvergence(boolean endFirstTimingOnConvergence) {
+        this.endFirstTimingOnConvergence = endFirstTimingOnConvergence;
+    }
+
+    public boolean isFirstTimingEnded() {
+        return isFirstTimingEnded;
+    }
+
+    // Overlap-aware mode: the timing callback (usually mRS.finish()) is only run on a sample of
+    // frames, so that the pipeline keeps running asynchronously (see FenceSampler). Stage timings
+    // come from the stage fenced frames only, while frame throughput, submission time and latency
+    // get their own tags. A frame goes from initTimings to debugTimings, on the same thread
+    // (not meant to be used together with concurrent recording).
+    private FenceSampler fenceSampler;
+    private int framePeriodTiming;
+    private int frameSubmissionTiming;
+    private int frameLatencyTiming;
+
+    public void enableOverlappedMode(int fenceSampleInterval) {
+        framePeriodTiming = registerTiming("Frame period (pipelined)");
+        frameSubmissionTiming = registerTiming("Frame submission (pipelined)");
+        frameLatencyTiming = registerTiming("Frame latency (pipelined)");
+        fenceSampler = new FenceSampler(fenceSampleInterval);
+    }
+
+    public void disableOverlappedMode() {
+        fenceSampler = null;
+    }
+
+    // Enables timing from multiple threads at the same time (camera callback, RenderScript
+    // submission, NDK threads). initTimings, addTiming and resetLastTimingsTimestamp then refer
+    // to the calling thread's own interval, and never lock: samples are buffered per thread
+    // and merged by debugTimings. Tags should be registered in advance, as registering locks.
+    public void enableConcurrentRecording(boolean enable) {
+        synchronized (recorder) {
+            if (enable && concurrentRecorder == null) {
+                concurrentRecorder = new ConcurrentTimingRecorder(CONCURRENT_BUFFER_CAPACITY);
+            } else if (!enable && concurrentRecorder != null) {
+                concurrentRecorder.drain(drainListener);
+                concurrentRecorder = null;
+            }
+        }
+    }
+
+    // Enables stats to be saved to disk. Samples are stored as binary records by a background
+    // thread (see BinaryStatsSink), so that disk writes do not end up in the measured intervals.
+    // The binary file can be converted to CSV with BinaryStatsConverter.
+    private static final int STATS_RING_CAPACITY = 16384;
+    private static final long STATS_FLUSH_INTERVAL_MS = 100;
+
+    private volatile BinaryStatsSink statsSink;
+    private File statsBinaryFile;
+    // Handles lower than this have already been defined inside the stats sink
+    private int statsDefinedTags = 0;
+
+    public void startSavingStats(File binaryFile) throws IOException {
+        if (statsSink != null)
+            return;
+
+        // Instantiates the binary sink, whose thread writes samples in background
+        statsDefinedTags = 0;
+        statsBinaryFile = binaryFile;
+        statsSink = new BinaryStatsSink(binaryFile, STATS_RING_CAPACITY, STATS_FLUSH_INTERVAL_MS);
+    }
+
+    // Closes the stats file, and returns it (null if stats were not being saved)
+    public File stopSavingStats() throws IOException {
+        BinaryStatsSink sink = statsSink;
+        if (sink == null)
+            return null;
+
+        statsSink = null;
+        sink.close();
+        return statsBinaryFile;
+    }
+
+    public boolean isSavingStats() {
+        return statsSink != null;
+    }
+
+    // Span tracing: every addTiming interval becomes a span, nested inside the spans opened with
+    // beginSpan, so that a whole run can be looked at in a trace viewer (see SpanTracer).
+    private volatile SpanTracer tracer;
+    // Span name id of each timing handle, filled when registering timings
+    private volatile int[] timingSpanNames = new int[0];
+
+    public void enableTracing(int maxSpans) {
+        synchronized (recorder) {
+            // Span names are ready before the tracer gets visible to recording threads
+            SpanTracer newTracer = new SpanTracer(maxSpans);
+            int[] spanNames = new int[recorder.getTagCount()];
+            for (int i = 0; i < spanNames.length; i++) {
+                spanNames[i] = newTracer.registerName(recorder.getTag(i));
+            }
+            timingSpanNames = spanNames;
+            tracer = newTracer;
+        }
+    }
+
+    public SpanTracer getTracer() {
+        return tracer;
+    }
+
+    // Registers a span name and returns the id to be used with beginSpan
+    public int registerSpan(String name) {
+        return tracer != null ? tracer.registerName(name) : SpanTracer.NO_SPAN;
+    }
+
+    // Opens a span, child of the currently open one (if any), and returns it. Like endSpan, it
+    // restarts the current timing, so that the next one is not counted outside of the span.
+    public int beginSpan(int spanName) {
+        int span = SpanTracer.NO_SPAN;
+        if (tracer != null && spanName != SpanTracer.NO_SPAN)
+            span = tracer.begin(spanName);
+
+        resetLastTimingsTimestamp();
+        return span;
+    }
+
+    public void endSpan(int span) {
+        if (tracer != null)
+            tracer.end(span);
+
+        resetLastTimingsTimestamp();
+    }
+
+    // Writes recorded spans as Chrome trace-event JSON. Returns false if tracing is not enabled.
+    public boolean writeTrace(Writer writer, String processName) throws IOException {
+        SpanTracer spanTracer = tracer;
+        if (spanTracer == null)
+            return false;
+
+        spanTracer.writeChromeTrace(writer, processName);
+        return true;
+    }
+
+    // Registers span names for timings registered after the last call. Holding the recorder lock.
+    private void updateTimingSpanNames() {
+        if (tracer == null || timingSpanNames.length == recorder.getTagCount())
+            return;
+
+        int[] spanNames = Arrays.copyOf(timingSpanNames, recorder.getTagCount());
+        for (int i = timingSpanNames.length; i < spanNames.length; i++) {
+            spanNames[i] = tracer.registerName(recorder.getTag(i));
+        }
+        timingSpanNames = spanNames;
+    }
+
+    // The following limit is used when wanting to limit the maximum executions of code.
+    // When the limit is reached, onStatsSaveCountLimitReached gets called.
+    private int statSaveCountLimit = 0;
+
+    public void setStatsSaveCountLimit(int limit) {
+        statSaveCountLimit = limit;
+    }
+
+    // Called, once, when statSaveCountLimit samples have been saved. Stops saving stats and
+    // runs the end callback. Timings also sends the stats and closes the app.
+    protected void onStatsSaveCountLimitReached() throws IOException {
+        stopSavingStats();
+
+        if (endCallback != null)
+            endCallback.run();
+    }
+
+    // Merges samples still buffered by other threads (concurrent recording) into the histograms
+    // and the stats
+    public void drainConcurrentSamples() {
+        ConcurrentTimingRecorder concurrent = concurrentRecorder;
+        if (concurrent != null) {
+            synchronized (recorder) {
+                concurrent.drain(drainListener);
+            }
+        }
+    }
+
+    // Registers, inside the stats sink, tags that have been registered after the last call
+    private void defineStatsTags(BinaryStatsSink sink) {
+        for (int i = statsDefinedTags; i < recorder.getTagCount(); i++) {
+            sink.defineTag(i, recorder.getCsvTag(i));
+        }
+        statsDefinedTags = recorder.getTagCount();
+    }
+
+    // Interface for function to be called before each timing cycle
+    public interface TimingCallback {
+        void run();
+    }
+
+    // Constructor
+    public Profiler(LogSink logSink) {
+        this.logSink = logSink;
+        recorder.setSteadyStateDetection(true);
+        clearTimings();
+    }
+
+    // Function that resets all timings. Used after profiler completes a timing cycle (after
+    // having reached timingDebugInterval count
+    public void clearTimings() {
+        synchronized (recorder) {
+            recorder.reset();
+            timingDebugCounter.set(0);
+        }
+    }
+
+    // Function to be called at the beginning of every calculation loop cycle
+    public void initTimings() {
+        frameStartTimestamp = java.lang.System.nanoTime();
+
+        if (fenceSampler != null)
+            fenceSampler.beginFrame(frameStartTimestamp);
+
+        resetLastTimingsTimestamp();
+    }
+
+    // Nanoseconds between the last initTimings call and the debugTimings call that followed it,
+    // or -1 if no frame has ended yet
+    public long getLastFrameTime() {
+        return lastFrameTime;
+    }
+
+    // Logs a new timing
+    private long totalSamples = 0;
+
+    // Registers a tag and returns its handle, to be used with addTiming(int). Registering
+    // the same tag twice returns the same handle.
+    public int registerTiming(String tag) {
+        synchronized (recorder) {
+            int handle = recorder.register(tag);
+            updateTimingSpanNames();
+            return handle;
+        }
+    }
+
+    // Registers a tag for each of the given values, formatting them inside the tag
+    // (e.g. "blur%d - NDK" for each blur radius). Returns the handles, in the same order.
+    public int[] registerTimings(String tagFormat, int... values) {
+        int[] handles = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            handles[i] = registerTiming(String.format(tagFormat, values[i]));
+        }
+        return handles;
+    }
+
+    // String based variants, kept for simplicity. They format the tag and look it up on every
+    // call, so prefer registered handles inside the loops being measured.
+    public void addTiming(String tag, Object... args) {
+        addTiming(String.format(tag, args));
+    }
+
+    public void addTiming(String tag) {
+        addTiming(registerTiming(tag));
+    }
+
+    public void addTiming(int timingHandle) {
+
+        // In overlapped mode, stages of frames that are not fenced are left running: their
+        // timing would only measure the submission
+        if (fenceSampler != null && !fenceSampler.isStageFenced()) {
+            resetLastTimingsTimestamp();
+            return;
+        }
+
+        // If callback function exists, call it and waits for its completion
+        if (timingCallback != null) {
+            timingCallback.run();
+        }
+
+        long now = java.lang.System.nanoTime();
+
+        ConcurrentTimingRecorder concurrent = concurrentRecorder;
+        if (concurrent != null) {
+            // Only buffered here, recorded by debugTimings
+            long start = concurrent.getIntervalStart();
+            concurrent.record(timingHandle, now);
+
+            SpanTracer spanTracer = tracer;
+            if (spanTracer != null)
+                spanTracer.add(timingSpanNames[timingHandle], start, now);
+
+            concurrent.startInterval();
+            return;
+        }
+
+        long elapsed = now - lastTimingsTimestamp;
+        recordSample(timingHandle, elapsed);
+
+        SpanTracer spanTracer = tracer;
+        if (spanTracer != null)
+            spanTracer.add(timingSpanNames[timingHandle], lastTimingsTimestamp, now);
+
+        checkStatsSaveCountLimit();
+
+        resetLastTimingsTimestamp();
+    }
+
+    // Stores a sample into the stats and the histograms. Called by the measuring thread, or by
+    // debugTimings (holding the recorder lock) in concurrent mode.
+    private void recordSample(int timingHandle, long elapsed) {
+        // Local copy, as sendStats may be called from the UI thread
+        BinaryStatsSink sink = statsSink;
+        if (sink != null) {
+            // If write to file is enabled, queues the timing for the background writer.
+            // Never blocks: if the writer cannot keep up, the sample is dropped and counted.
+            if (timingHandle >= statsDefinedTags)
+                defineStatsTags(sink);
+            sink.record(timingHandle, elapsed);
+        }
+
+        recorder.record(timingHandle, elapsed);
+        totalSamples++;
+    }
+
+    private void checkStatsSaveCountLimit() {
+        if (statsSink != null && statSaveCountLimit > 0 && totalSamples >= statSaveCountLimit) {
+            try {
+                onStatsSaveCountLimitReached();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not send saved data", e);
+            }
+        }
+    }
+
+    public void resetLastTimingsTimestamp() {
+        ConcurrentTimingRecorder concurrent = concurrentRecorder;
+        if (concurrent != null)
+            concurrent.startInterval();
+        else
+            lastTimingsTimestamp = java.lang.System.nanoTime();
+    }
+
+    // Function to be called on every loop cycle, that checks if current profiling cycle has to end.
+    // If it has to end, prints debug data to LogCat.
+    public void debugTimings() {
+        if (fenceSampler != null)
+            endFrame();
+
+        if (frameStartTimestamp >= 0) {
+            lastFrameTime = java.lang.System.nanoTime() - frameStartTimestamp;
+            frameStartTimestamp = -1;
+        }
+
+        int debugCounter = timingDebugCounter.incrementAndGet();
+
+        synchronized (recorder) {
+            ConcurrentTimingRecorder concurrent = concurrentRecorder;
+            if (concurrent != null) {
+                concurrent.drain(drainListener);
+                checkStatsSaveCountLimit();
+            }
+
+            printTimings(debugCounter);
+        }
+    }
+
+    private void endFrame() {
+        if (fenceSampler.isEndFenced() && timingCallback != null)
+            timingCallback.run();
+
+        fenceSampler.endFrame(java.lang.System.nanoTime());
+
+        if (fenceSampler.getPeriod() >= 0)
+            recordSample(framePeriodTiming, fenceSampler.getPeriod());
+        if (fenceSampler.getSubmissionTime() >= 0)
+            recordSample(frameSubmissionTiming, fenceSampler.getSubmissionTime());
+        if (fenceSampler.getLatency() >= 0)
+            recordSample(frameLatencyTiming, fenceSampler.getLatency());
+
+        checkStatsSaveCountLimit();
+    }
+
+    private void printTimings(int debugCounter) {
+        boolean converged = endFirstTimingOnConvergence && !isFirstTimingEnded
+                && recorder.getRecordedCount() > 0 && recorder.isEveryRecordedTagConverged();
+
+        if (debugCounter % timingDebugInterval == 0 || converged) {
+
+            if (!endFirstTimingOnConvergence || converged)
+                isFirstTimingEnded = true;
+
+            for (int i = 0; i < recorder.getRecordedCount(); i++) {
+                int handle = recorder.getRecordedHandle(i);
+                String tag = recorder.getTag(handle);
+                TimingHistogram histogram = recorder.getHistogram(handle);
+
+                // Warm-up samples of this cycle, if any, are logged on their own
+                TimingHistogram warmupHistogram = recorder.getWarmupHistogram(handle);
+                if (warmupHistogram.getTotalCount() > 0) {
+                    SteadyStateDetector detector = recorder.getSteadyStateDetector(handle);
+                    logSink.log(TAG, tag + ": " + String.format("warm-up %.3fms (max %.3f, n %d)%s",
+                            nanosToMillis(warmupHistogram.getHarmonicMean()),
+                            nanosToMillis(warmupHistogram.getMaxValue()),
+                            warmupHistogram.getTotalCount(),
+                            detector.isForced() ? ", did not converge" :
+                                    detector.isConverged() ? ", converged" : ""));
+                }
+
+                if (histogram.getTotalCount() == 0) continue;
+
+                // Average is the harmonic mean (count / sum(1 / timing)), percentiles and
+                // deviation come from the histogram
+                logSink.log(TAG, tag + ": " + String.format("%.3fms (p50 %.3f, p90 %.3f, p99 %.3f, max %.3f, sd %.3f, n %d)",
+                        nanosToMillis(histogram.getHarmonicMean()),
+                        nanosToMillis(histogram.getValueAtPercentile(50)),
+                        nanosToMillis(histogram.getValueAtPercentile(90)),
+                        nanosToMillis(histogram.getValueAtPercentile(99)),
+                        nanosToMillis(histogram.getMaxValue()),
+                        nanosToMillis(histogram.getStdDeviation()),
+                        histogram.getTotalCount()));
+            }
+
+            if (fenceSampler != null) {
+                TimingHistogram periods = recorder.getHistogram(framePeriodTiming);
+                if (periods.getTotalCount() > 0)
+                    logSink.log(TAG, String.format("Pipelined throughput: %.1f fps (stages fenced every %d frames)",
+                            1000.0 / nanosToMillis(periods.getMean()), fenceSampler.getSampleInterval()));
+            }
+
+            ConcurrentTimingRecorder concurrent = concurrentRecorder;
+            if (concurrent != null)
+                logSink.log(TAG, String.format("Total samples: %d (%d live recording threads, %d dropped)",
+                        totalSamples, concurrent.getThreadCount(), concurrent.getDroppedCount()));
+            else
+                logSink.log(TAG, "Total samples: " + totalSamples);
+
+            clearTimings();
+        }
+
+    }
+
+    private static double nanosToMillis(double nanos) {
+        return nanos / 1000000.0;
+    }
+}
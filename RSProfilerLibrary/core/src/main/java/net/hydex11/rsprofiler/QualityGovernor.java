@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * Chooses, frame after frame, a quality level for a real-time pipeline, so that it holds a
+ * target frame rate and a target p99 latency. Level 0 is the best quality (and most expensive)
+ * one, level levelCount - 1 the cheapest one: what a level changes (processing resolution,
+ * region of interest, algorithm variant) is up to the caller.
+ * <p>
+ * Frame latencies are collected in windows of windowSize frames. At the end of each window:
+ * <ul>
+ * <li>if the mean is above the target frame period, or the p99 above the target p99, the
+ * level is lowered by one step;</li>
+ * <li>if both are below UPGRADE_MARGIN times their target for enough consecutive windows, the
+ * level is raised by one step;</li>
+ * <li>otherwise the level stays the same.</li>
+ * </ul>
+ * If an upgrade has to be reverted by the very next window, the number of windows needed for
+ * the next upgrade is doubled (up to MAX_UPGRADE_WINDOWS), so that the governor does not keep
+ * oscillating between a level that is too slow and one that is fast enough.
+ * Every decision is logged to the LogSink.
+ */
+public class QualityGovernor {
+
+    public static final String TAG = "QualityGovernor";
+
+    // Fraction of the targets a window has to stay under, to allow an upgrade
+    public static final double UPGRADE_MARGIN = 0.7;
+    public static final int DEFAULT_UPGRADE_WINDOWS = 3;
+    public static final int MAX_UPGRADE_WINDOWS = 48;
+
+    private final LogSink logSink;
+    private final int levelCount;
+    private final long targetFramePeriod;
+    private final long targetP99;
+    private final int windowSize;
+
+    private final TimingHistogram window = new TimingHistogram();
+    private int level = 0;
+
+    private int upgradeWindows = DEFAULT_UPGRADE_WINDOWS;
+    private int goodWindows = 0;
+    private boolean justUpgraded = false;
+
+    private long downgradeCount = 0;
+    private long upgradeCount = 0;
+
+    // Targets are in nanoseconds
+    public QualityGovernor(LogSink logSink, int levelCount, long targetFramePeriod, long targetP99, int windowSize) {
+        if (levelCount < 1)
+            throw new IllegalArgumentException("At least one level is needed");
+        if (targetFramePeriod <= 0 || targetP99 <= 0)
+            throw new IllegalArgumentException("Targets must be positive");
+        if (windowSize < 1)
+            throw new IllegalArgumentException("Window size must be at least 1");
+
+        this.logSink = logSink;
+        this.levelCount = levelCount;
+        this.targetFramePeriod = targetFramePeriod;
+        this.targetP99 = targetP99;
+        this.windowSize = windowSize;
+    }
+
+    // Target frame period from a frame rate
+    public static long framePeriodFromFps(double fps) {
+        return Math.round(1e9 / fps);
+    }
+
+    // Records the latency of a frame (ignored if negative, e.g. Profiler.getLastFrameTime()
+    // before the first frame) and returns the level to use for the next one
+    public int onFrame(long latencyNanos) {
+        if (latencyNanos < 0)
+            return level;
+
+        window.recordValue(latencyNanos);
+        if (window.getTotalCount() >= windowSize) {
+            evaluateWindow();
+            window.reset();
+        }
+        return level;
+    }
+
+    private void evaluateWindow() {
+        double mean = window.getMean();
+        long p99 = window.getValueAtPercentile(99);
+
+        boolean tooSlow = mean > targetFramePeriod || p99 > targetP99;
+        if (tooSlow) {
+            goodWindows = 0;
+
+            // The level just reached is too expensive: be more careful before trying it again
+            if (justUpgraded)
+                upgradeWindows = Math.min(upgradeWindows * 2, MAX_UPGRADE_WINDOWS);
+            justUpgraded = false;
+
+            if (level < levelCount - 1) {
+                setLevel(level + 1, mean, p99, "over target");
+                downgradeCount++;
+            }
+            return;
+        }
+
+        justUpgraded = false;
+
+        boolean fastEnough = mean < targetFramePeriod * UPGRADE_MARGIN && p99 < targetP99 * UPGRADE_MARGIN;
+        if (!fastEnough) {
+            goodWindows = 0;
+            return;
+        }
+
+        goodWindows++;
+        if (goodWindows >= upgradeWindows && level > 0) {
+            goodWindows = 0;
+            justUpgraded = true;
+            setLevel(level - 1, mean, p99, "under target");
+            upgradeCount++;
+        }
+    }
+
+    private void setLevel(int newLevel, double mean, long p99, String reason) {
+        logSink.log(TAG, String.format("Level %d -> %d: mean %.2f ms, p99 %.2f ms %s (%.2f ms, %.2f ms)",
+                level, newLevel, mean / 1e6, p99 / 1e6, reason, targetFramePeriod / 1e6, targetP99 / 1e6));
+        level = newLevel;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    // Consecutive good windows currently needed to upgrade
+    public int getUpgradeWindows() {
+        return upgradeWindows;
+    }
+
+    public long getDowngradeCount() {
+        return downgradeCount;
+    }
+
+    public long getUpgradeCount() {
+        return upgradeCount;
+    }
+}
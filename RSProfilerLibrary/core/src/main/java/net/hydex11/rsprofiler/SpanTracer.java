@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records nested begin / end spans into preallocated arrays, and exports them as Chrome
+ * trace-event JSON (chrome://tracing, or https://ui.perfetto.dev), so that a whole run can be
+ * inspected on a timeline: where frame time goes between camera callback, RenderScript and NDK.
+ * <p>
+ * Every thread keeps its own current span, so spans begun inside another one become its
+ * children. Slots are claimed with an atomic counter: recording never locks nor allocates
+ * (except once per thread, for its current span holder). When all slots are used, new spans are
+ * dropped and counted. Export is meant to be done once measuring has stopped.
+ */
+public class SpanTracer {
+
+    public static final int NO_SPAN = -1;
+
+    private final HashMap<String, Integer> nameIds = new HashMap<>();
+    private final ArrayList<String> names = new ArrayList<>();
+
+    // Indexed by span
+    private final int[] spanNames;
+    private final int[] parents;
+    private final long[] threadIds;
+    private final long[] startTimes;
+    private final long[] endTimes;
+
+    private final AtomicInteger spanCount = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+    // Current (innermost open) span of each thread
+    private final ThreadLocal<int[]> currentSpan = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            Thread thread = Thread.currentThread();
+            threadNames.put(thread.getId(), thread.getName());
+            return new int[]{NO_SPAN};
+        }
+    };
+
+    public SpanTracer(int capacity) {
+        spanNames = new int[capacity];
+        parents = new int[capacity];
+        threadIds = new long[capacity];
+        startTimes = new long[capacity];
+        endTimes = new long[capacity];
+    }
+
+    // Registers a span name and returns its id. Registering the same name twice returns
+    // the same id.
+    public synchronized int registerName(String name) {
+        Integer id = nameIds.get(name);
+        if (id != null)
+            return id;
+
+        int newId = names.size();
+        names.add(name);
+        nameIds.put(name, newId);
+        return newId;
+    }
+
+    // Opens a span, child of the current span of this thread, and returns it
+    // (NO_SPAN if the buffer is full)
+    public int begin(int nameId) {
+        int[] current = currentSpan.get();
+        int span = claimSpan(nameId, current[0]);
+        if (span == NO_SPAN)
+            return NO_SPAN;
+
+        endTimes[span] = 0;
+        startTimes[span] = System.nanoTime();
+        current[0] = span;
+        return span;
+    }
+
+    // Closes a span returned by begin. Its parent becomes the current span again.
+    public void end(int span) {
+        long now = System.nanoTime();
+        if (span == NO_SPAN)
+            return;
+
+        endTimes[span] = now;
+        currentSpan.get()[0] = parents[span];
+    }
+
+    // Adds an already measured span (System.nanoTime timestamps), child of the current span
+    // of this thread
+    public void add(int nameId, long startTime, long endTime) {
+        int span = claimSpan(nameId, currentSpan.get()[0]);
+        if (span == NO_SPAN)
+            return;
+
+        startTimes[span] = startTime;
+        endTimes[span] = endTime;
+    }
+
+    private int claimSpan(int nameId, int parent) {
+        int span = spanCount.getAndIncrement();
+        if (span >= spanNames.length) {
+            spanCount.set(spanNames.length);
+            droppedCount.incrementAndGet();
+            return NO_SPAN;
+        }
+
+        spanNames[span] = nameId;
+        parents[span] = parent;
+        threadIds[span] = Thread.currentThread().getId();
+        return span;
+    }
+
+    public int getSpanCount() {
+        return Math.min(spanCount.get(), spanNames.length);
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getParent(int span) {
+        return parents[span];
+    }
+
+    public String getName(int span) {
+        return names.get(spanNames[span]);
+    }
+
+    // Duration of a closed span, in nanoseconds (-1 if still open)
+    public long getDuration(int span) {
+        return endTimes[span] == 0 ? -1 : endTimes[span] - startTimes[span];
+    }
+
+    // Forgets all recorded spans. Must not be called while spans are open.
+    public void clear() {
+        spanCount.set(0);
+        droppedCount.set(0);
+    }
+
+    // Writes all closed spans as Chrome trace-event JSON complete events ("ph": "X"). Timestamps
+    // are in microseconds, relative to the first span.
+    public void writeChromeTrace(Writer writer, String processName) throws IOException {
+        int count = getSpanCount();
+
+        long origin = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            origin = Math.min(origin, startTimes[i]);
+        }
+
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        writer.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":"
+                + jsonString(processName) + "}}");
+
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":" + jsonString(thread.getValue()) + "}}");
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (endTimes[i] == 0)
+                continue;
+
+            writer.write(String.format(Locale.US,
+                    ",\n{\"name\":%s,\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f,\"args\":{\"span\":%d,\"parent\":%d}}",
+                    jsonString(names.get(spanNames[i])), threadIds[i],
+                    (startTimes[i] - origin) / 1000.0, (endTimes[i] - startTimes[i]) / 1000.0,
+                    i, parents[i]));
+        }
+
+        writer.write("\n]}\n");
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+}
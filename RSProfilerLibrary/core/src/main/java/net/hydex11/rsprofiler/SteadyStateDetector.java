@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+/**
+ * Detects when the timings of a tag reach their steady state, so that warm-up samples (JIT
+ * compilation, RenderScript script compilation, driver caches, CPU frequency ramp-up) can be
+ * reported separately instead of being averaged with the rest.
+ * <p>
+ * The last windowSize samples are kept in a ring. The tag is considered converged when, in
+ * that window, the coefficient of variation (sd / mean) is at most maxCv and the mean of the
+ * newest half differs from the mean of the oldest half by at most maxDrift (relative): timings
+ * are both stable and not trending anymore. If this never happens, convergence is forced after
+ * maxWarmupSamples samples, so that a noisy tag cannot hold a run forever.
+ * <p>
+ * Samples are routed to the warm-up histogram only when they leave the window, so the window
+ * that proved convergence is counted as steady state.
+ */
+public class SteadyStateDetector {
+
+    public static final int DEFAULT_WINDOW_SIZE = 30;
+    public static final double DEFAULT_MAX_CV = 0.1;
+    public static final double DEFAULT_MAX_DRIFT = 0.05;
+    public static final int DEFAULT_MAX_WARMUP_SAMPLES = 300;
+
+    private final long[] window;
+    private final double maxCv;
+    private final double maxDrift;
+    private final int maxWarmupSamples;
+
+    private int windowCount = 0;
+    private int windowIndex = 0;
+
+    private boolean converged = false;
+    private boolean forced = false;
+    private long warmupCount = 0;
+
+    public SteadyStateDetector() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_MAX_CV, DEFAULT_MAX_DRIFT, DEFAULT_MAX_WARMUP_SAMPLES);
+    }
+
+    public SteadyStateDetector(int windowSize, double maxCv, double maxDrift, int maxWarmupSamples) {
+        if (windowSize < 2)
+            throw new IllegalArgumentException("Window size must be at least 2");
+
+        this.window = new long[windowSize];
+        this.maxCv = maxCv;
+        this.maxDrift = maxDrift;
+        this.maxWarmupSamples = maxWarmupSamples;
+    }
+
+    // Records a sample: into the steady histogram once converged, otherwise inside the window,
+    // moving the oldest window sample to the warm-up histogram
+    public void record(long value, TimingHistogram warmup, TimingHistogram steady) {
+        if (converged) {
+            steady.recordValue(value);
+            return;
+        }
+
+        if (windowCount == window.length) {
+            warmup.recordValue(window[windowIndex]);
+            warmupCount++;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = value;
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowCount < window.length)
+            return;
+
+        if (isWindowStable()) {
+            converge(steady);
+        } else if (warmupCount + windowCount >= maxWarmupSamples) {
+            forced = true;
+            converge(steady);
+        }
+    }
+
+    private boolean isWindowStable() {
+        int half = window.length / 2;
+        double oldSum = 0;
+        double newSum = 0;
+        double sumOfSquares = 0;
+
+        // windowIndex points to the oldest sample
+        for (int i = 0; i < window.length; i++) {
+            double value = window[(windowIndex + i) % window.length];
+            if (i < half)
+                oldSum += value;
+            else
+                newSum += value;
+            sumOfSquares += value * value;
+        }
+
+        double mean = (oldSum + newSum) / window.length;
+        if (mean <= 0)
+            return true;
+
+        double variance = sumOfSquares / window.length - mean * mean;
+        double cv = variance <= 0 ? 0 : Math.sqrt(variance) / mean;
+
+        double drift = Math.abs(newSum / (window.length - half) - oldSum / half) / mean;
+
+        return cv <= maxCv && drift <= maxDrift;
+    }
+
+    private void converge(TimingHistogram steady) {
+        converged = true;
+        for (int i = 0; i < windowCount; i++) {
+            steady.recordValue(window[(windowIndex + i) % window.length]);
+        }
+        windowCount = 0;
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+
+    // True if convergence was declared because maxWarmupSamples was reached
+    public boolean isForced() {
+        return forced;
+    }
+
+    // Number of samples classified as warm-up
+    public long getWarmupCount() {
+        return warmupCount;
+    }
+
+    // Starts detecting again, e.g. after the measured conditions changed
+    public void restart() {
+        converged = false;
+        forced = false;
+        warmupCount = 0;
+        windowCount = 0;
+        windowIndex = 0;
+    }
+}
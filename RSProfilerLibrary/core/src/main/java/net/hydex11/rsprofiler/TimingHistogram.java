@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory log-linear histogram, used by Timings to store samples of a single tag, and by
+ * the analyzer so that captures of any size can be analyzed with constant memory per tag.
+ * <p>
+ * Values (nanoseconds) below SUB_BUCKET_COUNT are stored exactly, bigger ones are grouped in
+ * power-of-two buckets, each one split in SUB_BUCKET_HALF_COUNT linear sub-buckets. This way
+ * the relative error of every reported percentile is below 1%, while the whole histogram
+ * is made of a single, preallocated, long array. Recording a value never allocates.
+ */
+public class TimingHistogram {
+
+    // 128 linear sub-buckets for each power of two: ~0.8% worst case relative error
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    // Values up to 2^36 ns (~68 seconds) are tracked, bigger ones fall into the last bucket.
+    static final int MAX_VALUE_BITS = 36;
+    static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int BUCKET_COUNT = MAX_VALUE_BITS - SUB_BUCKET_BITS + 1;
+    public static final int COUNTS_LENGTH = (BUCKET_COUNT + 1) * SUB_BUCKET_HALF_COUNT;
+
+    private final long[] counts = new long[COUNTS_LENGTH];
+
+    private long totalCount;
+    private long minValue;
+    private long maxValue;
+
+    // Running sums, used to calculate mean, standard deviation and harmonic mean
+    private double sum;
+    private double sumOfSquares;
+    private double sumOfInverses;
+
+    public TimingHistogram() {
+        reset();
+    }
+
+    // Clears all recorded values, keeping the allocated memory
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        sumOfInverses = 0;
+    }
+
+    // Records a new value, expressed in nanoseconds. Negative values are recorded as zero.
+    public void recordValue(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts[countsIndex(value)]++;
+        totalCount++;
+
+        if (value < minValue)
+            minValue = value;
+        if (value > maxValue)
+            maxValue = value;
+
+        double doubleValue = value;
+        sum += doubleValue;
+        sumOfSquares += doubleValue * doubleValue;
+        if (value > 0)
+            sumOfInverses += 1.0 / doubleValue;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMinValue() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    // Mean of the rates (1/value), converted back to a value. It is the average
+    // that matches the measured throughput, and the one that ProfilerExample has always reported.
+    public double getHarmonicMean() {
+        return sumOfInverses == 0 ? 0 : totalCount / sumOfInverses;
+    }
+
+    public double getStdDeviation() {
+        if (totalCount == 0)
+            return 0;
+
+        double mean = sum / totalCount;
+        double variance = sumOfSquares / totalCount - mean * mean;
+        return variance <= 0 ? 0 : Math.sqrt(variance);
+    }
+
+    // Returns the value at the given percentile (0-100), using the nearest-rank definition.
+    // The returned value is the middle of the bucket where the sample falls, clamped to the
+    // exact recorded min and max values.
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+
+        if (percentile <= 0)
+            return getMinValue();
+        if (percentile >= 100)
+            return maxValue;
+
+        return getValueAtRank((long) Math.ceil(percentile / 100.0 * totalCount));
+    }
+
+    // Returns the value of the sample at the given rank (1 = smallest), with the same
+    // precision as getValueAtPercentile
+    public long getValueAtRank(long rank) {
+        if (totalCount == 0)
+            return 0;
+
+        if (rank < 1)
+            rank = 1;
+
+        long cumulativeCount = 0;
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount >= rank) {
+                long value = medianEquivalentValue(i);
+                if (value < minValue)
+                    return minValue;
+                if (value > maxValue)
+                    return maxValue;
+                return value;
+            }
+        }
+
+        return maxValue;
+    }
+
+    // Counts recorded values lower than the given one, with bucket precision
+    public long countValuesBelow(long value) {
+        long count = 0;
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            if (medianEquivalentValue(i) >= value)
+                break;
+            count += counts[i];
+        }
+        return count;
+    }
+
+    // Counts recorded values higher than the given one, with bucket precision
+    public long countValuesAbove(long value) {
+        long count = 0;
+        for (int i = COUNTS_LENGTH - 1; i >= 0; i--) {
+            if (medianEquivalentValue(i) <= value)
+                break;
+            count += counts[i];
+        }
+        return count;
+    }
+
+    // Number of values recorded in the bucket at the given index. Buckets are ordered by value,
+    // so iterating them is a sorted, bucket-precision, walk of all recorded values.
+    public long getCountAtIndex(int index) {
+        return counts[index];
+    }
+
+    // Adds all values of another histogram to this one
+    public void add(TimingHistogram other) {
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        if (other.totalCount > 0) {
+            minValue = Math.min(minValue, other.minValue);
+            maxValue = Math.max(maxValue, other.maxValue);
+        }
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        sumOfInverses += other.sumOfInverses;
+    }
+
+    // Index helpers
+
+    static int countsIndex(long value) {
+        if (value > MAX_TRACKABLE_VALUE)
+            value = MAX_TRACKABLE_VALUE;
+
+        // First SUB_BUCKET_COUNT values are stored exactly
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        // Position of the highest bit tells the bucket, next SUB_BUCKET_BITS - 1 bits the sub-bucket
+        int bucketIndex = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return bucketIndex * SUB_BUCKET_HALF_COUNT + subBucketIndex;
+    }
+
+    static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int bucketIndex = index / SUB_BUCKET_HALF_COUNT - 1;
+        int subBucketIndex = index - bucketIndex * SUB_BUCKET_HALF_COUNT;
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    static long medianEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int bucketIndex = index / SUB_BUCKET_HALF_COUNT - 1;
+        return lowestEquivalentValue(index) + ((1L << bucketIndex) >> 1);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Stores the timing histograms used by Timings.
+ * <p>
+ * Every tag gets registered once and receives an integer handle, that is just the index of its
+ * histogram. Recording a sample through its handle is then a plain array access, without any
+ * string formatting, hash lookup or allocation.
+ * <p>
+ * Tags are reported in the order they were first recorded, not in the order they were
+ * registered, so that pre-registering all tags does not change the output layout.
+ * <p>
+ * When steady state detection is enabled, every tag gets its own SteadyStateDetector and
+ * samples recorded before convergence go to a separate warm-up histogram.
+ */
+public class TimingRecorder {
+
+    private final HashMap<String, Integer> handles = new HashMap<>();
+    private final ArrayList<String> tags = new ArrayList<>();
+
+    // Indexed by handle
+    private String[] csvTags = new String[16];
+    private TimingHistogram[] histograms = new TimingHistogram[16];
+    private boolean[] recorded = new boolean[16];
+    private TimingHistogram[] warmupHistograms = new TimingHistogram[16];
+    private SteadyStateDetector[] detectors = new SteadyStateDetector[16];
+
+    private boolean steadyStateDetection = false;
+    private int detectorWindowSize = SteadyStateDetector.DEFAULT_WINDOW_SIZE;
+    private double detectorMaxCv = SteadyStateDetector.DEFAULT_MAX_CV;
+    private double detectorMaxDrift = SteadyStateDetector.DEFAULT_MAX_DRIFT;
+    private int detectorMaxWarmupSamples = SteadyStateDetector.DEFAULT_MAX_WARMUP_SAMPLES;
+
+    // Handles, in the order they got their first sample
+    private int[] recordedOrder = new int[16];
+    private int recordedCount = 0;
+
+    // Registers a tag (if not already registered) and returns its handle
+    public int register(String tag) {
+        Integer handle = handles.get(tag);
+        if (handle != null)
+            return handle;
+
+        int newHandle = tags.size();
+        ensureCapacity(newHandle + 1);
+
+        tags.add(tag);
+        // Commas would break the CSV layout, so replace them once here
+        csvTags[newHandle] = tag.replace(',', '_');
+        histograms[newHandle] = new TimingHistogram();
+        warmupHistograms[newHandle] = new TimingHistogram();
+        detectors[newHandle] = newDetector();
+        handles.put(tag, newHandle);
+
+        return newHandle;
+    }
+
+    // Records a new sample for a registered tag
+    public void record(int handle, long elapsedNanos) {
+        if (!recorded[handle]) {
+            recorded[handle] = true;
+            recordedOrder[recordedCount++] = handle;
+        }
+
+        if (steadyStateDetection)
+            detectors[handle].record(elapsedNanos, warmupHistograms[handle], histograms[handle]);
+        else
+            histograms[handle].recordValue(elapsedNanos);
+    }
+
+    // Enables or disables warm-up detection. Restarts detection for all tags.
+    public void setSteadyStateDetection(boolean enabled) {
+        steadyStateDetection = enabled;
+        restartSteadyStateDetection();
+    }
+
+    // Sets the SteadyStateDetector parameters and restarts detection for all tags
+    public void setSteadyStateDetection(int windowSize, double maxCv, double maxDrift, int maxWarmupSamples) {
+        detectorWindowSize = windowSize;
+        detectorMaxCv = maxCv;
+        detectorMaxDrift = maxDrift;
+        detectorMaxWarmupSamples = maxWarmupSamples;
+
+        for (int i = 0; i < tags.size(); i++) {
+            detectors[i] = newDetector();
+        }
+    }
+
+    public boolean isSteadyStateDetection() {
+        return steadyStateDetection;
+    }
+
+    public void restartSteadyStateDetection() {
+        for (int i = 0; i < tags.size(); i++) {
+            detectors[i].restart();
+        }
+    }
+
+    // True if all tags that got samples reached steady state (always true if detection is
+    // disabled). Tags that are registered but never measured are not waited for.
+    public boolean isEveryRecordedTagConverged() {
+        if (!steadyStateDetection)
+            return true;
+
+        for (int i = 0; i < recordedCount; i++) {
+            if (!detectors[recordedOrder[i]].isConverged())
+                return false;
+        }
+        return true;
+    }
+
+    private SteadyStateDetector newDetector() {
+        return new SteadyStateDetector(detectorWindowSize, detectorMaxCv, detectorMaxDrift, detectorMaxWarmupSamples);
+    }
+
+    public int getTagCount() {
+        return tags.size();
+    }
+
+    public String getTag(int handle) {
+        return tags.get(handle);
+    }
+
+    public String getCsvTag(int handle) {
+        return csvTags[handle];
+    }
+
+    // Samples of the tag. When steady state detection is enabled, only steady state ones.
+    public TimingHistogram getHistogram(int handle) {
+        return histograms[handle];
+    }
+
+    public TimingHistogram getWarmupHistogram(int handle) {
+        return warmupHistograms[handle];
+    }
+
+    public SteadyStateDetector getSteadyStateDetector(int handle) {
+        return detectors[handle];
+    }
+
+    // Number of tags that got at least one sample
+    public int getRecordedCount() {
+        return recordedCount;
+    }
+
+    // Handle of the i-th recorded tag
+    public int getRecordedHandle(int i) {
+        return recordedOrder[i];
+    }
+
+    // Clears all samples, keeping registered tags and their histograms. Steady state detection
+    // is not restarted: warm-up happens once per run.
+    public void reset() {
+        for (int i = 0; i < tags.size(); i++) {
+            histograms[i].reset();
+            warmupHistograms[i].reset();
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= histograms.length)
+            return;
+
+        int newLength = Math.max(capacity, histograms.length * 2);
+        String[] newCsvTags = new String[newLength];
+        TimingHistogram[] newHistograms = new TimingHistogram[newLength];
+        boolean[] newRecorded = new boolean[newLength];
+        int[] newRecordedOrder = new int[newLength];
+        TimingHistogram[] newWarmupHistograms = new TimingHistogram[newLength];
+        SteadyStateDetector[] newDetectors = new SteadyStateDetector[newLength];
+
+        System.arraycopy(csvTags, 0, newCsvTags, 0, csvTags.length);
+        System.arraycopy(histograms, 0, newHistograms, 0, histograms.length);
+        System.arraycopy(recorded, 0, newRecorded, 0, recorded.length);
+        System.arraycopy(recordedOrder, 0, newRecordedOrder, 0, recordedOrder.length);
+        System.arraycopy(warmupHistograms, 0, newWarmupHistograms, 0, warmupHistograms.length);
+        System.arraycopy(detectors, 0, newDetectors, 0, detectors.length);
+
+        csvTags = newCsvTags;
+        histograms = newHistograms;
+        recorded = newRecorded;
+        recordedOrder = newRecordedOrder;
+        warmupHistograms = newWarmupHistograms;
+        detectors = newDetectors;
+    }
+}
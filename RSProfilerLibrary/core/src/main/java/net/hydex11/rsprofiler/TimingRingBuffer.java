@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer, single-consumer ring buffer of timing records (tag id, nanoseconds,
+ * sequence number), stored in primitive arrays.
+ * <p>
+ * The producer (the measuring thread) never blocks and never allocates: if the buffer is full,
+ * the record is dropped and counted. Sequence numbers include dropped records, so gaps can be
+ * detected later on.
+ */
+public class TimingRingBuffer {
+
+    private final int mask;
+
+    private final int[] tagIds;
+    private final long[] values;
+    private final long[] sequences;
+
+    // Next index to be written, published by the producer
+    private final AtomicLong writeIndex = new AtomicLong();
+    // Next index to be read, published by the consumer
+    private final AtomicLong readIndex = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // Producer only fields
+    private long nextSequence = 0;
+    private long cachedReadIndex = 0;
+
+    // Capacity gets rounded up to a power of two
+    public TimingRingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        mask = size - 1;
+        tagIds = new int[size];
+        values = new long[size];
+        sequences = new long[size];
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // Producer side. Returns false if the record has been dropped because the buffer is full.
+    public boolean offer(int tagId, long value) {
+        long sequence = nextSequence++;
+        long index = writeIndex.get();
+
+        if (index - cachedReadIndex > mask) {
+            // Looks full, check again what the consumer has really read
+            cachedReadIndex = readIndex.get();
+            if (index - cachedReadIndex > mask) {
+                droppedCount.lazySet(droppedCount.get() + 1);
+                return false;
+            }
+        }
+
+        int position = (int) index & mask;
+        tagIds[position] = tagId;
+        values[position] = value;
+        sequences[position] = sequence;
+
+        // Ordered store: record fields are visible before the new index
+        writeIndex.lazySet(index + 1);
+        return true;
+    }
+
+    // Consumer side. Index up to which records have been published.
+    public long getWriteIndex() {
+        return writeIndex.get();
+    }
+
+    // Consumer side. Copies records, up to the given write index, into the destination arrays.
+    // Returns the number of copied records, at most the length of the arrays.
+    public int poll(int[] tagIdsOut, long[] valuesOut, long[] sequencesOut, long upToWriteIndex) {
+        long index = readIndex.get();
+        int count = (int) Math.min(upToWriteIndex - index, tagIdsOut.length);
+
+        for (int i = 0; i < count; i++) {
+            int position = (int) (index + i) & mask;
+            tagIdsOut[i] = tagIds[position];
+            valuesOut[i] = values[position];
+            sequencesOut[i] = sequences[position];
+        }
+
+        if (count > 0)
+            readIndex.lazySet(index + count);
+        return count;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces update requests coming from any thread, so that at most one update is scheduled
+ * at a time. LogView uses it to invalidate itself at most once per frame, however many lines
+ * arrive in the meantime.
+ */
+public class UpdateCoalescer {
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    // Returns true if the caller has to schedule the update: only the first request since
+    // the last update does
+    public boolean request() {
+        return pending.compareAndSet(false, true);
+    }
+
+    // To be called when the update starts, so that requests made while updating schedule
+    // a new one
+    public void onUpdate() {
+        pending.set(false);
+    }
+
+    public boolean isPending() {
+        return pending.get();
+    }
+}
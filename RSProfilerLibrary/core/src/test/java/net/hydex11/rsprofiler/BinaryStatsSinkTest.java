@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class BinaryStatsSinkTest {
+
+    @Test
+    public void ringBuffer_dropsAndCountsWhenFull() throws Exception {
+        TimingRingBuffer ringBuffer = new TimingRingBuffer(6);
+        assertEquals(8, ringBuffer.getCapacity());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 8, ringBuffer.offer(i, i * 100));
+        }
+        assertEquals(2, ringBuffer.getDroppedCount());
+
+        int[] tagIds = new int[4];
+        long[] values = new long[4];
+        long[] sequences = new long[4];
+        long writeIndex = ringBuffer.getWriteIndex();
+
+        assertEquals(4, ringBuffer.poll(tagIds, values, sequences, writeIndex));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, tagIds);
+        assertEquals(300, values[3]);
+
+        // Space has been freed: sequence numbers keep counting dropped records
+        assertTrue(ringBuffer.offer(42, 4200));
+        assertEquals(4, ringBuffer.poll(tagIds, values, sequences, writeIndex));
+        assertEquals(1, ringBuffer.poll(tagIds, values, sequences, ringBuffer.getWriteIndex()));
+        assertEquals(42, tagIds[0]);
+        assertEquals(10, sequences[0]);
+    }
+
+    @Test
+    public void ringBuffer_concurrentProducerAndConsumer() throws Exception {
+        final TimingRingBuffer ringBuffer = new TimingRingBuffer(1024);
+        final int total = 2000000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < total; i++) {
+                    ringBuffer.offer(i % 7, i);
+                }
+            }
+        });
+        producer.start();
+
+        int[] tagIds = new int[100];
+        long[] values = new long[100];
+        long[] sequences = new long[100];
+        long received = 0;
+        long lastSequence = -1;
+
+        while (producer.isAlive() || ringBuffer.getWriteIndex() > received) {
+            int count = ringBuffer.poll(tagIds, values, sequences, ringBuffer.getWriteIndex());
+            for (int i = 0; i < count; i++) {
+                // Every record is consistent and sequences only increase
+                assertEquals(sequences[i], values[i]);
+                assertEquals((int) (values[i] % 7), tagIds[i]);
+                assertTrue(sequences[i] > lastSequence);
+                lastSequence = sequences[i];
+            }
+            received += count;
+        }
+
+        assertEquals(total, received + ringBuffer.getDroppedCount());
+    }
+
+    @Test
+    public void sink_roundTripToCsv() throws Exception {
+        File binaryFile = File.createTempFile("stats", ".bin");
+        File csvFile = File.createTempFile("stats", ".csv");
+        try {
+            BinaryStatsSink sink = new BinaryStatsSink(binaryFile, 64 * 1024, 1);
+            sink.defineTag(0, "blur1 - NDK");
+            sink.defineTag(1, "RGBAtoGRAY - pointers_ rsGet");
+
+            StringBuilder expected = new StringBuilder("Tag,Timing\n");
+            for (int i = 0; i < 20000; i++) {
+                int tagId = i % 2;
+                long nanos = 1000000 + i * 137;
+                assertTrue(sink.record(tagId, nanos));
+                expected.append(tagId == 0 ? "blur1 - NDK" : "RGBAtoGRAY - pointers_ rsGet")
+                        .append(',').append(nanos / 1000000.0).append('\n');
+
+                // A tag defined while the sink is running
+                if (i == 10000)
+                    sink.defineTag(2, "late tag");
+            }
+            sink.record(2, 5000000);
+            expected.append("late tag,5.0\n");
+            sink.close();
+
+            BinaryStatsConverter converter = new BinaryStatsConverter();
+            converter.convert(binaryFile, csvFile);
+
+            assertEquals(expected.toString(), readFile(csvFile));
+            assertEquals(20001, converter.getSampleCount());
+            assertEquals(0, converter.getDroppedCount());
+            assertEquals(0, converter.getSequenceGaps());
+        } finally {
+            binaryFile.delete();
+            csvFile.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void converter_rejectsUndefinedTags() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(BinaryStatsSink.MAGIC);
+        output.writeShort(BinaryStatsSink.VERSION);
+        output.writeByte(BinaryStatsSink.RECORD_SAMPLES);
+        output.writeInt(1);
+        output.writeInt(3);
+        output.writeLong(1000);
+        output.writeLong(0);
+        output.close();
+
+        new BinaryStatsConverter().convert(new ByteArrayInputStream(bytes.toByteArray()), new StringWriter());
+    }
+
+    private static String readFile(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentTimingRecorderTest {
+
+    private static final int THREADS = 8;
+    private static final int SAMPLES_PER_THREAD = 50000;
+
+    // Merged view, only touched by the draining thread (like Timings' histograms)
+    private static class MergedSamples implements ConcurrentTimingRecorder.SampleListener {
+        final long[] counts = new long[THREADS];
+        final long[] sums = new long[THREADS];
+        final long[] lastValues = new long[THREADS];
+        boolean outOfOrder = false;
+
+        @Override
+        public void onSample(int timingHandle, long elapsedNanos) {
+            // Every thread records increasing values under its own handle
+            if (elapsedNanos <= lastValues[timingHandle])
+                outOfOrder = true;
+            lastValues[timingHandle] = elapsedNanos;
+            counts[timingHandle]++;
+            sums[timingHandle] += elapsedNanos;
+        }
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws Exception {
+        // Buffers big enough to hold everything: no sample may be dropped, so any lost or
+        // corrupted sample is a bug
+        final ConcurrentTimingRecorder recorder = new ConcurrentTimingRecorder(SAMPLES_PER_THREAD);
+        final MergedSamples merged = new MergedSamples();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean producing = new AtomicBoolean(true);
+
+        Thread[] producers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int handle = t;
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    recorder.startInterval();
+                    long intervalStart = recorder.getIntervalStart();
+                    for (int i = 1; i <= SAMPLES_PER_THREAD; i++) {
+                        // Elapsed value is i
+                        assertEquals(i, recorder.record(handle, intervalStart + i));
+                        if (i % 1000 == 0)
+                            Thread.yield();
+                    }
+                }
+            });
+            producers[t].start();
+        }
+
+        // Report-time merging runs while producers are recording
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (producing.get()) {
+                    recorder.drain(merged);
+                }
+            }
+        });
+        drainer.start();
+
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        producing.set(false);
+        drainer.join();
+
+        // Last samples, recorded after the drainer stopped, of threads that already ended
+        recorder.drain(merged);
+
+        assertEquals(0, recorder.getDroppedCount());
+        assertFalse(merged.outOfOrder);
+        long expectedSum = (long) SAMPLES_PER_THREAD * (SAMPLES_PER_THREAD + 1) / 2;
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(SAMPLES_PER_THREAD, merged.counts[t]);
+            assertEquals(expectedSum, merged.sums[t]);
+        }
+
+        // Buffers of ended threads are released once drained
+        assertEquals(0, recorder.getThreadCount());
+    }
+
+    @Test
+    public void fullBufferDropsAndCounts() throws Exception {
+        ConcurrentTimingRecorder recorder = new ConcurrentTimingRecorder(16);
+        MergedSamples merged = new MergedSamples();
+
+        recorder.startInterval();
+        long intervalStart = recorder.getIntervalStart();
+        for (int i = 1; i <= 20; i++) {
+            recorder.record(0, intervalStart + i);
+        }
+
+        assertEquals(16, recorder.drain(merged));
+        assertEquals(4, recorder.getDroppedCount());
+
+        // Space is available again after draining
+        recorder.record(0, intervalStart + 100);
+        assertEquals(1, recorder.drain(merged));
+        assertEquals(1, recorder.getThreadCount());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FenceSamplerTest {
+
+    @Test
+    public void fencesOnlySampledFrames() throws Exception {
+        FenceSampler sampler = new FenceSampler(10);
+
+        int stageFenced = 0;
+        int latencyFenced = 0;
+        for (int i = 0; i < 100; i++) {
+            int type = sampler.beginFrame(i * 1000);
+            if (type == FenceSampler.STAGE_FENCED)
+                stageFenced++;
+            else if (type == FenceSampler.LATENCY_FENCED)
+                latencyFenced++;
+            sampler.endFrame(i * 1000 + 500);
+        }
+
+        assertEquals(10, stageFenced);
+        assertEquals(10, latencyFenced);
+        assertEquals(100, sampler.getFrameCount());
+    }
+
+    @Test
+    public void periodIsOnlyMeasuredBetweenPipelinedFrames() throws Exception {
+        FenceSampler sampler = new FenceSampler(4);
+
+        // Frame 0: stage fenced, slow because serialized
+        assertEquals(FenceSampler.STAGE_FENCED, sampler.beginFrame(0));
+        assertTrue(sampler.isStageFenced());
+        sampler.endFrame(10000);
+        assertEquals(-1, sampler.getPeriod());
+        assertEquals(-1, sampler.getSubmissionTime());
+
+        // Frame 1: pipelined, but follows a fenced frame
+        assertEquals(FenceSampler.PIPELINED, sampler.beginFrame(10000));
+        sampler.endFrame(10300);
+        assertEquals(-1, sampler.getPeriod());
+        assertEquals(300, sampler.getSubmissionTime());
+
+        // Frame 2: latency fenced, waits for all queued work at its end
+        assertEquals(FenceSampler.LATENCY_FENCED, sampler.beginFrame(10300));
+        assertTrue(sampler.isEndFenced());
+        assertFalse(sampler.isStageFenced());
+        sampler.endFrame(17300);
+        assertEquals(7000, sampler.getLatency());
+        assertEquals(-1, sampler.getPeriod());
+    }
+
+    @Test
+    public void periodOfConsecutivePipelinedFrames() throws Exception {
+        FenceSampler sampler = new FenceSampler(10);
+
+        sampler.beginFrame(0);
+        sampler.endFrame(10000);
+
+        // Frame 1 follows a fenced frame, frame 2 follows a pipelined one
+        assertEquals(FenceSampler.PIPELINED, sampler.beginFrame(10000));
+        sampler.endFrame(10300);
+        assertEquals(FenceSampler.PIPELINED, sampler.beginFrame(10300));
+        sampler.endFrame(15300);
+        assertEquals(5000, sampler.getPeriod());
+        assertEquals(5000, sampler.getSubmissionTime());
+        assertEquals(-1, sampler.getLatency());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ForwardedLinesTest {
+
+    @Test
+    public void consume_matchesForwardedLinesOnly() {
+        ForwardedLines forwarded = new ForwardedLines(16);
+        forwarded.add("Timings", "kernel: 3 ms");
+
+        // Same tag, but logged directly: kept
+        assertFalse(forwarded.consume("Timings", "kernel: 4 ms"));
+        assertTrue(forwarded.consume("Timings", "kernel: 3 ms"));
+        // Each copy is consumed once
+        assertFalse(forwarded.consume("Timings", "kernel: 3 ms"));
+        assertEquals(0, forwarded.size());
+    }
+
+    @Test
+    public void add_splitsMultilineMessages() {
+        ForwardedLines forwarded = new ForwardedLines(16);
+        forwarded.add("Timings", "first\nsecond");
+        forwarded.add("Timings", "first");
+
+        assertEquals(3, forwarded.size());
+        assertTrue(forwarded.consume("Timings", "first"));
+        assertTrue(forwarded.consume("Timings", "second"));
+        assertTrue(forwarded.consume("Timings", "first"));
+        assertFalse(forwarded.consume("Timings", "first"));
+    }
+
+    @Test
+    public void add_forgetsOldestLinesPastCapacity() {
+        ForwardedLines forwarded = new ForwardedLines(4);
+        for (int i = 0; i < 6; i++) {
+            forwarded.add("Timings", "line " + i);
+        }
+
+        assertEquals(4, forwarded.size());
+        assertFalse(forwarded.consume("Timings", "line 1"));
+        assertTrue(forwarded.consume("Timings", "line 2"));
+        assertTrue(forwarded.consume("Timings", "line 5"));
+        assertEquals(2, forwarded.size());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameCaptureTest {
+
+    static byte[] frame(int size, int seed) {
+        byte[] frame = new byte[size];
+        for (int i = 0; i < size; i++)
+            frame[i] = (byte) (i * 31 + seed);
+        return frame;
+    }
+
+    @Test
+    public void framesAndTimestampsRoundTrip() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        try {
+            FrameCaptureWriter writer = new FrameCaptureWriter(file, 6, 4);
+            assertEquals(36, writer.getFrameSize());
+            for (int i = 0; i < 5; i++)
+                writer.write(frame(writer.getFrameSize(), i), 1000L * i + 7);
+            writer.close();
+
+            FrameCaptureReader reader = new FrameCaptureReader(file);
+            assertEquals(6, reader.getWidth());
+            assertEquals(4, reader.getHeight());
+            assertEquals(5, reader.getFrameCount());
+
+            byte[] read = new byte[reader.getFrameSize()];
+            for (int i = 0; i < 5; i++) {
+                assertEquals(1000L * i + 7, reader.getTimestamp(i));
+                reader.readFrame(i, read);
+                assertArrayEquals(frame(36, i), read);
+            }
+
+            ByteBuffer view = reader.getFrame(3);
+            assertEquals(36, view.remaining());
+            assertEquals((byte) 3, view.get(0));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void oddSizesUseRoundedChromaPlane() {
+        assertEquals(1280 * 720 * 3 / 2, FrameCaptureWriter.getNV21FrameSize(1280, 720));
+        assertEquals(5 * 3 + 2 * 3 * 2, FrameCaptureWriter.getNV21FrameSize(5, 3));
+    }
+
+    @Test
+    public void partialLastFrameIsIgnored() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        try {
+            FrameCaptureWriter writer = new FrameCaptureWriter(file, 4, 2);
+            writer.write(frame(12, 0), 1);
+            writer.write(frame(12, 1), 2);
+            writer.close();
+
+            // Simulates a capture interrupted while writing its second frame
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(randomAccessFile.length() - 5);
+            randomAccessFile.close();
+
+            FrameCaptureReader reader = new FrameCaptureReader(file);
+            assertEquals(1, reader.getFrameCount());
+            assertEquals(1, reader.getTimestamp(0));
+
+            try {
+                reader.getTimestamp(1);
+                fail("Frame 1 should not be readable");
+            } catch (IndexOutOfBoundsException e) {
+                // Expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            outputStream.write(new byte[64]);
+            outputStream.close();
+
+            try {
+                new FrameCaptureReader(file);
+                fail("Invalid capture should be rejected");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameQueueTest {
+
+    static class ListRecycler implements FrameQueue.Recycler<Integer> {
+        final List<Integer> frames = new ArrayList<Integer>();
+
+        @Override
+        public synchronized void recycle(Integer frame) {
+            frames.add(frame);
+        }
+    }
+
+    @Test
+    public void latestWinsKeepsOnlyNewestFrame() throws Exception {
+        ListRecycler recycler = new ListRecycler();
+        FrameQueue<Integer> queue = new FrameQueue<Integer>(FrameQueue.Policy.LATEST_WINS, 3, recycler);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(3, queue.getQueuedCount());
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(2, recycler.frames.size());
+        assertEquals(Integer.valueOf(1), recycler.frames.get(0));
+        assertEquals(Integer.valueOf(2), recycler.frames.get(1));
+
+        Integer frame = queue.take();
+        assertEquals(Integer.valueOf(3), frame);
+        queue.done(frame);
+        assertEquals(1, queue.getProcessedCount());
+        assertEquals(3, recycler.frames.size());
+    }
+
+    @Test
+    public void dropOldestKeepsUpToCapacity() throws Exception {
+        ListRecycler recycler = new ListRecycler();
+        FrameQueue<Integer> queue = new FrameQueue<Integer>(FrameQueue.Policy.DROP_OLDEST, 2, recycler);
+
+        queue.offer(1);
+        queue.offer(2);
+        assertEquals(0, queue.getDroppedCount());
+
+        queue.offer(3);
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(Integer.valueOf(1), recycler.frames.get(0));
+
+        assertEquals(Integer.valueOf(2), queue.take());
+        assertEquals(Integer.valueOf(3), queue.take());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void closeRecyclesPendingAndWakesConsumer() throws Exception {
+        ListRecycler recycler = new ListRecycler();
+        final FrameQueue<Integer> queue = new FrameQueue<Integer>(FrameQueue.Policy.DROP_OLDEST, 4, recycler);
+
+        final Integer[] taken = new Integer[]{-1};
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    taken[0] = queue.take();
+                } catch (InterruptedException e) {
+                    // Leaves -1
+                }
+            }
+        });
+        consumer.start();
+        queue.close();
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertNull(taken[0]);
+
+        // Offers after close are rejected and handed back right away
+        assertFalse(queue.offer(7));
+        assertEquals(Integer.valueOf(7), recycler.frames.get(0));
+        assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    public void everyFrameIsEitherDroppedOrProcessed() throws Exception {
+        ListRecycler recycler = new ListRecycler();
+        final FrameQueue<Integer> queue = new FrameQueue<Integer>(FrameQueue.Policy.DROP_OLDEST, 2, recycler);
+        final int frames = 10000;
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Integer frame;
+                    while ((frame = queue.take()) != null)
+                        queue.done(frame);
+                } catch (InterruptedException e) {
+                    // Exits
+                }
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < frames; i++)
+            queue.offer(i);
+
+        // Waits for the consumer to catch up before closing
+        while (queue.getPendingCount() > 0)
+            Thread.sleep(1);
+        queue.close();
+        consumer.join(5000);
+
+        assertEquals(frames, queue.getQueuedCount());
+        assertEquals(frames, queue.getDroppedCount() + queue.getProcessedCount());
+        assertEquals(frames, recycler.frames.size());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameReplayerTest {
+
+    static File writeCapture(int frames) throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        FrameCaptureWriter writer = new FrameCaptureWriter(file, 8, 8);
+        byte[] frame = new byte[writer.getFrameSize()];
+        for (int i = 0; i < frames; i++) {
+            frame[0] = (byte) i;
+            writer.write(frame, i * 33333333L);
+        }
+        writer.close();
+        return file;
+    }
+
+    @Test
+    public void replaysSameSequenceEveryLoop() throws Exception {
+        File file = writeCapture(4);
+        try {
+            FrameReplayer replayer = new FrameReplayer(new FrameCaptureReader(file));
+            final List<Integer> firstBytes = new ArrayList<Integer>();
+            final List<Long> timestamps = new ArrayList<Long>();
+
+            replayer.replay(new FrameReplayer.FrameConsumer() {
+                @Override
+                public void onFrame(byte[] frame, int index, long timestampNanos) {
+                    firstBytes.add((int) frame[0]);
+                    timestamps.add(timestampNanos);
+                    // Consumers may modify their input, without affecting later loops
+                    frame[0] = 100;
+                }
+            }, FrameReplayer.MAX_RATE, 2);
+
+            assertEquals(8, replayer.getProcessedCount());
+            assertEquals(8, replayer.getProcessingTimes().getTotalCount());
+            assertEquals(0, replayer.getLateCount());
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i % 4, (int) firstBytes.get(i));
+                assertEquals((i % 4) * 33333333L, (long) timestamps.get(i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void fixedRateIsPaced() throws Exception {
+        File file = writeCapture(6);
+        try {
+            FrameReplayer replayer = new FrameReplayer(new FrameCaptureReader(file));
+            replayer.replay(new FrameReplayer.FrameConsumer() {
+                @Override
+                public void onFrame(byte[] frame, int index, long timestampNanos) {
+                }
+            }, 100, 1);
+
+            // Six frames at 100 fps: the last one starts 50 ms after the first one
+            assertEquals(6, replayer.getProcessedCount());
+            assertTrue(replayer.getElapsedTime() >= 50000000L);
+            assertTrue(replayer.getThroughput() <= 120);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void slowConsumerFramesAreLateNotSkipped() throws Exception {
+        File file = writeCapture(4);
+        try {
+            FrameReplayer replayer = new FrameReplayer(new FrameCaptureReader(file));
+            replayer.replay(new FrameReplayer.FrameConsumer() {
+                @Override
+                public void onFrame(byte[] frame, int index, long timestampNanos) throws Exception {
+                    Thread.sleep(20);
+                }
+            }, 1000, 1);
+
+            assertEquals(4, replayer.getProcessedCount());
+            assertEquals(3, replayer.getLateCount());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LineRingTest {
+
+    @Test
+    public void add_replacesOldestLinesWhenFull() {
+        LineRing ring = new LineRing(3);
+        for (int i = 0; i < 5; i++) {
+            ring.add("line " + i);
+        }
+
+        assertEquals(3, ring.size());
+        assertEquals(5, ring.getAddedCount());
+        assertEquals("line 2", ring.get(0));
+        assertEquals("line 4", ring.get(2));
+
+        ring.clear();
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void getWindow_wrapsAndScrollsFromBottom() {
+        LineRing ring = new LineRing(100);
+        for (int i = 0; i < 50; i++) {
+            ring.add("line " + i);
+        }
+        // 3 rows at 10 columns
+        ring.add("a wrapped line, 25 chars");
+        assertEquals(3, LineRing.getRowCount("a wrapped line, 25 chars", 10));
+        assertEquals(1, LineRing.getRowCount("", 10));
+
+        LineRing.Window window = new LineRing.Window(4);
+
+        // Following the newest line: 3 rows of it, plus "line 49"
+        ring.getWindow(10, 4, 0, window);
+        assertEquals(2, window.count);
+        assertEquals("line 49", window.lines[0]);
+        assertEquals("a wrapped line, 25 chars", window.lines[1]);
+        assertEquals(0, window.skippedRows);
+
+        // Scrolled up by one row: the top of the wrapped line is in view, "line 48" too
+        ring.getWindow(10, 4, 1, window);
+        assertEquals(3, window.count);
+        assertEquals("line 48", window.lines[0]);
+        assertEquals(0, window.skippedRows);
+        assertEquals(1, window.rowsFromBottom);
+
+        // Bottom of the view in the middle of the wrapped line, top cutting nothing
+        ring.getWindow(10, 2, 2, window);
+        assertEquals(2, window.count);
+        assertEquals("line 49", window.lines[0]);
+
+        // Only the middle row of the wrapped line: its first row is above the view
+        ring.getWindow(10, 1, 1, window);
+        assertEquals(1, window.count);
+        assertEquals(1, window.skippedRows);
+    }
+
+    @Test
+    public void getWindow_clampsToOldestLine() {
+        LineRing ring = new LineRing(100);
+        for (int i = 0; i < 10; i++) {
+            ring.add("line " + i);
+        }
+
+        LineRing.Window window = new LineRing.Window(4);
+        ring.getWindow(80, 4, 1000, window);
+        assertEquals(6, window.rowsFromBottom);
+        assertEquals(4, window.count);
+        assertEquals("line 0", window.lines[0]);
+        assertEquals("line 3", window.lines[3]);
+
+        // Less lines than rows: all of them
+        LineRing shortRing = new LineRing(100);
+        shortRing.add("only line");
+        shortRing.getWindow(80, 4, 3, window);
+        assertEquals(0, window.rowsFromBottom);
+        assertEquals(1, window.count);
+        assertNull(window.lines[1]);
+
+        assertEquals(2, ring.getNewestRowCount(2, 80));
+    }
+
+    @Test
+    public void updateCoalescer_schedulesOneUpdateAtATime() throws Exception {
+        final UpdateCoalescer coalescer = new UpdateCoalescer();
+        final AtomicInteger scheduled = new AtomicInteger();
+
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        if (coalescer.request())
+                            scheduled.incrementAndGet();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        // No update ran: a single one has been scheduled
+        assertEquals(1, scheduled.get());
+        assertTrue(coalescer.isPending());
+
+        // Requests made after the update started schedule the next one
+        coalescer.onUpdate();
+        assertTrue(coalescer.request());
+        assertFalse(coalescer.request());
+    }
+}
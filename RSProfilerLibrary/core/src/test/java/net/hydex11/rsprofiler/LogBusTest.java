@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class LogBusTest {
+
+    private static class CapturingListener implements LogBus.RecordListener {
+        final ArrayList<String> lines = new ArrayList<>();
+
+        @Override
+        public void onRecord(long timestampNanos, String tag, String message) {
+            lines.add(tag + ": " + message);
+        }
+    }
+
+    @Test
+    public void subscription_deliversRecordsInOrder() {
+        LogBus bus = new LogBus(10);
+        assertEquals(16, bus.getCapacity());
+
+        bus.publish("Timings", "first");
+        LogBus.Subscription subscription = bus.subscribe();
+        bus.log("Timings", "second");
+
+        // Records published before subscribing are delivered too, while still in the ring
+        CapturingListener listener = new CapturingListener();
+        assertEquals(2, subscription.poll(listener, 10));
+        assertEquals("Timings: first", listener.lines.get(0));
+        assertEquals("Timings: second", listener.lines.get(1));
+        assertEquals(0, subscription.poll(listener, 10));
+    }
+
+    @Test
+    public void subscription_countsOverwrittenRecords() {
+        LogBus bus = new LogBus(8);
+        LogBus.Subscription subscription = bus.subscribe();
+
+        for (int i = 0; i < 20; i++) {
+            bus.publish("Timings", "line " + i);
+        }
+        assertEquals(20, subscription.getPendingCount());
+
+        CapturingListener listener = new CapturingListener();
+        assertEquals(3, subscription.poll(listener, 3));
+        assertEquals(12, subscription.getMissedCount());
+        assertEquals("Timings: line 12", listener.lines.get(0));
+
+        assertEquals(5, subscription.poll(listener, 10));
+        assertEquals("Timings: line 19", listener.lines.get(7));
+        assertEquals(0, subscription.getPendingCount());
+    }
+
+    @Test
+    public void subscription_concurrentProducers() throws Exception {
+        final LogBus bus = new LogBus(1 << 16);
+        final int producerCount = 4;
+        final int recordsPerProducer = 10000;
+        LogBus.Subscription subscription = bus.subscribe();
+
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final String tag = "Producer" + p;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < recordsPerProducer; i++) {
+                        bus.publish(tag, Integer.toString(i));
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        // Every producer's records come in its own order
+        final int[] nextValues = new int[producerCount];
+        LogBus.RecordListener listener = new LogBus.RecordListener() {
+            @Override
+            public void onRecord(long timestampNanos, String tag, String message) {
+                int producer = tag.charAt(tag.length() - 1) - '0';
+                assertEquals(nextValues[producer], Integer.parseInt(message));
+                nextValues[producer]++;
+            }
+        };
+
+        int delivered = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread producer : producers) {
+                running |= producer.isAlive();
+            }
+            delivered += subscription.poll(listener, 1000);
+        }
+        delivered += subscription.poll(listener, Integer.MAX_VALUE);
+
+        assertEquals(producerCount * recordsPerProducer, delivered);
+        assertEquals(0, subscription.getMissedCount());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class LogcatLineParserTest {
+
+    // Recorded with "logcat -v brief" while running ProfilerExample
+    private static final String RECORDED_LOGCAT = "--------- beginning of main\n"
+            + "D/LogView (11096): Instantiated new LogView\n"
+            + "W/art     (11096): Suspending all threads took: 5.780ms\n"
+            + "I/Timeline(11096): Timeline: Activity_idle id: android.os.BinderProxy@273fb0d2 time:364339488\n"
+            + "I/Timings (11096): blur3 - NDK: 1.234ms (p50 1.201, p90 1.380, p99 1.502, max 1.610, sd 0.072, n 50)\n"
+            + "--------- beginning of system\n"
+            + "I/ActivityManager(  812): Displayed net.hydex11.profilerexample/.MainActivity: +412ms\n"
+            + "E/System.err(11096): java.io.IOException: test\n"
+            + "I/Timings (11096): Total samples: 250   \n"
+            + "I/Timings (11096):\n"
+            + "\tat net.hydex11.profilerexample.MainActivity.onCreate(MainActivity.java:120)\n";
+
+    private static ArrayList<String> parseAll(String text) throws IOException {
+        LogcatLineParser parser = new LogcatLineParser();
+        ArrayList<String> parsed = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (parser.parse(line))
+                parsed.add(parser.getPriority() + "|" + parser.getTag() + "|" + parser.getPid() + "|" + parser.getMessage());
+        }
+        return parsed;
+    }
+
+    @Test
+    public void parse_recordedLogcat() throws IOException {
+        ArrayList<String> parsed = parseAll(RECORDED_LOGCAT);
+
+        assertEquals(8, parsed.size());
+        assertEquals("D|LogView|11096|Instantiated new LogView", parsed.get(0));
+        assertEquals("W|art|11096|Suspending all threads took: 5.780ms", parsed.get(1));
+        assertEquals("I|Timeline|11096|Timeline: Activity_idle id: android.os.BinderProxy@273fb0d2 time:364339488", parsed.get(2));
+        assertEquals("I|Timings|11096|blur3 - NDK: 1.234ms (p50 1.201, p90 1.380, p99 1.502, max 1.610, sd 0.072, n 50)", parsed.get(3));
+        assertEquals("I|ActivityManager|812|Displayed net.hydex11.profilerexample/.MainActivity: +412ms", parsed.get(4));
+        assertEquals("E|System.err|11096|java.io.IOException: test", parsed.get(5));
+        assertEquals("I|Timings|11096|Total samples: 250", parsed.get(6));
+        assertEquals("I|Timings|11096|", parsed.get(7));
+    }
+
+    @Test
+    public void parse_rejectsMalformedLines() {
+        LogcatLineParser parser = new LogcatLineParser();
+
+        assertFalse(parser.parse(""));
+        assertFalse(parser.parse("X/Timings(123): message"));
+        assertFalse(parser.parse("I/Timings 123: message"));
+        assertFalse(parser.parse("I/(123): message"));
+        assertFalse(parser.parse("I/Timings(): message"));
+        assertFalse(parser.parse("I/Timings(12a): message"));
+        assertFalse(parser.parse("I/Timings(123) message"));
+    }
+
+    @Test
+    public void deduplicator_skipsRecentLinesWithBoundedMemory() {
+        LineDeduplicator deduplicator = new LineDeduplicator(100);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(deduplicator.add("I/Timings(1): line " + i));
+        }
+        // LogCat buffer read again, after a restart of the reader
+        for (int i = 0; i < 100; i++) {
+            assertFalse(deduplicator.add("I/Timings(1): line " + i));
+        }
+
+        // At least the last 100 lines are remembered, older ones get forgotten
+        for (int i = 100; i < 350; i++) {
+            assertTrue(deduplicator.add("I/Timings(1): line " + i));
+        }
+        for (int i = 250; i < 350; i++) {
+            assertFalse(deduplicator.add("I/Timings(1): line " + i));
+        }
+        assertTrue(deduplicator.add("I/Timings(1): line 0"));
+
+        deduplicator.clear();
+        assertTrue(deduplicator.add("I/Timings(1): line 349"));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MultiPatternMatcherTest {
+
+    @Test
+    public void find_overlappingPatterns() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher("he", "she", "his", "hers");
+
+        assertEquals(4, matcher.getPatternCount());
+        // "she" and "he" end on the same character: lowest index wins
+        assertEquals(0, matcher.find("ushers"));
+        assertEquals(2, matcher.find("this"));
+        assertEquals(MultiPatternMatcher.NO_MATCH, matcher.find("hi, s.h.e"));
+        assertEquals(MultiPatternMatcher.NO_MATCH, matcher.find(""));
+    }
+
+    @Test
+    public void find_sameResultsAsContains() {
+        String[] patterns = {"RSNDK", "RSJava", "Timings", "NDK", "aab", "ab", "\u00e9\u20ac"};
+        MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+
+        Random random = new Random(42);
+        String alphabet = "RSNDKJavTimngsab \u00e9\u20ac:/";
+        StringBuilder text = new StringBuilder();
+        for (int t = 0; t < 5000; t++) {
+            text.setLength(0);
+            int length = random.nextInt(30);
+            for (int i = 0; i < length; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            boolean contained = false;
+            for (String pattern : patterns) {
+                contained |= text.toString().contains(pattern);
+            }
+            int found = matcher.find(text);
+            assertEquals(text.toString(), contained, found != MultiPatternMatcher.NO_MATCH);
+            if (found != MultiPatternMatcher.NO_MATCH)
+                assertTrue(text.toString().contains(matcher.getPattern(found)));
+        }
+    }
+
+    @Test
+    public void next_matchesAcrossPieces() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher("I/Timings:");
+
+        int state = matcher.next(MultiPatternMatcher.START, 'I');
+        state = matcher.next(state, '/');
+        state = matcher.next(state, "xTimingsx", 1, 8);
+        assertEquals(MultiPatternMatcher.NO_MATCH, matcher.getMatch(state));
+        state = matcher.next(state, ": message");
+        assertEquals(0, matcher.getMatch(state));
+
+        // Found is final
+        state = matcher.next(state, "anything else");
+        assertEquals(0, matcher.getMatch(state));
+    }
+
+    @Test
+    public void logLineFilter_matchesFormattedLine() {
+        LogcatLineParser parser = new LogcatLineParser();
+        LogLineFilter filter = new LogLineFilter(new String[]{"RSJava", "I/RSNDK: Sum"});
+
+        assertTrue(parser.parse("I/RSNDK  ( 1234): Sum 42"));
+        assertEquals(1, filter.classify(parser));
+        assertTrue(parser.parse("I/RSNDK  ( 1234): Product 42"));
+        assertFalse(filter.accepts(parser));
+        assertTrue(parser.parse("D/Other  ( 1234): from RSJava"));
+        assertEquals(0, filter.classify(parser));
+
+        assertTrue(filter.accepts('I', "RSNDK", "Sum 1"));
+        assertFalse(filter.accepts('D', "RSNDK", "Sum 1"));
+
+        LogLineFilter acceptAll = new LogLineFilter(null);
+        assertTrue(acceptAll.isAcceptingAll());
+        assertTrue(acceptAll.accepts('V', "Any", ""));
+    }
+}
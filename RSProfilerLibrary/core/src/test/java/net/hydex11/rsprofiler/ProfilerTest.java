@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class ProfilerTest {
+
+    // Keeps logged lines, in place of LogCat
+    private static class CapturingLogSink implements LogSink {
+        final ArrayList<String> lines = new ArrayList<>();
+
+        @Override
+        public void log(String tag, String message) {
+            lines.add(tag + ": " + message);
+        }
+    }
+
+    @Test
+    public void debugTimings_logsRegisteredTagsEveryInterval() {
+        CapturingLogSink logSink = new CapturingLogSink();
+        Profiler profiler = new Profiler(logSink);
+        profiler.setSteadyStateDetection(false);
+        profiler.setTimingDebugInterval(3);
+
+        int handle = profiler.registerTiming("Kernel");
+        for (int i = 0; i < 3; i++) {
+            profiler.initTimings();
+            profiler.addTiming(handle);
+            profiler.addTiming("Copy %d", 1);
+            assertTrue(logSink.lines.isEmpty());
+            profiler.debugTimings();
+        }
+
+        assertTrue(profiler.isFirstTimingEnded());
+        assertEquals(3, logSink.lines.size());
+        assertTrue(logSink.lines.get(0), logSink.lines.get(0).startsWith("Timings: Kernel: "));
+        assertTrue(logSink.lines.get(0), logSink.lines.get(0).endsWith(", n 3)"));
+        assertTrue(logSink.lines.get(1), logSink.lines.get(1).startsWith("Timings: Copy 1: "));
+        assertEquals("Timings: Total samples: 6", logSink.lines.get(2));
+    }
+
+    @Test
+    public void statsSaveCountLimit_stopsSavingAndRunsEndCallbackOnce() throws IOException {
+        File statsFile = File.createTempFile("profiler", ".bin");
+        statsFile.deleteOnExit();
+
+        Profiler profiler = new Profiler(new CapturingLogSink());
+        final int[] endCalls = new int[1];
+        profiler.setEndCallback(new Profiler.TimingCallback() {
+            @Override
+            public void run() {
+                endCalls[0]++;
+            }
+        });
+        profiler.setStatsSaveCountLimit(5);
+        profiler.startSavingStats(statsFile);
+        assertTrue(profiler.isSavingStats());
+
+        int handle = profiler.registerTiming("Kernel");
+        for (int i = 0; i < 8; i++) {
+            profiler.initTimings();
+            profiler.addTiming(handle);
+        }
+
+        assertFalse(profiler.isSavingStats());
+        assertEquals(1, endCalls[0]);
+
+        // Samples after the limit are not saved
+        BinaryStatsReader reader = new BinaryStatsReader();
+        final ArrayList<String> tags = new ArrayList<>();
+        InputStream inputStream = new FileInputStream(statsFile);
+        try {
+            reader.read(inputStream, new BinaryStatsReader.SampleListener() {
+                @Override
+                public void onSample(String tag, long nanos, long sequence) {
+                    tags.add(tag);
+                }
+            });
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(5, reader.getSampleCount());
+        assertEquals("Kernel", tags.get(4));
+    }
+}
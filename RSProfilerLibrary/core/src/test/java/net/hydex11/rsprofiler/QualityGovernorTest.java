@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+
+    static final long MS = 1000000L;
+
+    // 30 fps, p99 under 50 ms, decisions every 30 frames
+    static QualityGovernor newGovernor(LogSink logSink) {
+        return new QualityGovernor(logSink, 4, QualityGovernor.framePeriodFromFps(30), 50 * MS, 30);
+    }
+
+    // Synthetic pipeline: each level has a base cost, scaled by load, plus 10% noise
+    static int run(QualityGovernor governor, long[] levelCosts, double load, int frames, Random random) {
+        int level = governor.getLevel();
+        for (int i = 0; i < frames; i++) {
+            long latency = (long) (levelCosts[level] * load * (0.95 + 0.1 * random.nextDouble()));
+            level = governor.onFrame(latency);
+        }
+        return level;
+    }
+
+    static final LogSink NO_LOG = new LogSink() {
+        @Override
+        public void log(String tag, String message) {
+        }
+    };
+
+    @Test
+    public void overloadStepsDownUntilTargetsAreMet() {
+        final ArrayList<String> lines = new ArrayList<String>();
+        QualityGovernor governor = newGovernor(new LogSink() {
+            @Override
+            public void log(String tag, String message) {
+                lines.add(tag + ": " + message);
+            }
+        });
+
+        long[] costs = {60 * MS, 40 * MS, 25 * MS, 15 * MS};
+        assertEquals(2, run(governor, costs, 1.0, 3000, new Random(1)));
+        assertEquals(2, governor.getDowngradeCount());
+
+        // Level 2 holds 30 fps, but not with enough margin to try level 1 again
+        assertEquals(0, governor.getUpgradeCount());
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("QualityGovernor: Level 0 -> 1: mean"));
+    }
+
+    @Test
+    public void lowerLoadStepsBackUp() {
+        QualityGovernor governor = newGovernor(NO_LOG);
+        long[] costs = {30 * MS, 20 * MS, 12 * MS, 8 * MS};
+        Random random = new Random(2);
+
+        // Thermal throttling like slowdown, then back to normal
+        assertEquals(3, run(governor, costs, 3.0, 600, random));
+        assertEquals(0, run(governor, costs, 0.7, 1200, random));
+        assertEquals(3, governor.getUpgradeCount());
+    }
+
+    @Test
+    public void failedUpgradesBackOff() {
+        QualityGovernor governor = newGovernor(NO_LOG);
+        // Level 1 is slightly too slow, level 2 is fast enough to keep trying level 1
+        long[] costs = {80 * MS, 36 * MS, 20 * MS, 10 * MS};
+
+        run(governor, costs, 1.0, 3000, new Random(3));
+
+        assertEquals(2, governor.getLevel());
+        assertEquals(QualityGovernor.MAX_UPGRADE_WINDOWS, governor.getUpgradeWindows());
+        // Without backing off, level 1 would have been tried about every 4 windows
+        assertTrue(String.valueOf(governor.getUpgradeCount()), governor.getUpgradeCount() <= 6);
+    }
+
+    @Test
+    public void latencySpikesCountEvenWithGoodMean() {
+        QualityGovernor governor = newGovernor(NO_LOG);
+
+        // Mean of about 20 ms, but one frame out of 15 takes 100 ms
+        for (int i = 0; i < 30; i++)
+            governor.onFrame(i % 15 == 0 ? 100 * MS : 15 * MS);
+
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void missingLatenciesAreIgnored() {
+        QualityGovernor governor = newGovernor(NO_LOG);
+        for (int i = 0; i < 100; i++)
+            assertEquals(0, governor.onFrame(-1));
+        assertEquals(0, governor.getDowngradeCount());
+    }
+}
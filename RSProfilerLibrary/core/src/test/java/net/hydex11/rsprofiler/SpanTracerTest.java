@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class SpanTracerTest {
+
+    @Test
+    public void nestedSpansKeepTheirParent() throws Exception {
+        SpanTracer tracer = new SpanTracer(16);
+        int frameName = tracer.registerName("Camera frame");
+        int stageName = tracer.registerName("YUV to grayscale");
+        assertEquals(frameName, tracer.registerName("Camera frame"));
+
+        int frame = tracer.begin(frameName);
+        int stage = tracer.begin(stageName);
+        long now = System.nanoTime();
+        tracer.add(tracer.registerName("YUV to grayscale (RenderScript)"), now - 1000, now);
+        tracer.end(stage);
+        int sibling = tracer.begin(stageName);
+        tracer.end(sibling);
+        tracer.end(frame);
+
+        assertEquals(4, tracer.getSpanCount());
+        assertEquals(SpanTracer.NO_SPAN, tracer.getParent(frame));
+        assertEquals(frame, tracer.getParent(stage));
+        assertEquals(stage, tracer.getParent(2));
+        assertEquals(frame, tracer.getParent(sibling));
+        assertEquals(1000, tracer.getDuration(2));
+        assertTrue(tracer.getDuration(frame) >= tracer.getDuration(stage));
+    }
+
+    @Test
+    public void spansOfOtherThreadsAreNotNested() throws Exception {
+        final SpanTracer tracer = new SpanTracer(16);
+        final int name = tracer.registerName("span");
+
+        int outer = tracer.begin(name);
+        final int[] inner = new int[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                inner[0] = tracer.begin(name);
+                tracer.end(inner[0]);
+            }
+        });
+        thread.start();
+        thread.join();
+        tracer.end(outer);
+
+        assertEquals(SpanTracer.NO_SPAN, tracer.getParent(inner[0]));
+    }
+
+    @Test
+    public void fullBufferDropsSpans() throws Exception {
+        SpanTracer tracer = new SpanTracer(2);
+        int name = tracer.registerName("span");
+
+        int first = tracer.begin(name);
+        tracer.end(tracer.begin(name));
+        int dropped = tracer.begin(name);
+        tracer.end(dropped);
+        tracer.end(first);
+
+        assertEquals(SpanTracer.NO_SPAN, dropped);
+        assertEquals(2, tracer.getSpanCount());
+        assertEquals(1, tracer.getDroppedCount());
+        // Dropping a span must not break nesting of the following ones
+        tracer.clear();
+        assertEquals(SpanTracer.NO_SPAN, tracer.getParent(tracer.begin(name)));
+    }
+
+    @Test
+    public void exportsChromeTraceEvents() throws Exception {
+        SpanTracer tracer = new SpanTracer(16);
+        int span = tracer.begin(tracer.registerName("blur \"5\""));
+        tracer.end(span);
+        // Still open spans are not exported
+        tracer.begin(tracer.registerName("open"));
+
+        StringWriter writer = new StringWriter();
+        tracer.writeChromeTrace(writer, "net.hydex11.profilerexample");
+        String json = writer.toString();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.contains("\"name\":\"blur \\\"5\\\"\",\"ph\":\"X\""));
+        assertTrue(json.contains("\"ts\":0.000,"));
+        assertTrue(json.contains("\"thread_name\""));
+        assertFalse(json.contains("\"open\""));
+    }
+}
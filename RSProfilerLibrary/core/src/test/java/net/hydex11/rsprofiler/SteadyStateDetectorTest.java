@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SteadyStateDetectorTest {
+
+    @Test
+    public void warmupSamplesAreSeparated() throws Exception {
+        SteadyStateDetector detector = new SteadyStateDetector();
+        TimingHistogram warmup = new TimingHistogram();
+        TimingHistogram steady = new TimingHistogram();
+
+        // First runs are slow (script compilation), then timings ramp down to ~1ms
+        for (int i = 0; i < 20; i++) {
+            detector.record(20000000 - i * 950000, warmup, steady);
+        }
+        assertFalse(detector.isConverged());
+
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            detector.record((long) (1000000 * (1 + 0.02 * random.nextGaussian())), warmup, steady);
+        }
+
+        assertTrue(detector.isConverged());
+        assertFalse(detector.isForced());
+        assertEquals(220, warmup.getTotalCount() + steady.getTotalCount());
+        assertEquals(detector.getWarmupCount(), warmup.getTotalCount());
+        // All ramp samples are warm-up, and none of them leaked into the steady statistics
+        assertTrue(warmup.getTotalCount() >= 20);
+        assertTrue(steady.getMaxValue() < 1200000);
+        assertEquals(1000000, steady.getMean(), 20000);
+    }
+
+    @Test
+    public void noisyTagIsForcedToConverge() throws Exception {
+        SteadyStateDetector detector = new SteadyStateDetector(10, 0.1, 0.05, 50);
+        TimingHistogram warmup = new TimingHistogram();
+        TimingHistogram steady = new TimingHistogram();
+
+        for (int i = 0; i < 100; i++) {
+            detector.record(i % 2 == 0 ? 1000000 : 3000000, warmup, steady);
+        }
+
+        assertTrue(detector.isConverged());
+        assertTrue(detector.isForced());
+        assertEquals(40, warmup.getTotalCount());
+        assertEquals(60, steady.getTotalCount());
+    }
+
+    @Test
+    public void recorderWaitsForEveryRecordedTag() throws Exception {
+        TimingRecorder recorder = new TimingRecorder();
+        recorder.setSteadyStateDetection(true);
+        recorder.setSteadyStateDetection(10, 0.1, 0.05, 1000);
+
+        int stable = recorder.register("stable");
+        int trending = recorder.register("trending");
+        // Registered, but never measured: must not block convergence
+        recorder.register("unused");
+
+        for (int i = 0; i < 20; i++) {
+            recorder.record(stable, 1000000);
+            recorder.record(trending, 1000000 + i * 100000);
+        }
+        assertTrue(recorder.getSteadyStateDetector(stable).isConverged());
+        assertFalse(recorder.isEveryRecordedTagConverged());
+
+        for (int i = 0; i < 20; i++) {
+            recorder.record(trending, 3000000);
+        }
+        assertTrue(recorder.isEveryRecordedTagConverged());
+
+        // Warm-up happens once per run: clearing samples does not restart detection
+        recorder.reset();
+        assertEquals(0, recorder.getWarmupHistogram(trending).getTotalCount());
+        assertTrue(recorder.isEveryRecordedTagConverged());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimingHistogramTest {
+
+    private static final double[] PERCENTILES = new double[]{1, 10, 25, 50, 75, 90, 99, 99.9};
+
+    // Nearest-rank percentile over sorted values
+    private static long exactPercentile(long[] sortedValues, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+        return sortedValues[Math.max(rank, 1) - 1];
+    }
+
+    private static void checkPercentiles(long[] values) {
+        TimingHistogram histogram = new TimingHistogram();
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+
+        long[] sortedValues = values.clone();
+        Arrays.sort(sortedValues);
+
+        for (double percentile : PERCENTILES) {
+            long exact = exactPercentile(sortedValues, percentile);
+            long estimated = histogram.getValueAtPercentile(percentile);
+            // Log-linear buckets guarantee less than 1% relative error
+            assertEquals("p" + percentile, exact, estimated, Math.max(1, exact * 0.01));
+        }
+
+        assertEquals(sortedValues[0], histogram.getMinValue());
+        assertEquals(sortedValues[sortedValues.length - 1], histogram.getMaxValue());
+        assertEquals(values.length, histogram.getTotalCount());
+    }
+
+    @Test
+    public void percentiles_uniformMilliseconds() throws Exception {
+        Random random = new Random(42);
+        long[] values = new long[20000];
+        for (int i = 0; i < values.length; i++) {
+            // 0.5ms - 20ms
+            values[i] = 500000 + (long) (random.nextDouble() * 19500000);
+        }
+        checkPercentiles(values);
+    }
+
+    @Test
+    public void percentiles_longTailDistribution() throws Exception {
+        Random random = new Random(7);
+        long[] values = new long[20000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal around 2ms, with rare multi-second outliers
+            values[i] = (long) (2000000 * Math.exp(random.nextGaussian()));
+            if (i % 1000 == 0)
+                values[i] = 3000000000L + i;
+        }
+        checkPercentiles(values);
+    }
+
+    @Test
+    public void smallValues_areExact() throws Exception {
+        TimingHistogram histogram = new TimingHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordValue(i);
+        }
+
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(90, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void meanAndDeviation() throws Exception {
+        TimingHistogram histogram = new TimingHistogram();
+        long[] values = new long[]{2000000, 4000000, 4000000, 4000000, 5000000, 5000000, 7000000, 9000000};
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+
+        assertEquals(5000000, histogram.getMean(), 1e-6);
+        assertEquals(2000000, histogram.getStdDeviation(), 1e-3);
+
+        double inverseSum = 0;
+        for (long value : values) {
+            inverseSum += 1.0 / value;
+        }
+        assertEquals(values.length / inverseSum, histogram.getHarmonicMean(), 1e-3);
+    }
+
+    @Test
+    public void indexes_areContinuousAndMonotonic() throws Exception {
+        int previousIndex = -1;
+        for (long value = 0; value < (1L << 20); value++) {
+            int index = TimingHistogram.countsIndex(value);
+            assertTrue(index == previousIndex || index == previousIndex + 1);
+            assertTrue(TimingHistogram.lowestEquivalentValue(index) <= value);
+            previousIndex = index;
+        }
+
+        assertEquals(TimingHistogram.COUNTS_LENGTH - 1,
+                TimingHistogram.countsIndex(TimingHistogram.MAX_TRACKABLE_VALUE));
+        assertEquals(TimingHistogram.COUNTS_LENGTH - 1, TimingHistogram.countsIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void resetAndAdd() throws Exception {
+        TimingHistogram first = new TimingHistogram();
+        TimingHistogram second = new TimingHistogram();
+        for (int i = 0; i < 1000; i++) {
+            first.recordValue(1000000 + i);
+            second.recordValue(3000000 + i);
+        }
+
+        first.add(second);
+        assertEquals(2000, first.getTotalCount());
+        assertEquals(1000000, first.getMinValue());
+        assertEquals(3000999, first.getMaxValue());
+
+        first.reset();
+        assertEquals(0, first.getTotalCount());
+        assertEquals(0, first.getValueAtPercentile(50));
+        assertEquals(0, first.getMean(), 0);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 - Alberto Marchetti <alberto.marchetti@hydex11.net>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package net.hydex11.rsprofiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimingRecorderTest {
+
+    @Test
+    public void register_returnsSameHandleForSameTag() throws Exception {
+        TimingRecorder recorder = new TimingRecorder();
+
+        int first = recorder.register("blur1 - NDK");
+        int second = recorder.register("blur3 - NDK");
+
+        assertEquals(first, recorder.register("blur1 - NDK"));
+        assertEquals(second, recorder.register(String.format("blur%d - NDK", 3)));
+        assertEquals(2, recorder.getTagCount());
+        assertEquals("blur3 - NDK", recorder.getTag(second));
+    }
+
+    @Test
+    public void csvTag_hasNoCommas() throws Exception {
+        TimingRecorder recorder = new TimingRecorder();
+        int handle = recorder.register("a,b,c");
+        assertEquals("a_b_c", recorder.getCsvTag(handle));
+    }
+
+    @Test
+    public void reportOrder_followsFirstRecord() throws Exception {
+        TimingRecorder recorder = new TimingRecorder();
+
+        // Registered in a different order than the one they are measured in
+        int[] handles = new int[40];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = recorder.register("tag" + i);
+        }
+
+        for (int i = handles.length - 1; i >= 0; i--) {
+            recorder.record(handles[i], 1000 + i);
+            recorder.record(handles[i], 2000 + i);
+        }
+
+        assertEquals(handles.length, recorder.getRecordedCount());
+        for (int i = 0; i < handles.length; i++) {
+            assertEquals(handles[handles.length - 1 - i], recorder.getRecordedHandle(i));
+            assertEquals(2, recorder.getHistogram(handles[i]).getTotalCount());
+        }
+
+        recorder.reset();
+        assertEquals(0, recorder.getHistogram(handles[0]).getTotalCount());
+        // Reset keeps registered tags and order
+        assertEquals(handles.length, recorder.getRecordedCount());
+    }
+}